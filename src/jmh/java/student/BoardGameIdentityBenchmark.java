@@ -0,0 +1,157 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares BoardGame identity (name and id, hash cached at construction) against the reflection
+ * based equals/hashCode it replaced, for loading a collection into a HashSet (what GamesLoader
+ * does) and for "list add all" on a GameList.
+ *
+ * The reflection versions wrap each game in {@link ReflectiveGame}, which uses the same
+ * EqualsBuilder / HashCodeBuilder calls the old BoardGame did. The old GameList checked
+ * membership with List.contains, which is quadratic, so its reflective stand in uses a
+ * LinkedHashSet to measure only the identity cost.
+ *
+ * Run with: gradle jmh -Pjmh=BoardGameIdentity
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BoardGameIdentityBenchmark {
+    /** Number of games in the collection. */
+    @Param({"100000"})
+    private int size;
+
+    /** The collection, with every game twice, as duplicates are common in exports. */
+    private List<BoardGame> games;
+
+    /**
+     * Builds the collection.
+     */
+    @Setup
+    public void setup() {
+        games = new ArrayList<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            games.add(game(i));
+        }
+        for (int i = 0; i < size; i++) {
+            games.add(game(i));
+        }
+    }
+
+    /**
+     * Builds a game for an index.
+     *
+     * @param i the index.
+     * @return the game.
+     */
+    private static BoardGame game(int i) {
+        return new BoardGame("Game number " + i, 100_000 + i, i % 4 + 1, i % 8 + 2, 30, 90,
+                2.5, i, 7.0, 1990 + i % 30);
+    }
+
+    /**
+     * Loads the collection into a HashSet using the cached identity.
+     *
+     * @return the set.
+     */
+    @Benchmark
+    public Set<BoardGame> loadCachedIdentity() {
+        return new HashSet<>(games);
+    }
+
+    /**
+     * Loads the collection into a HashSet using reflection equals/hashCode.
+     *
+     * @return the set.
+     */
+    @Benchmark
+    public Set<ReflectiveGame> loadReflection() {
+        Set<ReflectiveGame> set = new HashSet<>();
+        for (BoardGame game : games) {
+            set.add(new ReflectiveGame(game));
+        }
+        return set;
+    }
+
+    /**
+     * Adds every game to a GameList, backed by the primitive id set.
+     *
+     * @return the list.
+     */
+    @Benchmark
+    public GameList listAddAll() {
+        GameList list = new GameList();
+        list.addToList(IGameList.ADD_ALL, games.stream());
+        return list;
+    }
+
+    /**
+     * Adds every game to an ordered set using reflection equals/hashCode.
+     *
+     * @return the set.
+     */
+    @Benchmark
+    public Set<ReflectiveGame> listAddAllReflection() {
+        Set<ReflectiveGame> list = new LinkedHashSet<>();
+        for (BoardGame game : games) {
+            list.add(new ReflectiveGame(game));
+        }
+        return list;
+    }
+
+    /**
+     * Wraps a game with the reflection based equals and hashCode BoardGame used to have.
+     */
+    public static final class ReflectiveGame {
+        /** Fields that were excluded from the old identity. */
+        private static final List<String> EXCLUDED = List.of("minPlayers", "maxPlayers",
+                "maxPlayTime", "minPlayTime", "difficulty", "rank", "averageRating",
+                "yearPublished", "hash");
+
+        /** The wrapped game. */
+        private final BoardGame game;
+
+        /**
+         * Wraps a game.
+         *
+         * @param game the game.
+         */
+        ReflectiveGame(BoardGame game) {
+            this.game = game;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ReflectiveGame
+                    && EqualsBuilder.reflectionEquals(game, ((ReflectiveGame) obj).game, EXCLUDED);
+        }
+
+        @Override
+        public int hashCode() {
+            return HashCodeBuilder.reflectionHashCode(game, EXCLUDED);
+        }
+    }
+}
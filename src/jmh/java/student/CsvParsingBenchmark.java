@@ -0,0 +1,175 @@
+package student;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the RFC 4180 tokenizer in {@link GameCsvParser} against the split on commas path the
+ * loader used to have, on a generated file of a few million rows.
+ *
+ * The rows are copies of the collection rows with unique names and ids. With quotedPercent above
+ * zero that share of names is quoted and holds a comma, which the split path cannot read (it
+ * drops those rows), so it is the tokenizer's worst case for the same bytes. Both paths stop once
+ * the games are collected and deduplicated: the split path into a HashSet of BoardGame, the
+ * tokenizer into a {@link GameTable.Builder} (without building the sort permutations).
+ *
+ * Run with: gradle jmh -Pjmh=CsvParsing
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class CsvParsingBenchmark {
+    /** Number of data rows in the generated file. */
+    @Param({"2000000"})
+    private int rows;
+
+    /** Percent of rows whose name is quoted and holds a comma. */
+    @Param({"0", "10"})
+    private int quotedPercent;
+
+    /** The generated file. */
+    private Path file;
+
+    /**
+     * Writes the file.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("games", ".csv");
+        writeGames(file, rows, quotedPercent);
+    }
+
+    /**
+     * Writes a games file of copies of the collection rows, with unique names and ids.
+     *
+     * @param file          the file to write.
+     * @param rows          the number of data rows.
+     * @param quotedPercent the percent of names that are quoted and hold a comma.
+     * @throws IOException if the file cannot be written.
+     */
+    static void writeGames(Path file, int rows, int quotedPercent) throws IOException {
+        List<String> lines;
+        try (InputStream is = CsvParsingBenchmark.class.getResourceAsStream("/collection.csv")) {
+            lines = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8)).lines()
+                    .collect(Collectors.toList());
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(lines.get(0));
+            out.write('\n');
+            for (int i = 0; i < rows; i++) {
+                String line = lines.get(1 + i % (lines.size() - 1));
+                String rest = line.substring(line.indexOf(',', line.indexOf(',') + 1));
+                if (i % 100 < quotedPercent) {
+                    out.write("\"Game, number " + i + "\"");
+                } else {
+                    out.write("Game number " + i);
+                }
+                out.write("," + i + rest);
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Deletes the file.
+     *
+     * @throws IOException if it cannot be deleted.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Reads the file with the state machine tokenizer.
+     *
+     * @return the number of games.
+     * @throws IOException if the file cannot be read.
+     */
+    @Benchmark
+    public int tokenizer() throws IOException {
+        GameTable.Builder builder = new GameTable.Builder();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            new GameCsvParser(builder).parse(channel);
+        }
+        return builder.size();
+    }
+
+    /**
+     * Reads the file the way the loader used to: lines, String.split on commas and
+     * Integer.parseInt / Double.parseDouble into BoardGame objects in a HashSet.
+     *
+     * @return the games.
+     * @throws IOException if the file cannot be read.
+     */
+    @Benchmark
+    public Set<BoardGame> splitPath() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<GameData, Integer> columnMap = new HashMap<>();
+            String[] header = reader.readLine().split(",");
+            for (int i = 0; i < header.length; i++) {
+                try {
+                    columnMap.put(GameData.fromColumnName(header[i]), i);
+                } catch (IllegalArgumentException e) {
+                    // not a column we use
+                }
+            }
+            int last = columnMap.values().stream().max(Integer::compareTo).get();
+            Set<BoardGame> games = new HashSet<>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] columns = line.split(",");
+                if (columns.length <= last) {
+                    continue;
+                }
+                try {
+                    games.add(new BoardGame(columns[columnMap.get(GameData.NAME)],
+                            Integer.parseInt(columns[columnMap.get(GameData.ID)]),
+                            Integer.parseInt(columns[columnMap.get(GameData.MIN_PLAYERS)]),
+                            Integer.parseInt(columns[columnMap.get(GameData.MAX_PLAYERS)]),
+                            Integer.parseInt(columns[columnMap.get(GameData.MIN_TIME)]),
+                            Integer.parseInt(columns[columnMap.get(GameData.MAX_TIME)]),
+                            Double.parseDouble(columns[columnMap.get(GameData.DIFFICULTY)]),
+                            Integer.parseInt(columns[columnMap.get(GameData.RANK)]),
+                            Double.parseDouble(columns[columnMap.get(GameData.RATING)]),
+                            Integer.parseInt(columns[columnMap.get(GameData.YEAR)])));
+                } catch (NumberFormatException e) {
+                    // skipped, as the old loader did
+                }
+            }
+            return games;
+        }
+    }
+}
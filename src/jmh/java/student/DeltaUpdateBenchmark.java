@@ -0,0 +1,115 @@
+package student;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures applying a small daily delta to a large collection against loading the changed
+ * collection again.
+ *
+ * The delta changes percent of the games: most of them get a new rank and rating, and a tenth
+ * each are deleted or inserted. apply patches the table ({@link GameTable#apply(GameDelta)}),
+ * reload parses the csv and sorts every column from scratch, as a reload of the changed export
+ * would.
+ *
+ * Run with: gradle jmh -Pjmh=DeltaUpdate
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class DeltaUpdateBenchmark {
+    /** Number of games in the collection. */
+    @Param({"500000"})
+    private int rows;
+
+    /** Percent of the games changed by the delta. */
+    @Param({"1"})
+    private int percent;
+
+    /** The generated csv file. */
+    private Path csv;
+    /** The collection before the delta. */
+    private GameTable table;
+    /** The delta. */
+    private GameDelta delta;
+
+    /**
+     * Writes the csv, loads it and builds the delta.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Setup
+    public void setup() throws IOException {
+        csv = Files.createTempFile("games", ".csv");
+        CsvParsingBenchmark.writeGames(csv, rows, 0);
+        table = GamesLoader.load(csv, 1).getTable();
+        table.index(GameData.RATING);
+
+        Random random = new Random(1);
+        delta = new GameDelta();
+        int changes = rows / 100 * percent;
+        for (int i = 0; i < changes; i++) {
+            int id = random.nextInt(rows);
+            if (i % 10 == 0) {
+                delta.remove(id);
+            } else if (i % 10 == 1) {
+                delta.put(new BoardGame("New game " + i, rows + i, 2, 4, 30, 60, 2.5,
+                        random.nextInt(rows), 7.0, 2024));
+            } else {
+                delta.update(id, GameData.RANK, random.nextInt(rows))
+                        .update(id, GameData.RATING, random.nextInt(100) / 10.0);
+            }
+        }
+    }
+
+    /**
+     * Deletes the file.
+     *
+     * @throws IOException if it cannot be deleted.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+    }
+
+    /**
+     * Patches the table with the delta.
+     *
+     * @return the changed table.
+     */
+    @Benchmark
+    public GameTable apply() {
+        return table.apply(delta);
+    }
+
+    /**
+     * Loads the collection again, with the sorted index the table had.
+     *
+     * @return the loaded table.
+     */
+    @Benchmark
+    public GameTable reload() {
+        GameTable loaded = GamesLoader.load(csv, 1).getTable();
+        loaded.index(GameData.RATING);
+        return loaded;
+    }
+}
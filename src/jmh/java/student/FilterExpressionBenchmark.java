@@ -0,0 +1,112 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluates filter expressions with or and not ({@link FilterExpression}) over a whole table,
+ * as {@link Planner} does, against testing the expression on each row and on each game object.
+ *
+ * narrow runs the children in order of their estimated matches and works on bitmaps, reusing
+ * the condition bitmaps cached on the table by earlier calls, as repeated queries do. rowByRow
+ * tests the tree on every row of the table, and games on a BoardGame for every row, as a stream
+ * filter would.
+ *
+ * The collection repeats the built in collection with a number after each name, as in
+ * NameSearchBenchmark.
+ *
+ * Run with: gradle jmh -Pjmh=FilterExpression
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class FilterExpressionBenchmark {
+    /** Number of games in the collection. */
+    @Param({"500000"})
+    private int rows;
+
+    /** The filter. */
+    @Param({"(minplayers>=4 | maxplaytime<30) & !name~=expansion",
+        "rank<100 | rating>=8 & year>2010", "!(minplayers>1, maxplayers<5) | name~=cat"})
+    private String filter;
+
+    /** The collection. */
+    private GameTable table;
+    /** The games of the collection, one object a row. */
+    private List<BoardGame> games;
+    /** The compiled filter. */
+    private FilterExpression expression;
+
+    /**
+     * Builds the collection and compiles the filter.
+     */
+    @Setup
+    public void setup() {
+        GameTable collection = GamesLoader.loadTable("/collection.csv", 1);
+        games = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            BoardGame game = collection.game(i % collection.size());
+            games.add(new BoardGame(game.getName() + " " + i, i, game.getMinPlayers(),
+                    game.getMaxPlayers(), game.getMinPlayTime(), game.getMaxPlayTime(),
+                    game.getDifficulty(), game.getRank(), game.getRating(),
+                    game.getYearPublished()));
+        }
+        table = GameTable.of(games);
+        expression = new FilterCompiler().compileExpression(filter);
+    }
+
+    /**
+     * Narrows the whole table with bitmaps.
+     *
+     * @return the matching rows.
+     */
+    @Benchmark
+    public BitSet narrow() {
+        BitSet selection = table.all();
+        expression.narrow(table, selection);
+        return selection;
+    }
+
+    /**
+     * Tests the expression on each row of the table.
+     *
+     * @return the matching rows.
+     */
+    @Benchmark
+    public BitSet rowByRow() {
+        BitSet selection = new BitSet(table.size());
+        for (int row = 0; row < table.size(); row++) {
+            if (expression.test(table, row)) {
+                selection.set(row);
+            }
+        }
+        return selection;
+    }
+
+    /**
+     * Tests the expression on each game object.
+     *
+     * @return the number of matching games.
+     */
+    @Benchmark
+    public long games() {
+        return games.stream().filter(expression::test).count();
+    }
+}
@@ -0,0 +1,165 @@
+package student;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares loading the same games from the classpath (a resource stream, as
+ * {@link GamesLoader#load(String)} does) with loading from disk: one file through a file channel
+ * and a direct buffer, the same rows split into shards, and the shards gzipped. Each load ends
+ * with a built {@link GameTable}.
+ *
+ * The generated csv is printed at setup with its size, so the scores can be turned into MB/s.
+ *
+ * Run with: gradle jmh -Pjmh=LoadThroughput
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class LoadThroughputBenchmark {
+    /** Number of data rows. */
+    @Param({"1000000"})
+    private int rows;
+
+    /** Number of shards the rows are split into. */
+    @Param({"4"})
+    private int shards;
+
+    /** Threads for the disk loads. */
+    @Param({"4"})
+    private int threads;
+
+    /** Directory holding every generated file. */
+    private Path dir;
+    /** Class loader with dir on its classpath. */
+    private URLClassLoader classpath;
+
+    /**
+     * Writes the csv, the plain shards and the gzipped shards.
+     *
+     * @throws IOException if the files cannot be written.
+     */
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("games");
+        Path csv = dir.resolve("games.csv");
+        CsvParsingBenchmark.writeGames(csv, rows, 10);
+        System.out.println(csv + ": " + Files.size(csv) / (1 << 20) + " MB");
+
+        List<String> lines = Files.readAllLines(csv);
+        Path plain = Files.createDirectory(dir.resolve("shards"));
+        Path gzip = Files.createDirectory(dir.resolve("gzip"));
+        int perShard = (rows + shards - 1) / shards;
+        for (int i = 0; i < shards; i++) {
+            StringBuilder shard = new StringBuilder(lines.get(0)).append('\n');
+            for (int row = i * perShard; row < Math.min(rows, (i + 1) * perShard); row++) {
+                shard.append(lines.get(row + 1)).append('\n');
+            }
+            byte[] bytes = shard.toString().getBytes(StandardCharsets.UTF_8);
+            Files.write(plain.resolve("part-" + i + ".csv"), bytes);
+            try (OutputStream out = new GZIPOutputStream(
+                    Files.newOutputStream(gzip.resolve("part-" + i + ".csv.gz")))) {
+                out.write(bytes);
+            }
+        }
+        classpath = new URLClassLoader(new URL[] {dir.toUri().toURL()}, null);
+    }
+
+    /**
+     * Deletes the files.
+     *
+     * @throws IOException if they cannot be deleted.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        classpath.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Loads the csv as a classpath resource, the way the built in collection is loaded.
+     *
+     * @return the table.
+     * @throws IOException if it cannot be read.
+     */
+    @Benchmark
+    public GameTable classpathResource() throws IOException {
+        GameTable.Builder builder = new GameTable.Builder();
+        try (InputStream in = classpath.getResourceAsStream("games.csv")) {
+            new GameCsvParser(builder).parse(Channels.newChannel(in));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Loads the csv from its path on one thread.
+     *
+     * @return the table.
+     */
+    @Benchmark
+    public GameTable file() {
+        return GamesLoader.load(dir.resolve("games.csv"), 1).getTable();
+    }
+
+    /**
+     * Loads the csv from its path in parallel chunks.
+     *
+     * @return the table.
+     */
+    @Benchmark
+    public GameTable fileParallel() {
+        return GamesLoader.load(dir.resolve("games.csv"), threads).getTable();
+    }
+
+    /**
+     * Loads the plain shards.
+     *
+     * @return the table.
+     */
+    @Benchmark
+    public GameTable shards() {
+        return GamesLoader.load(dir.resolve("shards"), threads).getTable();
+    }
+
+    /**
+     * Loads the gzipped shards.
+     *
+     * @return the table.
+     */
+    @Benchmark
+    public GameTable gzipShards() {
+        return GamesLoader.load(dir.resolve("gzip"), threads).getTable();
+    }
+}
@@ -0,0 +1,137 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares a contains (~=) search of the names through the {@link NameIndex} against the scan
+ * it replaces, which lower cased every distinct name on every search and then scanned the name
+ * column for the rows.
+ *
+ * The collection repeats the names of the built in collection with a number after each, so
+ * every name is distinct, as in a large catalogue. Both return the bitmap of matching rows.
+ *
+ * fuzzy and fuzzyScan look up a typo of a whole name (two chars of the text swapped, inside a
+ * real name) for suggestions, through the index's trigram counts against a bounded edit distance
+ * check of every name.
+ *
+ * Run with: gradle jmh -Pjmh=NameSearch
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class NameSearchBenchmark {
+    /** Number of games in the collection. */
+    @Param({"500000"})
+    private int rows;
+
+    /** The text searched for. */
+    @Param({"cat", "ticket to", "ga"})
+    private String text;
+
+    /** The collection. */
+    private GameTable table;
+    /** A mistyped name, in lower case. */
+    private String typo;
+
+    /**
+     * Builds the collection and its name index.
+     */
+    @Setup
+    public void setup() {
+        GameTable collection = GamesLoader.loadTable("/collection.csv", 1);
+        List<BoardGame> games = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            BoardGame game = collection.game(i % collection.size());
+            games.add(new BoardGame(game.getName() + " " + i, i, game.getMinPlayers(),
+                    game.getMaxPlayers(), game.getMinPlayTime(), game.getMaxPlayTime(),
+                    game.getDifficulty(), game.getRank(), game.getRating(),
+                    game.getYearPublished()));
+        }
+        table = GameTable.of(games);
+        String name = table.name(rows / 2).toLowerCase();
+        int at = Math.max(0, name.indexOf(text.toLowerCase()));
+        typo = name.substring(0, at) + name.charAt(at + 1) + name.charAt(at)
+                + name.substring(at + 2);
+        NameIndex index = table.nameIndex();
+        System.out.printf("%nname index: %d trigrams, %d MB, built in %d ms%n", index.trigrams(),
+                index.getMemoryBytes() >> 20, TimeUnit.NANOSECONDS.toMillis(index.getBuildNanos()));
+    }
+
+    /**
+     * The search as it was, lower casing each name.
+     *
+     * @return the matching rows.
+     */
+    @Benchmark
+    public BitSet scan() {
+        String lowerText = text.toLowerCase();
+        String[] dictionary = table.dictionary();
+        boolean[] matches = new boolean[dictionary.length];
+        for (int code = 0; code < dictionary.length; code++) {
+            matches[code] = dictionary[code].toLowerCase().contains(lowerText);
+        }
+        int[] codes = table.nameCodes();
+        long[] words = new long[(table.size() + Long.SIZE - 1) / Long.SIZE];
+        for (int row = 0; row < table.size(); row++) {
+            if (matches[codes[row]]) {
+                words[row >>> 6] |= 1L << row;
+            }
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * The search through the name index.
+     *
+     * @return the matching rows.
+     */
+    @Benchmark
+    public BitSet index() {
+        return CompiledFilter.of(GameData.NAME, Operations.CONTAINS, text).evaluate(table);
+    }
+
+    /**
+     * Suggestions for a typo through the name index.
+     *
+     * @return the closest name codes.
+     */
+    @Benchmark
+    public int[] fuzzy() {
+        return table.nameIndex().similar(typo, EditDistance.allowed(typo.length()), null, 3);
+    }
+
+    /**
+     * Suggestions for a typo by checking every name.
+     *
+     * @return the number of names close enough.
+     */
+    @Benchmark
+    public int fuzzyScan() {
+        int max = EditDistance.allowed(typo.length());
+        int found = 0;
+        for (String name : table.dictionary()) {
+            if (EditDistance.bounded(typo, name.toLowerCase(), max) <= max) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
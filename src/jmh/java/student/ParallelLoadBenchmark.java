@@ -0,0 +1,87 @@
+package student;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how loading a large games file scales with threads, from the file to a built
+ * {@link GameTable} (parse, merge and sort permutations). One thread is the sequential loader.
+ *
+ * The file is written once per trial by {@link CsvParsingBenchmark#writeGames(Path, int, int)}.
+ *
+ * Run with: gradle jmh -Pjmh=ParallelLoad
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ParallelLoadBenchmark {
+    /** Number of data rows in the generated file. */
+    @Param({"5000000"})
+    private int rows;
+
+    /** Number of threads to load on. */
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    /** The generated file. */
+    private Path file;
+
+    /**
+     * Writes the file.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("games", ".csv");
+        CsvParsingBenchmark.writeGames(file, rows, 10);
+    }
+
+    /**
+     * Deletes the file.
+     *
+     * @throws IOException if it cannot be deleted.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Loads the file.
+     *
+     * @return the table.
+     * @throws IOException if the file cannot be read.
+     */
+    @Benchmark
+    public GameTable load() throws IOException {
+        if (threads == 1) {
+            GameTable.Builder builder = new GameTable.Builder();
+            GameCsvParser parser = new GameCsvParser(builder);
+            try (FileChannel channel = FileChannel.open(file)) {
+                parser.parse(channel);
+            }
+            return builder.build();
+        }
+        return GamesLoader.load(file, threads).getTable();
+    }
+}
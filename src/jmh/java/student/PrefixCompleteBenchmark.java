@@ -0,0 +1,133 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of name completion ({@link Planner#complete(String, GameData, boolean, int)}) with
+ * several threads typing at once, against a linear scan of the names.
+ *
+ * Each thread plays a user typing a real game name: every call is the next keystroke, a prefix
+ * one char longer, and a new name is started after 8 chars. The top 10 completions by rank are
+ * asked for. The collection repeats the built in names with a number after each, as in
+ * DeltaUpdateBenchmark, so short prefixes match tens of thousands of games.
+ *
+ * Sample time mode reports the latency percentiles of single keystrokes.
+ *
+ * Run with: gradle jmh -Pjmh=PrefixComplete
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Threads(4)
+public class PrefixCompleteBenchmark {
+
+    /** The collection, shared by every thread. */
+    @State(Scope.Benchmark)
+    public static class Collection {
+        /** Number of games in the collection. */
+        @Param({"500000"})
+        private int rows;
+
+        /** The planner the completions come from. */
+        private Planner planner;
+        /** The table, for the scan. */
+        private GameTable table;
+        /** The names the users type. */
+        private String[] names;
+
+        /**
+         * Builds the collection and the indexes completion uses.
+         */
+        @Setup
+        public void setup() {
+            GameTable collection = GamesLoader.loadTable("/collection.csv", 1);
+            List<BoardGame> games = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                BoardGame game = collection.game(i % collection.size());
+                games.add(new BoardGame(game.getName() + " " + i, i, game.getMinPlayers(),
+                        game.getMaxPlayers(), game.getMinPlayTime(), game.getMaxPlayTime(),
+                        game.getDifficulty(), game.getRank(), game.getRating(),
+                        game.getYearPublished()));
+            }
+            table = GameTable.of(games);
+            planner = new Planner(table);
+            planner.complete("a", GameData.RANK, true, 10);
+            names = collection.dictionary();
+        }
+    }
+
+    /** One user typing. */
+    @State(Scope.Thread)
+    public static class Typist {
+        /** Picks the names. */
+        private final Random random = new Random();
+        /** The name being typed. */
+        private String name = "";
+        /** The number of chars typed so far. */
+        private int typed;
+
+        /**
+         * Types the next char, starting a new name when the last one is done.
+         *
+         * @param collection the names to pick from.
+         * @return the prefix typed so far.
+         */
+        String next(Collection collection) {
+            if (typed >= Math.min(8, name.length())) {
+                name = collection.names[random.nextInt(collection.names.length)];
+                typed = 0;
+            }
+            return name.substring(0, ++typed);
+        }
+    }
+
+    /**
+     * Completion through the prefix index.
+     *
+     * @param collection the collection.
+     * @param typist     the user typing.
+     * @return the completions.
+     */
+    @Benchmark
+    public List<BoardGame> complete(Collection collection, Typist typist) {
+        return collection.planner.complete(typist.next(collection), GameData.RANK, true, 10);
+    }
+
+    /**
+     * Completion by checking every name, then sorting the matches by rank.
+     *
+     * @param collection the collection.
+     * @param typist     the user typing.
+     * @return the completions.
+     */
+    @Benchmark
+    public List<BoardGame> scan(Collection collection, Typist typist) {
+        String prefix = typist.next(collection);
+        GameTable table = collection.table;
+        return IntStream.range(0, table.size())
+                .filter(row -> table.name(row).regionMatches(true, 0, prefix, 0, prefix.length()))
+                .boxed().sorted(Comparator.comparingInt(row -> table.getInt(GameData.RANK, row)))
+                .limit(10).map(table::game).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,153 @@
+package student;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares printing a large result through {@link ResultWriter} against the printf path the
+ * console used to take (toList, then printf of toStringWithInfo per game).
+ *
+ * Both write the same text, sorted on rating so every line formats a decimal, to a stream that
+ * drops the bytes, so only the encoding is measured. The printf path goes through a PrintStream
+ * with System.out's 8 KB buffer. writerRows writes straight from the table's columns, with no
+ * BoardGame objects; csv and json write every field.
+ *
+ * Run with: gradle jmh -Pjmh=ResultWriter (add -prof gc for the bytes allocated per op)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultWriterBenchmark {
+    /** Number of rows printed. */
+    @Param({"100000"})
+    private int rows;
+
+    /** The games, as the planner streams them. */
+    private List<BoardGame> games;
+    /** The same games in a table. */
+    private GameTable table;
+    /** The stream the printf path prints to. */
+    private PrintStream printStream;
+    /** The writer, reused for every result as the console does. */
+    private ResultWriter writer;
+
+    /**
+     * Builds the games and the outputs.
+     */
+    @Setup
+    public void setup() {
+        games = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            games.add(new BoardGame("Game number " + i, i, 1 + i % 4, 4 + i % 5, 10 + i % 50,
+                    30 + i % 200, 1 + i % 4000 / 1000.0, i, 5 + i % 5000 / 1000.0, 1990 + i % 30));
+        }
+        table = GameTable.of(games);
+        printStream = new PrintStream(new BufferedOutputStream(OutputStream.nullOutputStream(),
+                8192), false, StandardCharsets.UTF_8);
+        writer = new ResultWriter(OutputStream.nullOutputStream());
+    }
+
+    /**
+     * The old console path.
+     *
+     * @return the number of rows printed.
+     */
+    @Benchmark
+    public int printf() {
+        int counter = 1;
+        List<BoardGame> list = games.stream().toList();
+        for (BoardGame game : list) {
+            printStream.printf("%d: %s%n", counter++, game.toStringWithInfo(GameData.RATING));
+        }
+        printStream.flush();
+        return counter;
+    }
+
+    /**
+     * The console path now: the same games through the writer.
+     *
+     * @return the writer.
+     * @throws IOException never, the stream drops the bytes.
+     */
+    @Benchmark
+    public ResultWriter writer() throws IOException {
+        writer.begin(ResultWriter.Format.TEXT);
+        for (BoardGame game : games) {
+            writer.write(game, GameData.RATING);
+        }
+        writer.end();
+        writer.flush();
+        return writer;
+    }
+
+    /**
+     * The same text, straight from the table.
+     *
+     * @return the writer.
+     * @throws IOException never, the stream drops the bytes.
+     */
+    @Benchmark
+    public ResultWriter writerRows() throws IOException {
+        return rows(ResultWriter.Format.TEXT);
+    }
+
+    /**
+     * Every field as CSV, straight from the table.
+     *
+     * @return the writer.
+     * @throws IOException never, the stream drops the bytes.
+     */
+    @Benchmark
+    public ResultWriter csv() throws IOException {
+        return rows(ResultWriter.Format.CSV);
+    }
+
+    /**
+     * Every field as JSON, straight from the table.
+     *
+     * @return the writer.
+     * @throws IOException never, the stream drops the bytes.
+     */
+    @Benchmark
+    public ResultWriter json() throws IOException {
+        return rows(ResultWriter.Format.JSON);
+    }
+
+    /**
+     * Writes every row of the table.
+     *
+     * @param format the format.
+     * @return the writer.
+     * @throws IOException never, the stream drops the bytes.
+     */
+    private ResultWriter rows(ResultWriter.Format format) throws IOException {
+        writer.begin(format);
+        for (int row = 0; row < rows; row++) {
+            writer.write(table, row, GameData.RATING);
+        }
+        writer.end();
+        writer.flush();
+        return writer;
+    }
+}
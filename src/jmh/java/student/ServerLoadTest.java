@@ -0,0 +1,199 @@
+package student;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test for the {@link PlannerServer}: starts it on a free localhost port over a generated
+ * collection, runs client threads that each keep one session and send a mix of page, next page,
+ * full result, list and reset requests back to back, and reports the latency percentiles and
+ * throughput. Filters narrow a session until it is reset, just as on the console, so some list
+ * adds ask for rows the session no longer has; those 400 responses count as requests.
+ *
+ * This is a plain main rather than a JMH benchmark, since it measures the server from the
+ * outside. Run with: gradle loadTest [-Pargs='--clients=N --seconds=S --rows=R']
+ */
+public final class ServerLoadTest {
+    /** Filters the clients pick from. */
+    private static final String[] FILTERS = {"", "minplayers>2", "name~=game 1",
+        "rating>7,maxplaytime<90", "yearpublished>=2000", "avgweight<2,minplayers<=2"};
+    /** Sort columns the clients pick from. */
+    private static final String[] SORTS = {"name", "rating", "rank", "yearpublished"};
+
+    /** private constructor to prevent instantiation. */
+    private ServerLoadTest() {
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args {@code --clients=N} client threads (default 16), {@code --seconds=S} to run
+     *             for after a warm up of the same length (default 10), {@code --rows=R} games in
+     *             the collection (default 100000).
+     * @throws Exception if the server cannot be started or a request fails.
+     */
+    public static void main(String[] args) throws Exception {
+        int clients = 16;
+        int seconds = 10;
+        int rows = 100_000;
+        for (String arg : args) {
+            if (arg.startsWith("--clients=")) {
+                clients = Integer.parseInt(arg.substring("--clients=".length()));
+            } else if (arg.startsWith("--seconds=")) {
+                seconds = Integer.parseInt(arg.substring("--seconds=".length()));
+            } else if (arg.startsWith("--rows=")) {
+                rows = Integer.parseInt(arg.substring("--rows=".length()));
+            }
+        }
+        Path csv = Files.createTempFile("games", ".csv");
+        try {
+            CsvParsingBenchmark.writeGames(csv, rows, 0);
+            Planner planner = new Planner(GamesLoader.load(csv, 1).getTable());
+            try (PlannerServer server = new PlannerServer(planner, 0)) {
+                server.start();
+                String base = "http://localhost:" + server.getPort();
+                System.out.printf("%d games, %d clients, warming up for %d s%n", rows, clients,
+                        seconds);
+                run(base, clients, seconds);
+                long start = System.nanoTime();
+                long[] latencies = run(base, clients, seconds);
+                double elapsed = (System.nanoTime() - start) / 1e9;
+                Arrays.sort(latencies);
+                System.out.printf("%d requests in %.1f s: %.0f requests/s%n", latencies.length,
+                        elapsed, latencies.length / elapsed);
+                System.out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                        percentile(latencies, 50), percentile(latencies, 99),
+                        latencies[latencies.length - 1] / 1e6);
+            }
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    /**
+     * Runs the clients for a while.
+     *
+     * @param base    the server address.
+     * @param clients the number of client threads.
+     * @param seconds how long to run for.
+     * @return the latency of every request, in nanoseconds.
+     * @throws Exception if a request fails.
+     */
+    private static long[] run(String base, int clients, int seconds) throws Exception {
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int seed = c;
+            results.add(pool.submit(() -> client(http, base, new Random(seed), end)));
+        }
+        List<long[]> all = new ArrayList<>();
+        int count = 0;
+        try {
+            for (Future<long[]> result : results) {
+                long[] latencies = result.get();
+                all.add(latencies);
+                count += latencies.length;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        long[] merged = new long[count];
+        int next = 0;
+        for (long[] latencies : all) {
+            System.arraycopy(latencies, 0, merged, next, latencies.length);
+            next += latencies.length;
+        }
+        return merged;
+    }
+
+    /**
+     * One client: a session sending requests until the end time.
+     *
+     * @param http   the http client.
+     * @param base   the server address.
+     * @param random picks the requests.
+     * @param end    when to stop, from {@link System#nanoTime()}.
+     * @return the latency of each request, in nanoseconds.
+     * @throws IOException if a request fails.
+     * @throws InterruptedException if interrupted.
+     */
+    private static long[] client(HttpClient http, String base, Random random, long end)
+            throws IOException, InterruptedException {
+        long[] latencies = new long[1024];
+        int count = 0;
+        String session = null;
+        String cursor = null;
+        while (System.nanoTime() < end) {
+            String path;
+            String method = "GET";
+            int pick = random.nextInt(100);
+            if (pick < 60) {
+                path = "/games?filter=" + URLEncoder.encode(FILTERS[random.nextInt(FILTERS.length)],
+                        StandardCharsets.UTF_8) + "&sort=" + SORTS[random.nextInt(SORTS.length)]
+                        + "&order=" + (random.nextBoolean() ? "asc" : "desc") + "&limit=20";
+            } else if (pick < 80 && cursor != null) {
+                path = "/games/next?limit=20&cursor=" + cursor;
+            } else if (pick < 85) {
+                path = "/games?filter=" + URLEncoder.encode("rating>9.5", StandardCharsets.UTF_8);
+            } else if (pick < 95) {
+                method = "POST";
+                path = "/list/add?game=1-5";
+            } else {
+                method = "POST";
+                path = "/reset";
+            }
+            if (session != null) {
+                path += (path.contains("?") ? "&" : "?") + "session=" + session;
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+                    .method(method, HttpRequest.BodyPublishers.noBody()).build();
+            long start = System.nanoTime();
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            long latency = System.nanoTime() - start;
+            if (response.statusCode() >= 500) {
+                throw new IOException(path + ": " + response.statusCode() + " " + response.body());
+            }
+            session = response.headers().firstValue(PlannerServer.SESSION_HEADER).orElse(session);
+            int at = response.body().indexOf("\"cursor\":\"");
+            if (at >= 0) {
+                cursor = response.body().substring(at + 10, response.body().indexOf('"', at + 10));
+            } else if (path.startsWith("/reset")) {
+                cursor = null;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    /**
+     * Gets a percentile of sorted latencies.
+     *
+     * @param sorted  the latencies, in ascending order, in nanoseconds.
+     * @param percent the percentile.
+     * @return the latency in milliseconds.
+     */
+    private static double percentile(long[] sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,102 @@
+package student;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures startup from a binary snapshot against parsing the csv, for growing collections.
+ *
+ * open only maps the snapshot, and should take the same time at every size. openAndFirstPage
+ * also runs a first query (one condition, sorted on rating, first 20 rows), which copies the
+ * two columns and the permutation it uses out of the mapping. parseCsv is the csv path it
+ * replaces, up to the same first page.
+ *
+ * Run with: gradle jmh -Pjmh=SnapshotOpen
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SnapshotOpenBenchmark {
+    /** Number of games in the collection. */
+    @Param({"100000", "1000000", "5000000"})
+    private int rows;
+
+    /** The generated csv file. */
+    private Path csv;
+    /** The snapshot of it. */
+    private Path snapshot;
+
+    /**
+     * Writes the csv and the snapshot.
+     *
+     * @throws IOException if the files cannot be written.
+     */
+    @Setup
+    public void setup() throws IOException {
+        csv = Files.createTempFile("games", ".csv");
+        CsvParsingBenchmark.writeGames(csv, rows, 0);
+        snapshot = Files.createTempFile("games", ".snapshot");
+        GamesLoader.writeSnapshot(GamesLoader.load(csv, 1).getTable(), snapshot);
+    }
+
+    /**
+     * Deletes the files.
+     *
+     * @throws IOException if they cannot be deleted.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(snapshot);
+    }
+
+    /**
+     * Opens the snapshot.
+     *
+     * @return the table.
+     */
+    @Benchmark
+    public GameTable open() {
+        return GamesLoader.loadSnapshot(snapshot);
+    }
+
+    /**
+     * Opens the snapshot and runs a first query.
+     *
+     * @return the first page.
+     */
+    @Benchmark
+    public Page openAndFirstPage() {
+        return new Planner(GamesLoader.loadSnapshot(snapshot))
+                .page("minplayers>2", GameData.RATING, false, 0, 20);
+    }
+
+    /**
+     * Parses the csv and runs the same first query.
+     *
+     * @return the first page.
+     */
+    @Benchmark
+    public Page parseCsv() {
+        return new Planner(GamesLoader.load(csv, 1).getTable())
+                .page("minplayers>2", GameData.RATING, false, 0, 20);
+    }
+}
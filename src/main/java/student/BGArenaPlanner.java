@@ -1,5 +1,9 @@
 package student;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Main entry point for the program.
@@ -20,13 +24,173 @@ public final class BGArenaPlanner {
     /**
      * Main entry point for the program.
      *
-     * @param args command line arguments - not used at this time.
+     * @param args command line arguments: {@code --parallel} loads the collection on every
+     *             core, {@code --parallel=N} on N threads (by default it is loaded on one
+     *             thread), {@code --data=PATH} loads a csv file (plain or .gz) or a directory
+     *             of csv shards instead of the built in collection, and
+     *             {@code --snapshot=FILE} opens a binary snapshot of the collection instead of
+     *             parsing the csv, writing it from the csv first if it does not exist.
+     *             {@code --watch} reloads the collection in the background whenever its csv
+     *             file (or directory) changes. {@code --serve} (or {@code --serve=PORT}) answers
+     *             queries over HTTP (see {@link PlannerServer}) instead of on the console.
+     *             {@code --batch} runs the console commands piped to standard in without
+     *             prompts, and {@code --batch=FILE} runs the commands in a file.
      */
     public static void main(String[] args) {
-        IPlanner planner = new Planner(GamesLoader.loadGamesFile(DEFAULT_COLLECTION));
+        Planner planner = loadPlanner(args);
+        int port = servePort(args);
+        if (port >= 0) {
+            try {
+                PlannerServer server = new PlannerServer(planner, port);
+                server.start();
+                System.out.println("Serving on http://localhost:" + server.getPort() + "/");
+            } catch (IOException e) {
+                System.err.println("Cannot serve on port " + port + ": " + e.getMessage());
+            }
+            return;
+        }
         IGameList list = new GameList();
-        ConsoleApp app = new ConsoleApp(list, planner);
-        app.start();
+        String batch = batchSource(args);
+        if (batch == null) {
+            ConsoleApp app = new ConsoleApp(list, planner);
+            app.start();
+        } else if (batch.isEmpty()) {
+            ConsoleApp.batch(list, planner, System.in).start();
+        } else {
+            try (InputStream in = Files.newInputStream(Path.of(batch))) {
+                ConsoleApp.batch(list, planner, in).start();
+            } catch (IOException e) {
+                System.err.println("Cannot read commands from " + batch + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Finds where to read batch commands from on the command line.
+     *
+     * @param args command line arguments.
+     * @return the file of commands, an empty string for standard in, or null to run the
+     *         console interactively.
+     */
+    static String batchSource(String[] args) {
+        String source = null;
+        for (String arg : args) {
+            if (arg.equals("--batch")) {
+                source = "";
+            } else if (arg.startsWith("--batch=")) {
+                source = arg.substring("--batch=".length());
+            }
+        }
+        return source;
+    }
+
+    /**
+     * Finds the port to serve on from the command line.
+     *
+     * @param args command line arguments.
+     * @return the port, or -1 to run the console instead.
+     */
+    static int servePort(String[] args) {
+        int port = -1;
+        for (String arg : args) {
+            if (arg.equals("--serve")) {
+                port = PlannerServer.DEFAULT_PORT;
+            } else if (arg.startsWith("--serve=")) {
+                try {
+                    port = Integer.parseInt(arg.substring("--serve=".length()));
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid port: " + arg);
+                    port = PlannerServer.DEFAULT_PORT;
+                }
+            }
+        }
+        return port;
+    }
+
+    /**
+     * Loads the collection as asked for on the command line, and builds a planner over it.
+     *
+     * @param args command line arguments.
+     * @return the planner.
+     */
+    static Planner loadPlanner(String[] args) {
+        int threads = 1;
+        Path data = null;
+        Path snapshot = null;
+        boolean watch = false;
+        for (String arg : args) {
+            if (arg.equals("--parallel")) {
+                threads = Runtime.getRuntime().availableProcessors();
+            } else if (arg.startsWith("--parallel=")) {
+                try {
+                    threads = Integer.parseInt(arg.substring("--parallel=".length()));
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid thread count: " + arg);
+                }
+            } else if (arg.startsWith("--data=")) {
+                data = Path.of(arg.substring("--data=".length()));
+            } else if (arg.startsWith("--snapshot=")) {
+                snapshot = Path.of(arg.substring("--snapshot=".length()));
+            } else if (arg.equals("--watch")) {
+                watch = true;
+            } else if (arg.equals("--serve") || arg.startsWith("--serve=")) {
+                continue; // read by servePort
+            } else if (arg.equals("--batch") || arg.startsWith("--batch=")) {
+                continue; // read by batchSource
+            } else {
+                System.err.println("Ignoring argument: " + arg);
+            }
+        }
+        if (watch) {
+            Planner planner = watch(data != null ? data : GamesLoader.resourcePath(DEFAULT_COLLECTION),
+                    threads);
+            if (planner != null) {
+                return planner;
+            }
+        }
+        return new Planner(loadCollection(data, snapshot, threads));
+    }
+
+    /**
+     * Loads a collection and starts reloading it whenever it changes.
+     *
+     * @param path    the csv file or directory of shards, or null if there is none on disk.
+     * @param threads the number of threads to load on.
+     * @return the planner following the collection, or null if it cannot be watched.
+     */
+    private static Planner watch(Path path, int threads) {
+        if (path == null) {
+            System.err.println("Cannot watch the built in collection, it is not a file on disk");
+            return null;
+        }
+        try {
+            LiveCollection live = new LiveCollection(path, threads);
+            live.watch();
+            return new Planner(live);
+        } catch (IOException e) {
+            System.err.println("Cannot watch " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Loads the collection once.
+     *
+     * @param data     the csv file or directory of shards, or null for the built in collection.
+     * @param snapshot the binary snapshot to open (or write), or null for none.
+     * @param threads  the number of threads to load on.
+     * @return the table of games.
+     */
+    private static GameTable loadCollection(Path data, Path snapshot, int threads) {
+        if (snapshot != null && Files.exists(snapshot)) {
+            return GamesLoader.loadSnapshot(snapshot);
+        }
+        GameTable table = data != null ? GamesLoader.loadTable(data, threads)
+                : GamesLoader.loadTable(DEFAULT_COLLECTION, threads);
+        if (snapshot != null) {
+            GamesLoader.writeSnapshot(table, snapshot);
+        }
+        return table;
     }
 
 
@@ -1,9 +1,7 @@
 package student;
 
 
-import java.util.List;
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
+import java.util.Objects;
 
 /**
  * Data Class for the Board Game Object.
@@ -14,6 +12,8 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 public class BoardGame {
     /** Name of the board game. */
     private final String name;
+    /** Normalized key of the name (see {@link NameKey}), for matching and sorting names. */
+    private final String nameKey;
     /** Unique identifier of the board game. */
     private final int id;
     /** Minimum number of players. */
@@ -32,6 +32,8 @@ public class BoardGame {
     private final double averageRating;
     /** Year the game was published. */
     private final int yearPublished;
+    /** Hash of the identity (name and id), computed once. */
+    private final int hash;
 
     /**
      * Constructor for the BoardGame object.
@@ -49,7 +51,31 @@ public class BoardGame {
      */
     public BoardGame(String name, int id, int minPlayers, int maxPlayers, int minPlayTime,
             int maxPlayTime, double difficulty, int rank, double averageRating, int yearPublished) {
+        this(name, name == null ? null : NameKey.of(name), id, minPlayers, maxPlayers,
+                minPlayTime, maxPlayTime, difficulty, rank, averageRating, yearPublished);
+    }
+
+    /**
+     * Constructor for a game whose name key is already known, as it is for the rows of a
+     * {@link GameTable}.
+     * 
+     * @param name game name
+     * @param nameKey the key of the name, as given by {@link NameKey#of(String)}
+     * @param id unique identifier
+     * @param minPlayers minimum number of players
+     * @param maxPlayers maximum number of players
+     * @param minPlayTime minimum play time in minutes
+     * @param maxPlayTime maximum play time in minutes
+     * @param difficulty average difficulty of the game
+     * @param rank rank of the game
+     * @param averageRating average rating of the game
+     * @param yearPublished year the game was published
+     */
+    BoardGame(String name, String nameKey, int id, int minPlayers, int maxPlayers,
+            int minPlayTime, int maxPlayTime, double difficulty, int rank, double averageRating,
+            int yearPublished) {
         this.name = name;
+        this.nameKey = nameKey;
         this.id = id; // purposefully kept hidden, so not used in filters or sorting
         this.minPlayers = minPlayers;
         this.maxPlayers = maxPlayers;
@@ -59,6 +85,7 @@ public class BoardGame {
         this.rank = rank;
         this.averageRating = averageRating;
         this.yearPublished = yearPublished;
+        this.hash = 31 * Objects.hashCode(name) + id;
     }
 
     /**
@@ -70,6 +97,16 @@ public class BoardGame {
         return name;
     }
 
+    /**
+     * Get the normalized key of the name: case folded with the accents taken off, so names
+     * that only differ in those match and sort together (see {@link NameKey}).
+     * 
+     * @return the name key
+     */
+    public String getNameKey() {
+        return nameKey;
+    }
+
     /**
      * Get the unique identifier of the game.
      * 
@@ -205,33 +242,36 @@ public class BoardGame {
     /**
      * Check if two BoardGame objects are equal.
      * 
-     * Two BoardGame objects are considered equal if all fields are equal, except for the following:
-     * - minPlayers - maxPlayers - maxPlayTime - minPlayTime - difficulty - rank - averageRating -
-     * yearPublished
+     * Two BoardGame objects are considered equal if they have the same name and id. The other
+     * fields (minPlayers, maxPlayers, maxPlayTime, minPlayTime, difficulty, rank, averageRating,
+     * yearPublished) are not part of the identity of a game.
      * 
      * @param obj object to compare
      * @return true if the objects are equal, false otherwise
      */
     @Override
     public boolean equals(Object obj) {
-        return EqualsBuilder.reflectionEquals(this, obj, // exclude the following fields
-                List.of("minPlayers", "maxPlayers", "maxPlayTime", "minPlayTime", "difficulty",
-                        "rank", "averageRating", "yearPublished"));
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        BoardGame other = (BoardGame) obj;
+        return id == other.id && hash == other.hash && Objects.equals(name, other.name);
     }
 
     /**
      * Get the hash code of the object.
      * 
-     * The hash code is based on all fields, except for the following: - minPlayers - maxPlayers -
-     * maxPlayTime - minPlayTime - difficulty - rank - averageRating - yearPublished
+     * The hash code is based on the name and id (the same fields as equals), and is computed
+     * once when the game is built.
      * 
      * @return hash code of the object
      */
     @Override
     public int hashCode() {
-        return HashCodeBuilder.reflectionHashCode(this, // exclude the following fields
-                List.of("minPlayers", "maxPlayers", "maxPlayTime", "minPlayTime", "difficulty",
-                        "rank", "averageRating", "yearPublished"));
+        return hash;
     }
 
 
@@ -0,0 +1,249 @@
+package student;
+
+/**
+ * Statistics of one column of a {@link GameTable}, for estimating how many rows a condition
+ * matches: the min and max, the number of distinct values, of zeros and of missing values, and
+ * an equi-depth histogram.
+ *
+ * The histogram splits the rows with a value, in sorted order, into up to {@link #BUCKETS}
+ * buckets holding the same number of rows, and keeps the largest value of each. A range then
+ * counts the buckets it covers, plus the part of each bucket it cuts through assuming its values
+ * are spread evenly between the bucket's bounds. A value that fills whole buckets (such as the 0
+ * of a column that is mostly unknown) gets buckets with the same bounds, and is counted exactly.
+ * An estimate is off by at most about the rows of the buckets the range ends in.
+ *
+ * Everything is read off the column's sort permutation in one pass, with no sorting. Whole
+ * number values are treated as discrete, so the range 3 to 4 covers two values of a bucket from 1
+ * to 10. Missing decimal values are NaN (sorted last), whole numbers are never missing. For the
+ * name column, the values are the positions of the distinct names in name order, so min is 0,
+ * max is distinct - 1 and zeros counts the empty names.
+ *
+ * The table builds the statistics of every column when it is loaded (see
+ * {@link GameTable#stats(GameData)}).
+ */
+public final class ColumnStats {
+    /** Max number of histogram buckets. */
+    public static final int BUCKETS = 64;
+
+    /** The column. */
+    private final GameData column;
+    /** Number of rows in the table. */
+    private final int rows;
+    /** Number of rows with a value. */
+    private final int valued;
+    /** Number of distinct values. */
+    private final int distinct;
+    /** Number of rows whose value is zero (or an empty name). */
+    private final int zeros;
+    /** Smallest value, NaN if no row has one. */
+    private final double min;
+    /** Largest value, NaN if no row has one. */
+    private final double max;
+    /** Largest value of each bucket. */
+    private final double[] bounds;
+    /** Number of rows up to the end of each bucket. */
+    private final int[] ends;
+    /** True if the values are whole numbers. */
+    private final boolean discrete;
+    /** Time taken to compute the statistics, in nanoseconds. */
+    private final long buildNanos;
+
+    /**
+     * Computes the statistics of a column.
+     *
+     * @param table  the table.
+     * @param column the column.
+     */
+    ColumnStats(GameTable table, GameData column) {
+        long start = System.nanoTime();
+        this.column = column;
+        this.rows = table.size();
+        this.discrete = !GameTable.isDecimal(column);
+        int[] permutation = table.permutation(column);
+        int[] codes = column == GameData.NAME ? table.nameCodes() : null;
+        String[] keys = column == GameData.NAME ? table.keys() : null;
+        int[] ints = discrete && codes == null ? table.intColumn(column) : null;
+        double[] doubles = discrete ? null : table.doubleColumn(column);
+
+        int count = rows;
+        if (doubles != null) {
+            while (count > 0 && Double.isNaN(doubles[permutation[count - 1]])) {
+                count--;
+            }
+        }
+        this.valued = count;
+        int buckets = Math.min(BUCKETS, count);
+        this.bounds = new double[buckets];
+        this.ends = new int[buckets];
+        int distinctValues = 0;
+        int zeroValues = 0;
+        double value = Double.NaN;
+        String key = null;
+        int bucket = 0;
+        for (int i = 0; i < count; i++) {
+            int row = permutation[i];
+            boolean changed;
+            if (keys != null) {
+                String next = keys[codes[row]];
+                changed = !next.equals(key);
+                key = next;
+                value = changed ? distinctValues : value;
+                zeroValues += next.isEmpty() ? 1 : 0;
+            } else {
+                double next = ints != null ? ints[row] : doubles[row];
+                changed = i == 0 || next != value;
+                value = next;
+                zeroValues += next == 0 ? 1 : 0;
+            }
+            distinctValues += changed ? 1 : 0;
+            if (bucket < buckets && i == (int) ((long) (bucket + 1) * count / buckets) - 1) {
+                bounds[bucket] = value;
+                ends[bucket] = i + 1;
+                bucket++;
+            }
+        }
+        this.distinct = distinctValues;
+        this.zeros = zeroValues;
+        this.min = count == 0 ? Double.NaN : keys != null ? 0 : ints != null
+                ? ints[permutation[0]] : doubles[permutation[0]];
+        this.max = count == 0 ? Double.NaN : value;
+        this.buildNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Get the column.
+     *
+     * @return the column.
+     */
+    public GameData getColumn() {
+        return column;
+    }
+
+    /**
+     * Get the number of rows in the table.
+     *
+     * @return the number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of distinct values.
+     *
+     * @return the distinct count.
+     */
+    public int getDistinct() {
+        return distinct;
+    }
+
+    /**
+     * Get the number of rows whose value is zero, or whose name is empty.
+     *
+     * @return the zero count.
+     */
+    public int getZeros() {
+        return zeros;
+    }
+
+    /**
+     * Get the number of rows with no value (NaN in a decimal column).
+     *
+     * @return the missing count.
+     */
+    public int getNulls() {
+        return rows - valued;
+    }
+
+    /**
+     * Get the smallest value.
+     *
+     * @return the min, or NaN if no row has a value.
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Get the largest value.
+     *
+     * @return the max, or NaN if no row has a value.
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Get the largest value of each histogram bucket. Every bucket holds the same number of rows,
+     * give or take one.
+     *
+     * @return a copy of the bucket bounds, in ascending order.
+     */
+    public double[] getBuckets() {
+        return bounds.clone();
+    }
+
+    /**
+     * Get the time it took to compute the statistics.
+     *
+     * @return the time in nanoseconds.
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * Estimates the number of rows whose value is between two bounds, both included. An empty
+     * range (low after high, or either one NaN) matches nothing.
+     *
+     * A single value is estimated as the rows of the buckets holding only that value, or the
+     * average number of rows per distinct value, whichever is more.
+     *
+     * @param low  the lowest value in the range.
+     * @param high the highest value in the range.
+     * @return the estimated number of rows.
+     */
+    public long estimate(double low, double high) {
+        if (!(low <= high) || valued == 0 || high < min || low > max) {
+            return 0;
+        }
+        double total = 0;
+        int start = 0;
+        double lower = min;
+        for (int b = 0; b < bounds.length; b++) {
+            double upper = bounds[b];
+            int count = ends[b] - start;
+            if (low <= lower && high >= upper) {
+                total += count;
+            } else if (upper > lower && low <= upper && high >= lower) {
+                double width = upper - lower + (discrete ? 1 : 0);
+                double covered = Math.min(high, upper) - Math.max(low, lower) + (discrete ? 1 : 0);
+                total += count * Math.max(0, Math.min(1, covered / width));
+            }
+            start = ends[b];
+            lower = upper;
+        }
+        if (low == high) {
+            total = Math.max(total, (double) valued / distinct);
+        }
+        return Math.round(total);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d rows, %d distinct, min %s, max %s, %d zeros, %d nulls,"
+                + " built in %.3f ms", column.getColumnName(), rows, distinct, format(min),
+                format(max), zeros, getNulls(), buildNanos / 1_000_000.0);
+    }
+
+    /**
+     * Formats a value, without a fraction if it is a whole number.
+     *
+     * @param value the value.
+     * @return the text.
+     */
+    private String format(double value) {
+        return discrete && !Double.isNaN(value) ? String.valueOf((long) value)
+                : String.valueOf(value);
+    }
+}
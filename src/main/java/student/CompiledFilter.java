@@ -0,0 +1,522 @@
+package student;
+
+import java.util.BitSet;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * A single filter condition (column, operation and value) that has already been parsed.
+ *
+ * The literal is parsed exactly once when the condition is compiled, and the condition is
+ * bound to a primitive getter on {@link BoardGame}, so testing a game is a single primitive
+ * comparison. Instances are immutable, and can be shared between planners and threads.
+ *
+ * A condition can also be evaluated against a {@link GameTable}, in which case it runs as a
+ * loop over the primitive column and produces a bitmap of the matching row ids.
+ *
+ * Use {@link #of(GameData, Operations, String)} to build one, or {@link FilterCompiler} to
+ * build them from filter text.
+ */
+public abstract class CompiledFilter {
+    /** The column the condition is on. */
+    private final GameData column;
+    /** The operation to apply. */
+    private final Operations operator;
+    /** The value as it was written in the filter. */
+    private final String literal;
+
+    /**
+     * Constructor for the shared parts of a condition.
+     *
+     * @param column   the column to filter on.
+     * @param operator the operation to apply.
+     * @param literal  the value as written in the filter.
+     */
+    private CompiledFilter(GameData column, Operations operator, String literal) {
+        this.column = column;
+        this.operator = operator;
+        this.literal = literal;
+    }
+
+    /**
+     * Get the column the condition is on.
+     *
+     * @return the column.
+     */
+    public GameData getColumn() {
+        return column;
+    }
+
+    /**
+     * Get the operation of the condition.
+     *
+     * @return the operation.
+     */
+    public Operations getOperator() {
+        return operator;
+    }
+
+    /**
+     * Get the value of the condition, as it was written in the filter.
+     *
+     * @return the literal value.
+     */
+    public String getLiteral() {
+        return literal;
+    }
+
+    /**
+     * Tests a game against the condition.
+     *
+     * @param game the game to test.
+     * @return true if the game matches the condition, false otherwise.
+     */
+    public abstract boolean test(BoardGame game);
+
+    /**
+     * Tests a row of a table against the condition.
+     *
+     * @param table the table holding the row.
+     * @param row   the row id.
+     * @return true if the row matches the condition, false otherwise.
+     */
+    public abstract boolean test(GameTable table, int row);
+
+    /**
+     * Tests every row of a table against the condition.
+     *
+     * @param table the table to scan.
+     * @return a new bitmap with a bit set for every matching row id.
+     */
+    public abstract BitSet evaluate(GameTable table);
+
+    /**
+     * Finds the rows that match the condition using the sorted index of the column.
+     *
+     * @param table the table to search.
+     * @return the matching slice of the column index, or null if the condition cannot be
+     *         answered by an index (name conditions and not equals).
+     */
+    SortedIndex.Slice slice(GameTable table) {
+        return null;
+    }
+
+    /**
+     * Estimates how many rows of a table match the condition, so the parts of a
+     * {@link FilterExpression} can be run most selective first: the size of the cached bitmap if
+     * there is one, else an estimate from the {@link ColumnStats} of the column. Nothing is
+     * built to answer.
+     *
+     * @param table the table.
+     * @return the estimated number of matching rows.
+     */
+    long estimate(GameTable table) {
+        BitSet cached = table.cachedBitmap(this);
+        return cached != null ? cached.cardinality() : estimate(table.stats(column));
+    }
+
+    /**
+     * Estimates how many rows match the condition from the statistics of its column.
+     *
+     * @param stats the statistics of the column.
+     * @return the estimated number of matching rows, half the table if nothing is known.
+     */
+    long estimate(ColumnStats stats) {
+        return stats.getRows() / 2;
+    }
+
+    /**
+     * Get how {@link #evaluate(GameTable)} finds the rows, for a {@link QueryPlan}.
+     *
+     * @return the access path.
+     */
+    String scanPath() {
+        return "column scan";
+    }
+
+    /**
+     * Builds a compiled condition.
+     *
+     * Matches the behavior of {@link Filters#filter(BoardGame, GameData, Operations, String)}:
+     * a numeric literal that does not parse, or an operation that is not valid for the column
+     * (such as contains on a number), builds a condition that matches no games.
+     *
+     * @param column   the column to filter on.
+     * @param operator the operation to apply.
+     * @param literal  the value to compare against.
+     * @return the compiled condition.
+     */
+    public static CompiledFilter of(GameData column, Operations operator, String literal) {
+        if (column == GameData.NAME) {
+            return new NameFilter(operator, literal);
+        }
+        if (operator == Operations.CONTAINS) {
+            return new NoMatch(column, operator, literal);
+        }
+        try {
+            if (column == GameData.RATING || column == GameData.DIFFICULTY) {
+                return new DoubleFilter(column, operator, literal, Double.parseDouble(literal));
+            }
+            return new IntFilter(column, operator, literal, Integer.parseInt(literal));
+        } catch (NumberFormatException e) {
+            return new NoMatch(column, operator, literal);
+        }
+    }
+
+    /**
+     * Get the int getter for a whole number column.
+     *
+     * @param column the column.
+     * @return the getter for the column.
+     * @throws IllegalArgumentException if the column is not an int column.
+     */
+    static ToIntFunction<BoardGame> intGetter(GameData column) {
+        switch (column) {
+            case ID:
+                return BoardGame::getId;
+            case RANK:
+                return BoardGame::getRank;
+            case MIN_PLAYERS:
+                return BoardGame::getMinPlayers;
+            case MAX_PLAYERS:
+                return BoardGame::getMaxPlayers;
+            case MIN_TIME:
+                return BoardGame::getMinPlayTime;
+            case MAX_TIME:
+                return BoardGame::getMaxPlayTime;
+            case YEAR:
+                return BoardGame::getYearPublished;
+            default:
+                throw new IllegalArgumentException("Not an int column: " + column);
+        }
+    }
+
+    /**
+     * Get the double getter for a decimal column.
+     *
+     * @param column the column.
+     * @return the getter for the column.
+     * @throws IllegalArgumentException if the column is not a double column.
+     */
+    static ToDoubleFunction<BoardGame> doubleGetter(GameData column) {
+        switch (column) {
+            case RATING:
+                return BoardGame::getRating;
+            case DIFFICULTY:
+                return BoardGame::getDifficulty;
+            default:
+                throw new IllegalArgumentException("Not a double column: " + column);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return column.getColumnName() + operator.getOperator() + literal;
+    }
+
+    /**
+     * A condition on a whole number column.
+     *
+     * Every operation is stored as an inclusive range (and if it is negated, as is the case for
+     * not equals), so a test is the same comparison no matter the operation.
+     */
+    private static final class IntFilter extends CompiledFilter {
+        /** Getter for the column. */
+        private final ToIntFunction<BoardGame> getter;
+        /** Lowest value that is in the range. */
+        private final int low;
+        /** Highest value that is in the range. */
+        private final int high;
+        /** True if the condition matches values outside of the range. */
+        private final boolean negated;
+
+        /**
+         * Constructor for an int condition.
+         *
+         * @param column   the column.
+         * @param operator the operation.
+         * @param literal  the value as written.
+         * @param value    the parsed value.
+         */
+        IntFilter(GameData column, Operations operator, String literal, int value) {
+            super(column, operator, literal);
+            this.getter = intGetter(column);
+            this.negated = operator == Operations.NOT_EQUALS;
+            switch (operator) {
+                case GREATER_THAN:
+                    this.low = value == Integer.MAX_VALUE ? value : value + 1;
+                    this.high = value == Integer.MAX_VALUE ? value - 1 : Integer.MAX_VALUE;
+                    break;
+                case GREATER_THAN_EQUALS:
+                    this.low = value;
+                    this.high = Integer.MAX_VALUE;
+                    break;
+                case LESS_THAN:
+                    this.low = value == Integer.MIN_VALUE ? value + 1 : Integer.MIN_VALUE;
+                    this.high = value == Integer.MIN_VALUE ? value : value - 1;
+                    break;
+                case LESS_THAN_EQUALS:
+                    this.low = Integer.MIN_VALUE;
+                    this.high = value;
+                    break;
+                default: // equals and not equals
+                    this.low = value;
+                    this.high = value;
+            }
+        }
+
+        @Override
+        public boolean test(BoardGame game) {
+            int data = getter.applyAsInt(game);
+            return (data >= low && data <= high) != negated;
+        }
+
+        @Override
+        public boolean test(GameTable table, int row) {
+            int data = table.getInt(getColumn(), row);
+            return (data >= low && data <= high) != negated;
+        }
+
+        @Override
+        SortedIndex.Slice slice(GameTable table) {
+            return negated ? null : table.index(getColumn()).range(low, high);
+        }
+
+        @Override
+        long estimate(ColumnStats stats) {
+            long matched = stats.estimate(low, high);
+            return negated ? stats.getRows() - matched : matched;
+        }
+
+        @Override
+        public BitSet evaluate(GameTable table) {
+            int[] values = table.intColumn(getColumn());
+            int size = table.size();
+            long[] words = new long[(size + Long.SIZE - 1) / Long.SIZE];
+            for (int row = 0; row < size; row++) {
+                int data = values[row];
+                if ((data >= low && data <= high) != negated) {
+                    words[row >>> 6] |= 1L << row;
+                }
+            }
+            return BitSet.valueOf(words);
+        }
+    }
+
+    /**
+     * A condition on a decimal column.
+     *
+     * Stored as a range in the same way as {@link IntFilter}, using the next representable
+     * double to turn the strict operations into inclusive bounds.
+     */
+    private static final class DoubleFilter extends CompiledFilter {
+        /** Getter for the column. */
+        private final ToDoubleFunction<BoardGame> getter;
+        /** Lowest value that is in the range. */
+        private final double low;
+        /** Highest value that is in the range. */
+        private final double high;
+        /** True if the condition matches values outside of the range. */
+        private final boolean negated;
+
+        /**
+         * Constructor for a double condition.
+         *
+         * @param column   the column.
+         * @param operator the operation.
+         * @param literal  the value as written.
+         * @param value    the parsed value.
+         */
+        DoubleFilter(GameData column, Operations operator, String literal, double value) {
+            super(column, operator, literal);
+            this.getter = doubleGetter(column);
+            this.negated = operator == Operations.NOT_EQUALS;
+            switch (operator) {
+                case GREATER_THAN:
+                    // nothing is greater than infinity, so leave an empty range (NaN never matches)
+                    this.low = value == Double.POSITIVE_INFINITY ? Double.NaN : Math.nextUp(value);
+                    this.high = Double.POSITIVE_INFINITY;
+                    break;
+                case GREATER_THAN_EQUALS:
+                    this.low = value;
+                    this.high = Double.POSITIVE_INFINITY;
+                    break;
+                case LESS_THAN:
+                    this.low = Double.NEGATIVE_INFINITY;
+                    this.high = value == Double.NEGATIVE_INFINITY ? Double.NaN : Math.nextDown(value);
+                    break;
+                case LESS_THAN_EQUALS:
+                    this.low = Double.NEGATIVE_INFINITY;
+                    this.high = value;
+                    break;
+                default: // equals and not equals
+                    this.low = value;
+                    this.high = value;
+            }
+        }
+
+        @Override
+        public boolean test(BoardGame game) {
+            double data = getter.applyAsDouble(game);
+            return (data >= low && data <= high) != negated;
+        }
+
+        @Override
+        public boolean test(GameTable table, int row) {
+            double data = table.getDouble(getColumn(), row);
+            return (data >= low && data <= high) != negated;
+        }
+
+        @Override
+        SortedIndex.Slice slice(GameTable table) {
+            return negated ? null : table.index(getColumn()).range(low, high);
+        }
+
+        @Override
+        long estimate(ColumnStats stats) {
+            long matched = stats.estimate(low, high);
+            return negated ? stats.getRows() - matched : matched;
+        }
+
+        @Override
+        public BitSet evaluate(GameTable table) {
+            double[] values = table.doubleColumn(getColumn());
+            int size = table.size();
+            long[] words = new long[(size + Long.SIZE - 1) / Long.SIZE];
+            for (int row = 0; row < size; row++) {
+                double data = values[row];
+                if ((data >= low && data <= high) != negated) {
+                    words[row >>> 6] |= 1L << row;
+                }
+            }
+            return BitSet.valueOf(words);
+        }
+    }
+
+    /**
+     * A condition on the name of the game, which compares {@link NameKey}s, so it ignores case
+     * and accents.
+     *
+     * On a table, contains is answered by the table's {@link NameIndex}, and the other
+     * operations test each distinct name's key once.
+     */
+    private static final class NameFilter extends CompiledFilter {
+        /** The key of the value. */
+        private final String key;
+
+        /**
+         * Constructor for a name condition.
+         *
+         * @param operator the operation.
+         * @param literal  the value as written.
+         */
+        NameFilter(Operations operator, String literal) {
+            super(GameData.NAME, operator, literal);
+            this.key = NameKey.of(literal);
+        }
+
+        @Override
+        public boolean test(BoardGame game) {
+            return Filters.filterKey(game.getNameKey(), getOperator(), key);
+        }
+
+        @Override
+        public boolean test(GameTable table, int row) {
+            return Filters.filterKey(table.key(row), getOperator(), key);
+        }
+
+        /**
+         * Estimates an exact name as the average number of games per distinct name, and not
+         * equals as the rest. Nothing is known about the other operations.
+         *
+         * @param stats the statistics of the name column.
+         * @return the estimated number of matching rows.
+         */
+        @Override
+        long estimate(ColumnStats stats) {
+            long perName = stats.getDistinct() == 0 ? 0
+                    : Math.round((double) stats.getRows() / stats.getDistinct());
+            switch (getOperator()) {
+                case EQUALS:
+                    return perName;
+                case NOT_EQUALS:
+                    return stats.getRows() - perName;
+                default:
+                    return super.estimate(stats);
+            }
+        }
+
+        @Override
+        String scanPath() {
+            return getOperator() == Operations.CONTAINS ? "name index" : "name keys";
+        }
+
+        /**
+         * Looks contains up in the name index. Other operations test each distinct name's key
+         * once, then map the result to rows by name code.
+         *
+         * @param table the table to scan.
+         * @return a new bitmap with a bit set for every matching row id.
+         */
+        @Override
+        public BitSet evaluate(GameTable table) {
+            if (getOperator() == Operations.CONTAINS) {
+                NameIndex index = table.nameIndex();
+                return index.rows(index.matches(key));
+            }
+            String[] keys = table.keys();
+            boolean[] matches = new boolean[keys.length];
+            for (int code = 0; code < keys.length; code++) {
+                matches[code] = Filters.filterKey(keys[code], getOperator(), key);
+            }
+            int[] codes = table.nameCodes();
+            int size = table.size();
+            long[] words = new long[(size + Long.SIZE - 1) / Long.SIZE];
+            for (int row = 0; row < size; row++) {
+                if (matches[codes[row]]) {
+                    words[row >>> 6] |= 1L << row;
+                }
+            }
+            return BitSet.valueOf(words);
+        }
+    }
+
+    /** A condition that can never match, such as a number that did not parse. */
+    private static final class NoMatch extends CompiledFilter {
+        /**
+         * Constructor for a condition that matches nothing.
+         *
+         * @param column   the column.
+         * @param operator the operation.
+         * @param literal  the value as written.
+         */
+        NoMatch(GameData column, Operations operator, String literal) {
+            super(column, operator, literal);
+        }
+
+        @Override
+        public boolean test(BoardGame game) {
+            return false;
+        }
+
+        @Override
+        public boolean test(GameTable table, int row) {
+            return false;
+        }
+
+        @Override
+        public BitSet evaluate(GameTable table) {
+            return new BitSet();
+        }
+
+        @Override
+        SortedIndex.Slice slice(GameTable table) {
+            return new SortedIndex.Slice(null, 0, 0);
+        }
+
+        @Override
+        long estimate(ColumnStats stats) {
+            return 0;
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package student;
 
-import java.util.Collections;
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
@@ -15,12 +22,19 @@ import java.util.Random;
  * and for a client to build a list of games they want to play, and
  * save out that list. Most of the features are focused on
  * providing a progressive filter to find games, and then add them to the list.
+ * 
+ * In batch mode (see {@link #batch}) the same commands are read from a file or a pipe instead,
+ * without the welcome, prompts or goodbye, and the output is collected in a large buffer that is
+ * only flushed once each command is done, so scripts of thousands of commands are not held up
+ * by the terminal.
  */
 public class ConsoleApp {
-    /** Interaction with the system terminal/command line. */
-    private static final Scanner IN = new Scanner(System.in);
     /** Default name to save the game list to. */
     private static final String DEFAULT_FILENAME = "games_list.txt";
+    /** Size of the output buffer in batch mode. */
+    private static final int BATCH_BUFFER_SIZE = 1 << 16;
+    /** Max number of names suggested when a name is not found. */
+    private static final int MAX_SUGGESTIONS = 3;
     /** random number generator only needs to be built once. */
     private static final Random RND = new Random();
     /** scanner to help with processing the command string. */
@@ -29,25 +43,70 @@ public class ConsoleApp {
     private final IGameList gameList;
     /** The planner to help filter games. */
     private final IPlanner planner;
+    /** Where the commands are read from, the terminal/command line unless in batch mode. */
+    private final Scanner in;
+    /** Where the output goes. */
+    private final PrintStream out;
+    /** Writes filter results to the output, reusing one buffer for every result. */
+    private final ResultWriter results;
+    /** Whether commands come from a script, so there is no one to welcome or prompt. */
+    private final boolean batch;
 
     /**
-     * Constructor for the console app.
+     * Constructor for the console app, reading from and writing to the terminal.
      * 
      * @param gameList the game list to manage.
      * @param planner  the planner to help filter games.
      */
     public ConsoleApp(IGameList gameList, IPlanner planner) {
+        this(gameList, planner, System.in, System.out, false);
+    }
+
+    /**
+     * Constructor for the console app.
+     * 
+     * @param gameList the game list to manage.
+     * @param planner  the planner to help filter games.
+     * @param in       where to read the commands from.
+     * @param out      where to write the output.
+     * @param batch    true to skip the welcome, prompts and goodbye, for commands from a script.
+     */
+    public ConsoleApp(IGameList gameList, IPlanner planner, InputStream in, PrintStream out,
+            boolean batch) {
         this.gameList = gameList;
         this.planner = planner;
-    }    
+        this.in = new Scanner(in, StandardCharsets.UTF_8);
+        this.out = out;
+        this.results = new ResultWriter(out);
+        this.batch = batch;
+    }
+
+    /**
+     * Builds a console app in batch mode, reading commands from a file or pipe and writing to
+     * standard out through a large buffer rather than the line flushed {@link System#out}.
+     * 
+     * @param gameList the game list to manage.
+     * @param planner  the planner to help filter games.
+     * @param in       where to read the commands from.
+     * @return the console app, ready to {@link #start()}.
+     */
+    public static ConsoleApp batch(IGameList gameList, IPlanner planner, InputStream in) {
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), BATCH_BUFFER_SIZE), false,
+                StandardCharsets.UTF_8);
+        return new ConsoleApp(gameList, planner, in, out, true);
+    }
 
     /**
      * Start the console application.
      * 
-     * Processes the main menu commands and redirects.
+     * Processes the main menu commands and redirects, until exit or the end of the input.
+     * The output is flushed after every command.
      */
     public void start() {
-        printOutput("%s%n", ConsoleText.WELCOME);
+        if (!batch) {
+            printOutput("%s%n", ConsoleText.WELCOME);
+        }
         ConsoleText ct = nextCommand();
         while (ct != ConsoleText.CMD_EXIT) {
             switch (ct) {
@@ -72,11 +131,15 @@ public class ConsoleApp {
             // clean up scanner.
             current.close();
             current = null;
+            out.flush();
             // get the next prompt
             ct = nextCommand();
         }
 
-        printOutput("%s%n", ConsoleText.GOODBYE);
+        if (!batch) {
+            printOutput("%s%n", ConsoleText.GOODBYE);
+        }
+        out.flush();
     }
 
     /**
@@ -156,9 +219,9 @@ public class ConsoleApp {
                     }
                 }
 
-                result = planner.filter(parts[0], sortON, ascending);  // NOTICE: sortON and ascending are used here.
+                result = filterOrReport(parts[0], sortON, ascending);  // NOTICE: sortON and ascending are used here.
             } else {
-                result = planner.filter(filter); // default sort
+                result = filterOrReport(filter, sortON, true); // default sort
             }
         } else {
             printOutput("%s%n", ConsoleText.NO_FILTER);
@@ -167,18 +230,46 @@ public class ConsoleApp {
         printFilterStream(result, sortON);
     }
 
+    /**
+     * Applies a filter, printing why it is invalid instead if it cannot be read.
+     *
+     * @param filter    the filter.
+     * @param sortON    the column to sort on.
+     * @param ascending the direction of the sort.
+     * @return the filtered games, or null if the filter is invalid.
+     */
+    private Stream<BoardGame> filterOrReport(String filter, GameData sortON, boolean ascending) {
+        try {
+            return planner.filter(filter, sortON, ascending);
+        } catch (IllegalArgumentException e) {
+            printOutput("%s%s%n", ConsoleText.INVALID_FILTER, e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Print the filtered stream of games.
      * 
+     * The games are written through a {@link ResultWriter} as they come off the stream, in the
+     * same "%d: %s%n" form as {@link BoardGame#toStringWithInfo}, without a format call per game.
+     * 
      * @param games  the stream of games to print.
      * @param sortON also is the column used for 'extra info' based on the sort
      *               type.
      */
-    private static void printFilterStream(Stream<BoardGame> games, GameData sortON) {
-        int counter = 1;
-        List<BoardGame> gameList = games != null ? games.toList() : Collections.emptyList();
-        for (BoardGame game : gameList) {
-            printOutput("%d: %s%n", counter++, game.toStringWithInfo(sortON));
+    private void printFilterStream(Stream<BoardGame> games, GameData sortON) {
+        if (games == null) {
+            return;
+        }
+        try {
+            results.begin(ResultWriter.Format.TEXT);
+            for (Iterator<BoardGame> it = games.iterator(); it.hasNext();) {
+                results.write(it.next(), sortON);
+            }
+            results.end();
+            results.flush();
+        } catch (IOException e) {
+            System.err.println("Error printing games: " + e.getMessage());
         }
     }
 
@@ -206,6 +297,9 @@ public class ConsoleApp {
                         gameList.addToList(toAdd, planner.filter(""));
                     } catch (IllegalArgumentException e) {
                         printOutput("%s %s%n", ConsoleText.INVALID_LIST, toAdd);
+                        if (isName(toAdd)) {
+                            printSuggestions(planner.suggest(toAdd, MAX_SUGGESTIONS));
+                        }
                     }
                     break;
                 case CMD_REMOVE:
@@ -217,6 +311,9 @@ public class ConsoleApp {
                         gameList.removeFromList(remove);
                     } catch (IllegalArgumentException e) {
                         printOutput("%s %s%n", ConsoleText.INVALID_LIST, remove);
+                        if (isName(remove)) {
+                            printSuggestions(gameList.suggest(remove, MAX_SUGGESTIONS));
+                        }
                     }
                     break;
                 case CMD_SAVE:
@@ -240,6 +337,27 @@ public class ConsoleApp {
         }
     }
 
+    /**
+     * Checks if a list argument is a game name, rather than a number or a range of numbers.
+     * 
+     * @param str the argument.
+     * @return true if it is a name.
+     */
+    private static boolean isName(String str) {
+        return !str.matches("[\\d\\s-]+");
+    }
+
+    /**
+     * Print the names suggested for a name that was not found, if there are any.
+     * 
+     * @param names the suggested names, closest first.
+     */
+    private void printSuggestions(List<String> names) {
+        if (!names.isEmpty()) {
+            printOutput("%s%s%n", ConsoleText.DID_YOU_MEAN, String.join(", ", names));
+        }
+    }
+
     /**
      * Print the current list of games.
      */
@@ -258,11 +376,16 @@ public class ConsoleApp {
     /**
      * Get the next command from the user.
      * 
+     * Blank lines are skipped, and the end of the input is taken as exit.
+     * 
      * @return the next command.
      */
     private ConsoleText nextCommand() {
-        if (current == null || !current.hasNext()) {
+        while (current == null || !current.hasNext()) {
             String line = getInput("%s", ConsoleText.PROMPT);
+            if (line == null) {
+                return ConsoleText.CMD_EXIT;
+            }
             current = new Scanner(line.trim()); // now split up the line
         }
         return ConsoleText.fromString(current.next()); // get the command
@@ -283,17 +406,20 @@ public class ConsoleApp {
      * @param format the format string to print.
      * @param args   the arguments to the format string.
      * 
-     * @return the input from the client as a string, one line at a time.
+     * In batch mode nothing is printed, as there is no one to prompt.
+     * 
+     * @return the input from the client as a string, one line at a time, or null at the end of
+     *         the input.
      */
-    private static String getInput(String format, Object... args) {
-        System.out.printf(format, args);
-        if (IN == null) {
-            return "";
+    private String getInput(String format, Object... args) {
+        if (!batch) {
+            out.printf(format, args);
+            out.flush();
         }
-        if (!IN.hasNextLine()) {
-            return "";
+        if (!in.hasNextLine()) {
+            return null;
         }
-        return IN.nextLine();
+        return in.nextLine();
     }
 
 
@@ -307,8 +433,8 @@ public class ConsoleApp {
      * @param format the format string to print.
      * @param output the output to print (array to match the format).
      */
-    private static void printOutput(String format, Object... output) {
-        System.out.printf(format, output);
+    private void printOutput(String format, Object... output) {
+        out.printf(format, output);
     }
 
     /**
@@ -328,7 +454,7 @@ public class ConsoleApp {
         /** various commands and text. */
         WELCOME, HELP, INVALID, GOODBYE, PROMPT, NO_FILTER, NO_GAMES_LIST, FILTERED_CLEAR, LIST_HELP, FILTER_HELP,
         /** commands continued. */
-        INVALID_LIST, EASTER_EGG, CMD_EASTER_EGG,
+        INVALID_LIST, INVALID_FILTER, DID_YOU_MEAN, EASTER_EGG, CMD_EASTER_EGG,
         /** commands general. */
         CMD_EXIT, CMD_HELP, CMD_QUESTION, CMD_FILTER, CMD_LIST,
         /** commands specific to lists and filters. */
@@ -0,0 +1,82 @@
+package student;
+
+/**
+ * Bounded Levenshtein distance, for suggesting names close to one that was mistyped.
+ *
+ * Only distances up to a bound are of interest, so only the diagonal band of the table within
+ * the bound is filled, and the computation stops as soon as every cell of a row is over the
+ * bound. Two strings whose lengths differ by more than the bound are rejected without filling
+ * anything. A check is then about 2 * bound + 1 cells a char instead of a full table.
+ */
+final class EditDistance {
+    /** private constructor to prevent instantiation. */
+    private EditDistance() {
+    }
+
+    /**
+     * Gets the largest distance a suggestion may have for a typed text of some length: one edit
+     * for up to four chars, two for up to eight, and three past that.
+     *
+     * @param length the length of the typed text.
+     * @return the max distance.
+     */
+    static int allowed(int length) {
+        return length <= 4 ? 1 : length <= 8 ? 2 : 3;
+    }
+
+    /**
+     * Computes the edit distance (insertions, deletions and substitutions) between two strings,
+     * if it is at most a bound. Chars are compared exactly, so lower case both for a case
+     * insensitive distance.
+     *
+     * @param a   the first string.
+     * @param b   the second string.
+     * @param max the bound.
+     * @return the distance, or max + 1 if it is more than max.
+     */
+    static int bounded(String a, String b, int max) {
+        if (a.length() > b.length()) {
+            String swap = a;
+            a = b;
+            b = swap;
+        }
+        int n = a.length();
+        int m = b.length();
+        if (m - n > max) {
+            return max + 1;
+        }
+        int over = max + 1;
+        // row i holds the distances from a[0, i) to b[0, j), only for |i - j| <= max
+        int[] previous = new int[m + 1];
+        int[] row = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j <= max ? j : over;
+        }
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(m, i + max);
+            row[0] = i <= max ? i : over;
+            if (from > 1) {
+                row[from - 1] = over;
+            }
+            int best = row[0];
+            char c = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int cost = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                cost = Math.min(cost, Math.min(previous[j], row[j - 1]) + 1);
+                row[j] = Math.min(cost, over);
+                best = Math.min(best, row[j]);
+            }
+            if (to < m) {
+                row[to + 1] = over;
+            }
+            if (best > max) {
+                return over;
+            }
+            int[] swap = previous;
+            previous = row;
+            row = swap;
+        }
+        return previous[m];
+    }
+}
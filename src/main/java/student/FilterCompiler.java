@@ -0,0 +1,554 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns filter text into a {@link FilterExpression} of {@link CompiledFilter} conditions.
+ *
+ * Filters follow the format described in {@link IPlanner#filter(String, GameData, boolean)}:
+ * conditions of the form column, operation, value, joined with commas or &amp; (and), | (or)
+ * and ! (not), grouped with parentheses, for example
+ *
+ * <pre>
+ * (minplayers&gt;=4 | maxplaytime&lt;30) &amp; !name~=expansion
+ * </pre>
+ *
+ * And binds tighter than or, and not applies to the condition or group right after it.
+ *
+ * The text is read by a tokenizer, which takes the column name, then the operator right after
+ * it, then the value up to the next comma or closing parenthesis, or the next &amp; or | that is
+ * followed by another condition (a known column and an operator). So operator characters inside
+ * a value are part of the value (name~=a&gt;b, name~=Inns &amp; Cathedrals), and a value can hold
+ * parentheses as long as they are balanced (name==catan (2nd edition)). A value can also be
+ * written in double quotes, with \" and \\ for a quote and a backslash, to hold any of those
+ * characters.
+ *
+ * The parser is lenient where the comma only format always was: a comma separated condition
+ * that cannot be parsed (no operation, or an unknown column) is left out, missing operands are
+ * left out, unclosed parentheses are closed at the end and stray closing ones are skipped. A
+ * filter with no valid condition compiles to {@link FilterExpression#ALL}. A condition that
+ * cannot be parsed anywhere else (joined with | or &amp;, negated, or in a group) is an error,
+ * since leaving it out would match more games than the filter asks for.
+ *
+ * Compiled filters are cached by their normalized text (the tokens written back without the
+ * spaces between them), so the same filter written with different spacing is compiled once.
+ * The text as written is also looked up first, so a filter that is used again is not even
+ * tokenized.
+ */
+public final class FilterCompiler {
+    /** Default number of filters to keep compiled. */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /** Compiled filters keyed by normalized filter text. */
+    private final LruCache<String, FilterExpression> cache;
+    /** The same filters keyed by the filter text as written, without leading or trailing space. */
+    private final LruCache<String, FilterExpression> written;
+
+    /**
+     * Constructs a compiler with the default cache size.
+     */
+    public FilterCompiler() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a compiler that caches at most capacity filters.
+     *
+     * @param capacity the max number of filters to keep compiled.
+     */
+    public FilterCompiler(int capacity) {
+        this.cache = new LruCache<>(capacity);
+        this.written = new LruCache<>(capacity);
+    }
+
+    /**
+     * Compiles a filter, or returns the cached result if the same filter was already compiled.
+     *
+     * @param filter the filter text.
+     * @return the expression.
+     * @throws IllegalArgumentException if a condition that is joined with | or &amp;, negated or
+     *                                  grouped cannot be parsed.
+     */
+    public FilterExpression compileExpression(String filter) {
+        String text = filter.strip();
+        FilterExpression expression = written.get(text);
+        if (expression != null) {
+            return expression;
+        }
+        List<Token> tokens = tokenize(text);
+        FilterExpression compiled = cache.computeIfAbsent(normalize(tokens),
+                key -> new Parser(tokens).parse());
+        return written.computeIfAbsent(text, key -> compiled);
+    }
+
+    /**
+     * Compiles a filter that only ANDs conditions together, as a list of its conditions.
+     *
+     * Conditions that cannot be parsed (no operation, or an unknown column) are left out, so
+     * an empty filter compiles to an empty list.
+     *
+     * @param filter the filter text.
+     * @return the conditions in the filter, in the order they were written (unmodifiable).
+     * @throws IllegalArgumentException if the filter uses or, not or parentheses that group
+     *                                  anything other than an and.
+     */
+    public List<CompiledFilter> compile(String filter) {
+        List<CompiledFilter> conditions = compileExpression(filter).conditions();
+        if (conditions == null) {
+            throw new IllegalArgumentException("Not a list of conditions: " + filter);
+        }
+        return conditions;
+    }
+
+    /**
+     * Get the number of filters currently cached.
+     *
+     * @return the number of cached filters.
+     */
+    public int cachedCount() {
+        return cache.size();
+    }
+
+    /**
+     * Normalizes filter text so the same filter written with different spacing shares one
+     * cache entry.
+     *
+     * @param filter the filter text.
+     * @return the normalized filter.
+     */
+    static String normalize(String filter) {
+        return normalize(tokenize(filter));
+    }
+
+    /**
+     * Writes tokens back as text, with nothing between them and commas written as &amp;.
+     *
+     * @param tokens the tokens.
+     * @return the normalized filter.
+     */
+    private static String normalize(List<Token> tokens) {
+        StringBuilder sb = new StringBuilder();
+        for (Token token : tokens) {
+            sb.append(token);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes a value so the tokenizer reads it back as the same value: as it is, or in double
+     * quotes if it is empty, has spaces at either end or holds a character that would end it.
+     *
+     * @param value the value.
+     * @return the value as filter text.
+     */
+    static String quote(String value) {
+        boolean plain = !value.isEmpty() && value.strip().equals(value);
+        for (int i = 0; i < value.length() && plain; i++) {
+            plain = ",&|()\"\\".indexOf(value.charAt(i)) < 0;
+        }
+        if (plain) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Splits filter text into tokens.
+     *
+     * @param filter the filter text.
+     * @return the tokens, in order.
+     */
+    private static List<Token> tokenize(String filter) {
+        List<Token> tokens = new ArrayList<>();
+        int pos = 0;
+        int length = filter.length();
+        while (pos < length) {
+            char c = filter.charAt(pos);
+            if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (c == '(' || c == ')' || c == '|' || c == '&' || c == ',') {
+                tokens.add(new Token(c));
+                pos++;
+            } else if (c == '!' && !filter.startsWith(Operations.NOT_EQUALS.getOperator(), pos)) {
+                tokens.add(new Token('!'));
+                pos++;
+            } else {
+                pos = condition(filter, pos, tokens);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Reads a condition: the column, the operator right after it, and the value. Text with no
+     * operator or an empty value is not a condition, and is added as unreadable.
+     *
+     * @param filter the filter text.
+     * @param start  the position the condition starts at.
+     * @param tokens the tokens to add the condition to.
+     * @return the position after the condition.
+     */
+    private static int condition(String filter, int start, List<Token> tokens) {
+        int length = filter.length();
+        int pos = columnEnd(filter, start);
+        String column = filter.substring(start, pos);
+        pos = skipSpace(filter, pos);
+        Operations operator = Operations.startingAt(filter, pos);
+        if (operator == null) {
+            // not a condition, skip to the end of it
+            int end = valueEnd(filter, pos);
+            tokens.add(new Token(filter.substring(start, end).strip()));
+            return end;
+        }
+        pos = skipSpace(filter, pos + operator.getOperator().length());
+        if (pos < length && filter.charAt(pos) == '"') {
+            StringBuilder value = new StringBuilder();
+            for (pos++; pos < length && filter.charAt(pos) != '"'; pos++) {
+                if (filter.charAt(pos) == '\\' && pos + 1 < length) {
+                    pos++;
+                }
+                value.append(filter.charAt(pos));
+            }
+            int end = Math.min(pos + 1, length); // past the closing quote, if there is one
+            tokens.add(value.length() == 0 ? new Token(filter.substring(start, end).strip())
+                    : new Token(column, operator, value.toString()));
+            return end;
+        }
+        int end = valueEnd(filter, pos);
+        String value = filter.substring(pos, end).strip();
+        // with no value there is nothing to compare, so it is as unreadable as no operator
+        tokens.add(value.isEmpty() ? new Token(filter.substring(start, end).strip())
+                : new Token(column, operator, value));
+        return end;
+    }
+
+    /**
+     * Finds the end of an unquoted value: the next comma or closing parenthesis that is not
+     * inside parentheses opened in the value, or the next such &amp; or | that another condition
+     * follows. Any other &amp; or | is part of the value, as in name~=Inns &amp; Cathedrals.
+     *
+     * @param filter the filter text.
+     * @param start  the position the value starts at.
+     * @return the position after the value.
+     */
+    private static int valueEnd(String filter, int start) {
+        int depth = 0;
+        int pos = start;
+        for (; pos < filter.length(); pos++) {
+            char c = filter.charAt(pos);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            } else if (depth == 0 && (c == ',' || (c == '&' || c == '|')
+                    && startsCondition(filter, pos + 1))) {
+                break;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Checks if a condition on a known column starts at a position, after any spaces, ! and
+     * opening parentheses.
+     *
+     * @param filter the filter text.
+     * @param start  the position to look at.
+     * @return true if a column name and an operator follow.
+     */
+    private static boolean startsCondition(String filter, int start) {
+        int pos = start;
+        while (pos < filter.length() && (Character.isWhitespace(filter.charAt(pos))
+                || filter.charAt(pos) == '(' || filter.charAt(pos) == '!'
+                && !filter.startsWith(Operations.NOT_EQUALS.getOperator(), pos))) {
+            pos++;
+        }
+        int end = columnEnd(filter, pos);
+        String column = filter.substring(pos, end);
+        for (GameData data : GameData.values()) {
+            if (data.name().equalsIgnoreCase(column)
+                    || data.getColumnName().equalsIgnoreCase(column)) {
+                return Operations.startingAt(filter, skipSpace(filter, end)) != null;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the end of a column name: letters, digits and underscores.
+     *
+     * @param filter the filter text.
+     * @param start  the position the name starts at.
+     * @return the position after the name.
+     */
+    private static int columnEnd(String filter, int start) {
+        int pos = start;
+        while (pos < filter.length() && (Character.isLetterOrDigit(filter.charAt(pos))
+                || filter.charAt(pos) == '_')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Skips spaces.
+     *
+     * @param filter the filter text.
+     * @param start  the position to start at.
+     * @return the position of the next character that is not a space.
+     */
+    private static int skipSpace(String filter, int start) {
+        int pos = start;
+        while (pos < filter.length() && Character.isWhitespace(filter.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * A token of filter text: a condition, a condition that could not be read, or one of the
+     * characters ( ) , &amp; | !.
+     */
+    private static final class Token {
+        /** The kind of token: C for a condition, ? for an unreadable one, else the character. */
+        private final char kind;
+        /** The column name as written, or the text of an unreadable condition. */
+        private final String text;
+        /** The operation of a condition. */
+        private final Operations operator;
+        /** The value of a condition, unquoted. */
+        private final String value;
+
+        /**
+         * Constructor for a single character token.
+         *
+         * @param kind the character.
+         */
+        Token(char kind) {
+            this(kind, null, null, null);
+        }
+
+        /**
+         * Constructor for a condition that could not be read.
+         *
+         * @param text the text of the condition.
+         */
+        Token(String text) {
+            this('?', text, null, null);
+        }
+
+        /**
+         * Constructor for a condition.
+         *
+         * @param column   the column name as written.
+         * @param operator the operation.
+         * @param value    the value.
+         */
+        Token(String column, Operations operator, String value) {
+            this('C', column, operator, value);
+        }
+
+        /**
+         * Constructor for any token.
+         *
+         * @param kind     the kind.
+         * @param text     the column or text.
+         * @param operator the operation.
+         * @param value    the value.
+         */
+        private Token(char kind, String text, Operations operator, String value) {
+            this.kind = kind;
+            this.text = text;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case 'C':
+                    return text + operator.getOperator() + quote(value);
+                case '?':
+                    return "?" + quote(text);
+                default: // a comma is the same as &
+                    return kind == ',' ? "&" : String.valueOf(kind);
+            }
+        }
+    }
+
+    /**
+     * Recursive descent parser over the tokens of a filter. Each parse method returns null for
+     * a part that holds no valid condition, which its caller leaves out. Conditions written next
+     * to each other with no operator between them, as in (a|b) c, are ANDed.
+     */
+    private static final class Parser {
+        /** The tokens. */
+        private final List<Token> tokens;
+        /** The position of the next token. */
+        private int next;
+        /** The number of parentheses open at the next token. */
+        private int depth;
+
+        /**
+         * Constructor for a parser.
+         *
+         * @param tokens the tokens of the filter.
+         */
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        /**
+         * Parses the whole filter. A stray closing parenthesis is skipped, and what follows it is
+         * ANDed with what came before.
+         *
+         * @return the expression.
+         */
+        FilterExpression parse() {
+            List<FilterExpression> parts = new ArrayList<>();
+            while (true) {
+                add(parts, or());
+                if (next >= tokens.size()) {
+                    break;
+                }
+                next++; // and() reads every operand, so only a stray ) is left unread
+            }
+            return parts.isEmpty() ? FilterExpression.ALL : FilterExpression.and(parts);
+        }
+
+        /**
+         * Parses conditions joined with or.
+         *
+         * @return the expression, or null.
+         */
+        private FilterExpression or() {
+            List<FilterExpression> parts = new ArrayList<>();
+            add(parts, and());
+            while (peek() == '|') {
+                next++;
+                add(parts, and());
+            }
+            return parts.isEmpty() ? null : FilterExpression.or(parts);
+        }
+
+        /**
+         * Parses conditions joined with and.
+         *
+         * @return the expression, or null.
+         */
+        private FilterExpression and() {
+            List<FilterExpression> parts = new ArrayList<>();
+            add(parts, unary());
+            while (peek() == '&' || peek() == ',' || "C?!(".indexOf(peek()) >= 0) {
+                if (peek() == '&' || peek() == ',') {
+                    next++;
+                }
+                add(parts, unary());
+            }
+            return parts.isEmpty() ? null : FilterExpression.and(parts);
+        }
+
+        /**
+         * Parses a condition, a negation or a group in parentheses.
+         *
+         * @return the expression, or null.
+         */
+        private FilterExpression unary() {
+            switch (peek()) {
+                case '!':
+                    next++;
+                    FilterExpression negated = unary();
+                    return negated == null ? null : FilterExpression.not(negated);
+                case '(':
+                    next++;
+                    depth++;
+                    FilterExpression group = or();
+                    depth--;
+                    if (peek() == ')') {
+                        next++;
+                    }
+                    return group;
+                case 'C':
+                    FilterExpression condition = condition(tokens.get(next));
+                    if (condition == null) {
+                        skip("Unknown column in filter: ");
+                    }
+                    next++;
+                    return condition;
+                case '?':
+                    skip("Not a condition in filter: ");
+                    next++;
+                    return null;
+                default: // a missing operand, leave the operator for the caller
+                    return null;
+            }
+        }
+
+        /**
+         * Compiles a condition token.
+         *
+         * @param token the token.
+         * @return the condition, or null if the column is unknown.
+         */
+        private static FilterExpression condition(Token token) {
+            GameData column;
+            try {
+                column = GameData.fromString(token.text);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            return FilterExpression.of(CompiledFilter.of(column, token.operator, token.value));
+        }
+
+        /**
+         * Checks that the next token, a condition that cannot be parsed, can be left out: only
+         * a condition between commas at the top level can, as in the comma only format.
+         *
+         * @param problem what is wrong with the condition, for the error.
+         * @throws IllegalArgumentException if the condition is an operand of |, &amp; or !, or
+         *                                  is in a group.
+         */
+        private void skip(String problem) {
+            boolean listed = depth == 0 && (next == 0 || tokens.get(next - 1).kind == ',')
+                    && (next + 1 == tokens.size() || tokens.get(next + 1).kind == ',');
+            if (!listed) {
+                Token token = tokens.get(next);
+                throw new IllegalArgumentException(problem
+                        + (token.kind == '?' ? token.text : token.toString()));
+            }
+        }
+
+        /**
+         * Get the kind of the next token.
+         *
+         * @return the kind, or 0 at the end.
+         */
+        private char peek() {
+            return next < tokens.size() ? tokens.get(next).kind : 0;
+        }
+
+        /**
+         * Adds a parsed part to a list, unless it is null.
+         *
+         * @param parts the list.
+         * @param part  the part.
+         */
+        private static void add(List<FilterExpression> parts, FilterExpression part) {
+            if (part != null) {
+                parts.add(part);
+            }
+        }
+    }
+}
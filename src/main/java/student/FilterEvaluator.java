@@ -0,0 +1,240 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Evaluates the comma separated (AND) conditions of a filter against a {@link GameTable}.
+ *
+ * Each condition is turned into a bitmap over the row ids of the table, and the conjunction is
+ * the word by word AND of those bitmaps. Condition bitmaps are cached on the table by condition
+ * text, so refining minplayers&gt;2 into minplayers&gt;2,maxtime&lt;60 only evaluates the new
+ * condition.
+ *
+ * A condition bitmap is built from the sorted index of its column when the matching slice is
+ * small, and by scanning the column otherwise. If a new (not cached) condition has a selective
+ * index slice and there are other new conditions, that slice drives the search and the other new
+ * conditions are checked as residual predicates on just those rows instead of scanning them.
+ * When the selection itself is already that small, as it is after a few progressive filters,
+ * the new conditions are checked on its rows in the same way, with no bitmap built at all.
+ *
+ * The conditions ANDed at each level of a {@link FilterExpression} are applied here. Given a
+ * {@link QueryPlan}, each condition also adds a step with the access path it took.
+ */
+final class FilterEvaluator {
+    /**
+     * An index slice is used when it holds at most 1 / INDEX_SCAN_RATIO of the table, past that
+     * a sequential scan of the column is faster than random row lookups.
+     */
+    static final int INDEX_SCAN_RATIO = 8;
+
+    /** Private constructor to prevent instantiation. */
+    private FilterEvaluator() {
+    }
+
+    /**
+     * Narrows a selection to the rows that match every condition.
+     *
+     * @param table      the table the row ids refer to.
+     * @param selection  the current selection, which is changed in place.
+     * @param conditions the conditions, all of which have to match.
+     */
+    static void apply(GameTable table, BitSet selection, List<CompiledFilter> conditions) {
+        apply(table, selection, conditions, null);
+    }
+
+    /**
+     * Narrows a selection to the rows that match every condition, adding a step to a plan for
+     * each one. With a plan, the conditions tested row by row are tested one at a time, so each
+     * can be timed on its own.
+     *
+     * @param table      the table the row ids refer to.
+     * @param selection  the current selection, which is changed in place.
+     * @param conditions the conditions, all of which have to match.
+     * @param plan       the plan to add the steps to, or null.
+     */
+    static void apply(GameTable table, BitSet selection, List<CompiledFilter> conditions,
+            QueryPlan plan) {
+        List<Part> parts = new ArrayList<>();
+        List<CompiledFilter> pending = new ArrayList<>();
+        for (CompiledFilter condition : conditions) {
+            BitSet cached = table.cachedBitmap(condition);
+            if (cached != null) {
+                parts.add(new Part(condition, cached, "cached bitmap", 0));
+            } else {
+                pending.add(condition);
+            }
+        }
+
+        if (!pending.isEmpty() && selection.cardinality() <= table.size() / INDEX_SCAN_RATIO) {
+            and(table, selection, parts, plan);
+            retain(table, selection, pending, null, plan);
+            return;
+        }
+
+        CompiledFilter driver = null;
+        SortedIndex.Slice best = null;
+        long start = System.nanoTime();
+        if (pending.size() > 1) {
+            for (CompiledFilter condition : pending) {
+                SortedIndex.Slice slice = condition.slice(table);
+                if (slice != null && (best == null || slice.size() < best.size())) {
+                    driver = condition;
+                    best = slice;
+                }
+            }
+            if (best != null && best.size() > table.size() / INDEX_SCAN_RATIO) {
+                driver = null;
+            }
+        }
+
+        if (driver == null) {
+            for (CompiledFilter condition : pending) {
+                parts.add(build(table, condition));
+            }
+            and(table, selection, parts, plan);
+            return;
+        }
+
+        BitSet bits = table.cacheBitmap(driver, fromSlice(table, best));
+        parts.add(new Part(driver, bits, "index driver", System.nanoTime() - start));
+        and(table, selection, parts, plan);
+        retain(table, selection, pending, driver, plan);
+    }
+
+    /**
+     * Keeps the selected rows that match every condition, testing them one row at a time.
+     *
+     * @param table      the table the row ids refer to.
+     * @param selection  the selection, changed in place.
+     * @param conditions the conditions to test.
+     * @param skip       a condition the selection already matches, or null.
+     * @param plan       the plan to add a step to for each condition, or null.
+     */
+    private static void retain(GameTable table, BitSet selection, List<CompiledFilter> conditions,
+            CompiledFilter skip, QueryPlan plan) {
+        if (plan != null) {
+            for (CompiledFilter condition : conditions) {
+                if (condition != skip) {
+                    long rowsIn = selection.cardinality();
+                    long start = System.nanoTime();
+                    retain(table, selection, Collections.singletonList(condition), null, null);
+                    plan.add(condition.toString(), "row test", rowsIn, condition.estimate(table),
+                            selection.cardinality(), System.nanoTime() - start);
+                }
+            }
+            return;
+        }
+        for (int row = selection.nextSetBit(0); row >= 0; row = selection.nextSetBit(row + 1)) {
+            for (CompiledFilter condition : conditions) {
+                if (condition != skip && !condition.test(table, row)) {
+                    selection.clear(row);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the bitmap of a single condition, from the cache or by evaluating (and caching) it.
+     *
+     * The returned bitmap is shared, and must not be changed.
+     *
+     * @param table     the table to evaluate on.
+     * @param condition the condition.
+     * @return the rows that match the condition.
+     */
+    static BitSet bitmap(GameTable table, CompiledFilter condition) {
+        BitSet cached = table.cachedBitmap(condition);
+        return cached != null ? cached : build(table, condition).bits;
+    }
+
+    /**
+     * Builds (and caches) the bitmap of a condition that is not cached, from its index slice if
+     * the slice is small and by scanning the column otherwise.
+     *
+     * @param table     the table to evaluate on.
+     * @param condition the condition.
+     * @return the bitmap, with how it was built.
+     */
+    private static Part build(GameTable table, CompiledFilter condition) {
+        long start = System.nanoTime();
+        SortedIndex.Slice slice = condition.slice(table);
+        boolean fromIndex = slice != null && slice.size() <= table.size() / INDEX_SCAN_RATIO;
+        BitSet bits = fromIndex ? fromSlice(table, slice) : condition.evaluate(table);
+        return new Part(condition, table.cacheBitmap(condition, bits),
+                fromIndex ? "index slice" : condition.scanPath(), System.nanoTime() - start);
+    }
+
+    /**
+     * ANDs bitmaps into the selection, the sparsest first so the selection empties out early.
+     *
+     * @param table     the table the row ids refer to.
+     * @param selection the selection, changed in place.
+     * @param parts     the bitmaps to AND in.
+     * @param plan      the plan to add a step to for each bitmap, or null.
+     */
+    private static void and(GameTable table, BitSet selection, List<Part> parts,
+            QueryPlan plan) {
+        parts.sort(Comparator.comparingInt(part -> part.bits.cardinality()));
+        for (Part part : parts) {
+            if (selection.isEmpty()) {
+                return;
+            }
+            long rowsIn = plan != null ? selection.cardinality() : 0;
+            long start = System.nanoTime();
+            selection.and(part.bits);
+            if (plan != null) {
+                plan.add(part.condition.toString(), part.access, rowsIn,
+                        part.condition.estimate(table), selection.cardinality(),
+                        part.nanos + System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Builds a bitmap from the rows of an index slice.
+     *
+     * @param table the table the slice is on.
+     * @param slice the slice.
+     * @return a new bitmap with the rows of the slice set.
+     */
+    private static BitSet fromSlice(GameTable table, SortedIndex.Slice slice) {
+        long[] words = new long[(table.size() + Long.SIZE - 1) / Long.SIZE];
+        for (int pos = slice.getFrom(); pos < slice.getTo(); pos++) {
+            int row = slice.row(pos);
+            words[row >>> 6] |= 1L << row;
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /** The bitmap of one condition, with how it was found and how long that took. */
+    private static final class Part {
+        /** The condition. */
+        private final CompiledFilter condition;
+        /** The rows that match it, shared and never changed. */
+        private final BitSet bits;
+        /** How the bitmap was found, see {@link QueryPlan.Step#getAccess()}. */
+        private final String access;
+        /** Time taken to find the bitmap, in nanoseconds. */
+        private final long nanos;
+
+        /**
+         * Constructor for a part.
+         *
+         * @param condition the condition.
+         * @param bits      the rows that match it.
+         * @param access    how the bitmap was found.
+         * @param nanos     time taken to find it.
+         */
+        Part(CompiledFilter condition, BitSet bits, String access, long nanos) {
+            this.condition = condition;
+            this.bits = bits;
+            this.access = access;
+            this.nanos = nanos;
+        }
+    }
+}
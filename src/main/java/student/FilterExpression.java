@@ -0,0 +1,487 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A whole filter: {@link CompiledFilter} conditions joined with and (&amp; or a comma), or (|)
+ * and not (!), grouped with parentheses, as parsed by {@link FilterCompiler}.
+ *
+ * The expression is a tree of small immutable nodes. The leaves are the compiled conditions,
+ * each bound to one primitive column, and every inner node keeps its children in a final array,
+ * with the plain conditions ahead of the nested groups, so testing a game tries the cheapest
+ * checks first and stops at the first one that settles the result. Nested ands and double
+ * negations are flattened when the tree is built.
+ *
+ * Against a table, an expression narrows a selection in place
+ * ({@link #narrow(GameTable, BitSet)}). The conditions ANDed at one level go through
+ * {@link FilterEvaluator} together, as a filter with only commas always has, so they share its
+ * cached bitmaps and index driven search. The other children are run in order of the number of
+ * rows they are estimated to match ({@link CompiledFilter#estimate(GameTable)}): the fewest first
+ * for and, so the selection empties out as early as possible, and the most first for or, so
+ * each later child only has to check the rows no earlier one matched.
+ *
+ * Given a {@link QueryPlan}, narrowing also records each condition and group it runs, for
+ * {@link Planner#explain(String)}.
+ *
+ * Instances are immutable, and can be shared between planners and threads.
+ */
+public abstract class FilterExpression {
+    /** The expression with no conditions, which matches every game. */
+    static final FilterExpression ALL = new And(new FilterExpression[0]);
+
+    /**
+     * Constructor for the nodes, which are all nested classes.
+     */
+    private FilterExpression() {
+    }
+
+    /**
+     * Tests a game against the expression.
+     *
+     * @param game the game to test.
+     * @return true if the game matches.
+     */
+    public abstract boolean test(BoardGame game);
+
+    /**
+     * Tests a row of a table against the expression.
+     *
+     * @param table the table holding the row.
+     * @param row   the row id.
+     * @return true if the row matches.
+     */
+    public abstract boolean test(GameTable table, int row);
+
+    /**
+     * Narrows a selection to the rows that match the expression.
+     *
+     * @param table     the table the row ids refer to.
+     * @param selection the selection, which is changed in place.
+     */
+    void narrow(GameTable table, BitSet selection) {
+        narrow(table, selection, null);
+    }
+
+    /**
+     * Narrows a selection to the rows that match the expression, adding a step to a plan for
+     * each condition and group as it runs.
+     *
+     * @param table     the table the row ids refer to.
+     * @param selection the selection, which is changed in place.
+     * @param plan      the plan to add the steps to, or null.
+     */
+    abstract void narrow(GameTable table, BitSet selection, QueryPlan plan);
+
+    /**
+     * Estimates how many rows of a table match the expression.
+     *
+     * @param table the table.
+     * @return the estimated number of matching rows.
+     */
+    abstract long estimate(GameTable table);
+
+    /**
+     * Get the conditions of an expression that only ANDs conditions together, as every filter
+     * written with commas alone does.
+     *
+     * @return the conditions (unmodifiable), or null if the expression uses or, not or a group
+     *         that is not a plain and.
+     */
+    List<CompiledFilter> conditions() {
+        return null;
+    }
+
+    /**
+     * Checks if the expression has no conditions, so it matches every game.
+     *
+     * @return true if there is nothing to filter on.
+     */
+    public boolean isEmpty() {
+        List<CompiledFilter> conditions = conditions();
+        return conditions != null && conditions.isEmpty();
+    }
+
+    /**
+     * Builds the leaf for a condition.
+     *
+     * @param condition the condition.
+     * @return the expression.
+     */
+    static FilterExpression of(CompiledFilter condition) {
+        return new Condition(condition);
+    }
+
+    /**
+     * Builds the and of some expressions, taking the children of nested ands into this one.
+     *
+     * @param parts the expressions, all of which have to match.
+     * @return the expression, or the part itself if there is only one.
+     */
+    static FilterExpression and(List<FilterExpression> parts) {
+        List<FilterExpression> children = new ArrayList<>();
+        for (FilterExpression part : parts) {
+            if (part instanceof And) {
+                children.addAll(Arrays.asList(((And) part).children));
+            } else {
+                children.add(part);
+            }
+        }
+        return children.size() == 1 ? children.get(0)
+                : new And(children.toArray(new FilterExpression[0]));
+    }
+
+    /**
+     * Builds the or of some expressions, taking the children of nested ors into this one.
+     *
+     * @param parts the expressions, any of which has to match.
+     * @return the expression, or the part itself if there is only one.
+     */
+    static FilterExpression or(List<FilterExpression> parts) {
+        List<FilterExpression> children = new ArrayList<>();
+        for (FilterExpression part : parts) {
+            if (part instanceof Or) {
+                children.addAll(Arrays.asList(((Or) part).children));
+            } else {
+                children.add(part);
+            }
+        }
+        return children.size() == 1 ? children.get(0)
+                : new Or(children.toArray(new FilterExpression[0]));
+    }
+
+    /**
+     * Builds the negation of an expression.
+     *
+     * @param part the expression.
+     * @return the expression that matches what the part does not.
+     */
+    static FilterExpression not(FilterExpression part) {
+        return part instanceof Not ? ((Not) part).child : new Not(part);
+    }
+
+    /**
+     * Puts the plain conditions of a node ahead of its nested groups, keeping the order they
+     * were written in otherwise.
+     *
+     * @param children the children.
+     * @return the children, conditions first.
+     */
+    private static FilterExpression[] conditionsFirst(FilterExpression[] children) {
+        FilterExpression[] sorted = children.clone();
+        Arrays.sort(sorted, Comparator.comparingInt(child -> child instanceof Condition ? 0 : 1));
+        return sorted;
+    }
+
+    /**
+     * Orders children by how many rows they are estimated to match on a table.
+     *
+     * @param children the children.
+     * @param table    the table.
+     * @param fewest   true for the fewest matches first, false for the most first.
+     * @return the children, in that order.
+     */
+    private static FilterExpression[] byEstimate(FilterExpression[] children, GameTable table,
+            boolean fewest) {
+        long[] estimates = new long[children.length];
+        Integer[] order = new Integer[children.length];
+        for (int i = 0; i < children.length; i++) {
+            estimates[i] = children[i].estimate(table);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> fewest ? Long.compare(estimates[a], estimates[b])
+                : Long.compare(estimates[b], estimates[a]));
+        FilterExpression[] sorted = new FilterExpression[children.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = children[order[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * Writes a child of a node, in parentheses if it is an or inside an and or a negation.
+     *
+     * @param child the child.
+     * @return the text of the child.
+     */
+    private static String group(FilterExpression child) {
+        return child instanceof Or || child instanceof And ? "(" + child + ")" : child.toString();
+    }
+
+    /** A single condition. */
+    private static final class Condition extends FilterExpression {
+        /** The condition. */
+        private final CompiledFilter condition;
+        /** The condition, as a list for {@link FilterEvaluator}. */
+        private final List<CompiledFilter> asList;
+
+        /**
+         * Constructor for a leaf.
+         *
+         * @param condition the condition.
+         */
+        Condition(CompiledFilter condition) {
+            this.condition = condition;
+            this.asList = Collections.singletonList(condition);
+        }
+
+        @Override
+        public boolean test(BoardGame game) {
+            return condition.test(game);
+        }
+
+        @Override
+        public boolean test(GameTable table, int row) {
+            return condition.test(table, row);
+        }
+
+        @Override
+        void narrow(GameTable table, BitSet selection, QueryPlan plan) {
+            FilterEvaluator.apply(table, selection, asList, plan);
+        }
+
+        @Override
+        long estimate(GameTable table) {
+            return condition.estimate(table);
+        }
+
+        @Override
+        List<CompiledFilter> conditions() {
+            return asList;
+        }
+
+        @Override
+        public String toString() {
+            return condition.getColumn().getColumnName() + condition.getOperator().getOperator()
+                    + FilterCompiler.quote(condition.getLiteral());
+        }
+    }
+
+    /** Expressions that all have to match. */
+    private static final class And extends FilterExpression {
+        /** The children, conditions first. */
+        private final FilterExpression[] children;
+        /** The conditions among the children. */
+        private final List<CompiledFilter> conditions;
+        /** The children that are not plain conditions. */
+        private final FilterExpression[] groups;
+
+        /**
+         * Constructor for an and.
+         *
+         * @param children the expressions to AND.
+         */
+        And(FilterExpression[] children) {
+            this.children = conditionsFirst(children);
+            List<CompiledFilter> leaves = new ArrayList<>();
+            List<FilterExpression> others = new ArrayList<>();
+            for (FilterExpression child : this.children) {
+                if (child instanceof Condition) {
+                    leaves.add(((Condition) child).condition);
+                } else {
+                    others.add(child);
+                }
+            }
+            this.conditions = Collections.unmodifiableList(leaves);
+            this.groups = others.toArray(new FilterExpression[0]);
+        }
+
+        @Override
+        public boolean test(BoardGame game) {
+            for (FilterExpression child : children) {
+                if (!child.test(game)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean test(GameTable table, int row) {
+            for (FilterExpression child : children) {
+                if (!child.test(table, row)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        void narrow(GameTable table, BitSet selection, QueryPlan plan) {
+            int step = plan != null ? plan.begin() : 0;
+            long rowsIn = plan != null ? selection.cardinality() : 0;
+            long start = System.nanoTime();
+            if (!conditions.isEmpty()) {
+                FilterEvaluator.apply(table, selection, conditions, plan);
+            }
+            for (FilterExpression group : byEstimate(groups, table, true)) {
+                if (selection.isEmpty()) {
+                    break;
+                }
+                group.narrow(table, selection, plan);
+            }
+            if (plan != null) {
+                plan.end(step, toString(), "and", rowsIn, estimate(table),
+                        selection.cardinality(), System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        long estimate(GameTable table) {
+            long fewest = table.size();
+            for (FilterExpression child : children) {
+                fewest = Math.min(fewest, child.estimate(table));
+            }
+            return fewest;
+        }
+
+        @Override
+        List<CompiledFilter> conditions() {
+            return groups.length == 0 ? conditions : null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (FilterExpression child : children) {
+                if (sb.length() > 0) {
+                    sb.append('&');
+                }
+                sb.append(child instanceof Or ? group(child) : child.toString());
+            }
+            return sb.toString();
+        }
+    }
+
+    /** Expressions of which at least one has to match. */
+    private static final class Or extends FilterExpression {
+        /** The children, conditions first. */
+        private final FilterExpression[] children;
+
+        /**
+         * Constructor for an or.
+         *
+         * @param children the expressions to OR.
+         */
+        Or(FilterExpression[] children) {
+            this.children = conditionsFirst(children);
+        }
+
+        @Override
+        public boolean test(BoardGame game) {
+            for (FilterExpression child : children) {
+                if (child.test(game)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean test(GameTable table, int row) {
+            for (FilterExpression child : children) {
+                if (child.test(table, row)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        void narrow(GameTable table, BitSet selection, QueryPlan plan) {
+            int step = plan != null ? plan.begin() : 0;
+            long start = System.nanoTime();
+            BitSet matched = new BitSet();
+            BitSet rest = (BitSet) selection.clone();
+            for (FilterExpression child : byEstimate(children, table, false)) {
+                BitSet part = (BitSet) rest.clone();
+                child.narrow(table, part, plan);
+                matched.or(part);
+                rest.andNot(part);
+                if (rest.isEmpty()) {
+                    break;
+                }
+            }
+            long rowsIn = plan != null ? selection.cardinality() : 0;
+            selection.and(matched);
+            if (plan != null) {
+                plan.end(step, toString(), "or", rowsIn, estimate(table),
+                        selection.cardinality(), System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        long estimate(GameTable table) {
+            long total = 0;
+            for (FilterExpression child : children) {
+                total += child.estimate(table);
+            }
+            return Math.min(total, table.size());
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (FilterExpression child : children) {
+                if (sb.length() > 0) {
+                    sb.append('|');
+                }
+                sb.append(child);
+            }
+            return sb.toString();
+        }
+    }
+
+    /** An expression that must not match. */
+    private static final class Not extends FilterExpression {
+        /** The negated expression. */
+        private final FilterExpression child;
+
+        /**
+         * Constructor for a negation.
+         *
+         * @param child the expression to negate.
+         */
+        Not(FilterExpression child) {
+            this.child = child;
+        }
+
+        @Override
+        public boolean test(BoardGame game) {
+            return !child.test(game);
+        }
+
+        @Override
+        public boolean test(GameTable table, int row) {
+            return !child.test(table, row);
+        }
+
+        @Override
+        void narrow(GameTable table, BitSet selection, QueryPlan plan) {
+            int step = plan != null ? plan.begin() : 0;
+            long start = System.nanoTime();
+            BitSet matched = (BitSet) selection.clone();
+            child.narrow(table, matched, plan);
+            long rowsIn = plan != null ? selection.cardinality() : 0;
+            selection.andNot(matched);
+            if (plan != null) {
+                plan.end(step, toString(), "not", rowsIn, estimate(table),
+                        selection.cardinality(), System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        long estimate(GameTable table) {
+            return table.size() - child.estimate(table);
+        }
+
+        @Override
+        public String toString() {
+            return "!" + group(child);
+        }
+    }
+}
@@ -22,7 +22,7 @@ public final class Filters {
     public static boolean filter(BoardGame game, GameData column, Operations op, String value) {
         switch (column) {
             case NAME:
-                return filterString(game.getName(), op, value);
+                return value != null && filterKey(game.getNameKey(), op, NameKey.of(value));
             case MIN_PLAYERS:
                 return filterNum(game.getMinPlayers(), op, value);
             case MAX_PLAYERS:
@@ -48,6 +48,7 @@ public final class Filters {
 
     /**
      * Filters a string-based game attribute based on the specified operation and value.
+     * Both are compared by their {@link NameKey}, so case and accents are ignored.
      *
      * @param gameData The game attribute as a string.
      * @param op       The comparison operation.
@@ -58,22 +59,38 @@ public final class Filters {
         if (gameData == null || value == null) {
             return false;
         }
+        return filterKey(NameKey.of(gameData), op, NameKey.of(value));
+    }
+
+    /**
+     * Filters a name key based on the specified operation and the key of the value, comparing
+     * the keys as they are.
+     *
+     * @param key      The key of the game attribute.
+     * @param op       The comparison operation.
+     * @param valueKey The key of the value to compare against.
+     * @return true if the game attribute matches the filter condition, false otherwise.
+     */
+    static boolean filterKey(String key, Operations op, String valueKey) {
+        if (key == null) {
+            return false;
+        }
 
         switch (op) {
             case EQUALS:
-                return gameData.equalsIgnoreCase(value);
+                return key.equals(valueKey);
             case NOT_EQUALS:
-                return !gameData.equalsIgnoreCase(value);
+                return !key.equals(valueKey);
             case CONTAINS:
-                return gameData.toLowerCase().contains(value.toLowerCase());
+                return key.contains(valueKey);
             case GREATER_THAN:
-                return gameData.compareToIgnoreCase(value) > 0;
+                return key.compareTo(valueKey) > 0;
             case LESS_THAN:
-                return gameData.compareToIgnoreCase(value) < 0;
+                return key.compareTo(valueKey) < 0;
             case GREATER_THAN_EQUALS:
-                return gameData.compareToIgnoreCase(value) >= 0;
+                return key.compareTo(valueKey) >= 0;
             case LESS_THAN_EQUALS:
-                return gameData.compareToIgnoreCase(value) <= 0;
+                return key.compareTo(valueKey) <= 0;
             default:
                 return false;
         }
@@ -0,0 +1,653 @@
+package student;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/**
+ * Streaming parser for the games csv file that writes rows straight into a
+ * {@link GameTable.Builder}.
+ *
+ * The input is read once, in large blocks, as bytes, and split into records by a small state
+ * machine that follows RFC 4180: fields may be quoted, a quoted field may hold commas, line
+ * breaks and escaped quotes ({@code ""}), and lines may end in CRLF or LF. Only the fields that map
+ * to a {@link GameData} column are decoded; whole numbers and decimals are parsed from the bytes
+ * in place, so the only object made per row is the name.
+ *
+ * Rows that cannot be used are counted by {@link LoadReport.Reason} instead of being dropped
+ * silently, see {@link #report(GameTable)}.
+ */
+final class GameCsvParser {
+    /** Size of the read buffer, it grows if a single record does not fit. */
+    static final int BUFFER_SIZE = 1 << 20;
+    /** Size of the direct read buffer for files. */
+    static final int DIRECT_BUFFER_SIZE = 1 << 22;
+
+    /** Powers of ten that are exact as doubles, for the fast decimal path. */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+        1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /** Largest mantissa that is exact as a double (2^53). */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /** Where the rows go. */
+    private final GameTable.Builder builder;
+    /** The column of each field in a row, null if the field is not used. Set by the header. */
+    private GameData[] fieldColumns;
+    /** Index of the last field that maps to a column, -1 if the header misses a column. */
+    private int lastField = -1;
+    /** The columns the header does not have, for the report. */
+    private String missingColumns = "";
+    /** Whole number values of the current row, by GameData ordinal. */
+    private final int[] intValues = new int[GameData.values().length];
+    /** Decimal values of the current row, by GameData ordinal. */
+    private final double[] doubleValues = new double[GameData.values().length];
+    /** Scratch space for copying name bytes out of the buffer. */
+    private byte[] nameBytes = new byte[256];
+
+    /** Where each field of the current record starts (after any opening quote). */
+    private int[] fieldStarts = new int[64];
+    /** Where each field of the current record ends (before any closing quote). */
+    private int[] fieldEnds = new int[64];
+    /** Whether each field of the current record holds escaped quotes. */
+    private boolean[] fieldEscaped = new boolean[64];
+    /** Number of fields in the current record. */
+    private int fieldCount;
+    /** What is wrong with the current record's quoting, null if nothing. */
+    private LoadReport.Reason recordError;
+    /** Line breaks inside quoted fields of the current record. */
+    private int recordLines;
+
+    /** The line the current record starts on, 1 based. */
+    private int line = 1;
+    /** Number of data rows read. */
+    private int rows;
+    /** Rows skipped for each reason, by ordinal. */
+    private final int[] skipped = new int[LoadReport.Reason.values().length];
+    /** The first few skipped rows, keyed by source index (high half) and line (low half). */
+    private final TreeMap<Long, String> samples = new TreeMap<>();
+    /** The file name put before each sample, null for a single file. */
+    private final String source;
+    /** Where the source comes in the set of files being loaded, to order the samples. */
+    private final int sourceIndex;
+    /** The line each row added to the builder starts on, null if not tracked. */
+    private int[] rowLines;
+
+    /**
+     * Constructs a parser writing to a builder.
+     *
+     * @param builder the builder to add rows to.
+     */
+    GameCsvParser(GameTable.Builder builder) {
+        this(builder, (String) null, 0);
+    }
+
+    /**
+     * Constructs a parser for one of several files, such as the shards of an export. Samples
+     * of skipped rows start with the file name, and the line each added row starts on is kept,
+     * see {@link #rowLine(int)}.
+     *
+     * @param builder     the builder to add rows to.
+     * @param source      the file name, put before each sample.
+     * @param sourceIndex where the file comes in the set of files, to order the samples.
+     */
+    GameCsvParser(GameTable.Builder builder, String source, int sourceIndex) {
+        this.builder = builder;
+        this.source = source;
+        this.sourceIndex = sourceIndex;
+        if (source != null) {
+            this.rowLines = new int[1024];
+        }
+    }
+
+    /**
+     * Constructs a parser for a chunk of a file, which starts at a record after the header.
+     * The line each added row starts on is kept, see {@link #rowLine(int)}.
+     *
+     * @param builder   the builder to add rows to.
+     * @param header    a parser that has read the header of the file.
+     * @param firstLine the line the chunk starts on, 1 based.
+     */
+    GameCsvParser(GameTable.Builder builder, GameCsvParser header, int firstLine) {
+        this.builder = builder;
+        this.source = header.source;
+        this.sourceIndex = header.sourceIndex;
+        this.fieldColumns = header.fieldColumns;
+        this.lastField = header.lastField;
+        this.missingColumns = header.missingColumns;
+        this.line = firstLine;
+        this.rowLines = new int[1024];
+    }
+
+    /**
+     * Reads and parses every record from a channel, into a heap buffer. The first record is the
+     * header.
+     *
+     * @param in the channel to read, which is not closed.
+     * @throws IOException if reading fails.
+     */
+    void parse(ReadableByteChannel in) throws IOException {
+        parse(in, ByteBuffer.allocate(BUFFER_SIZE));
+    }
+
+    /**
+     * Reads and parses every record from a channel. The first record is the header.
+     *
+     * A direct buffer lets a file channel read straight into it, instead of through a
+     * temporary direct buffer and a copy.
+     *
+     * @param in     the channel to read, which is not closed.
+     * @param buffer the buffer to read into, heap or direct. It is replaced by a bigger one of
+     *               the same kind if a single record does not fit.
+     * @throws IOException if reading fails.
+     */
+    void parse(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        boolean eof = false;
+        while (!eof) {
+            eof = in.read(buffer) < 0;
+            buffer.flip();
+            int pos = buffer.position();
+            int limit = buffer.limit();
+            for (int next = record(buffer, pos, limit, eof); next >= 0;
+                    next = record(buffer, pos, limit, eof)) {
+                pos = next;
+            }
+            if (!eof) {
+                buffer.position(pos);
+                buffer.compact();
+                if (!buffer.hasRemaining()) { // a single record is bigger than the buffer
+                    ByteBuffer bigger = buffer.isDirect()
+                            ? ByteBuffer.allocateDirect(buffer.capacity() * 2)
+                            : ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    bigger.put(buffer);
+                    buffer = bigger;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the report of what was parsed so far.
+     *
+     * @param table the table built from the rows.
+     * @return the report.
+     */
+    LoadReport report(GameTable table) {
+        return new LoadReport(table, rows, skipped.clone(), new ArrayList<>(samples.values()));
+    }
+
+    /**
+     * Checks if the header has been read.
+     *
+     * @return true once the first record has been parsed.
+     */
+    boolean hasHeader() {
+        return fieldColumns != null;
+    }
+
+    /**
+     * Gets the line a row added to the builder starts on, for parsers made for a chunk.
+     *
+     * @param row the row in the builder.
+     * @return the line, 1 based.
+     */
+    int rowLine(int row) {
+        return rowLines[row];
+    }
+
+    /**
+     * Adds the counts and samples of a parser that read a later chunk of the same file, or a
+     * later file of the same set.
+     *
+     * @param part the parser of the chunk.
+     */
+    void absorb(GameCsvParser part) {
+        rows += part.rows;
+        for (int i = 0; i < skipped.length; i++) {
+            skipped[i] += part.skipped[i];
+        }
+        samples.putAll(part.samples);
+        trimSamples();
+    }
+
+    /**
+     * Splits the record at a position into fields and handles it.
+     *
+     * A record that runs past the end of the buffer is left alone (unless it is the end of the
+     * file), and is split again from the start once more input has been read.
+     *
+     * @param buffer the buffer.
+     * @param start  the first byte of the record.
+     * @param limit  the end of the bytes read so far.
+     * @param eof    whether there is no more input after limit.
+     * @return the position after the record, or -1 if there is no complete record at start.
+     */
+    private int record(ByteBuffer buffer, int start, int limit, boolean eof) {
+        if (start >= limit) {
+            return -1;
+        }
+        fieldCount = 0;
+        recordError = null;
+        recordLines = 0;
+        int i = start;
+        while (true) {
+            if (i == limit) { // the record ends in a comma
+                if (!eof) {
+                    return -1;
+                }
+                endField(i, i, false);
+                return handle(buffer, limit);
+            }
+            if (buffer.get(i) == '"') {
+                int contentStart = i + 1;
+                boolean escaped = false;
+                int j = contentStart;
+                while (true) {
+                    if (j == limit) {
+                        if (!eof) {
+                            return -1;
+                        }
+                        recordError = LoadReport.Reason.UNTERMINATED_QUOTE;
+                        endField(contentStart, limit, escaped);
+                        return handle(buffer, limit);
+                    }
+                    byte b = buffer.get(j);
+                    if (b == '"') {
+                        if (j + 1 == limit && !eof) {
+                            return -1; // cannot tell a closing quote from an escaped one yet
+                        }
+                        if (j + 1 < limit && buffer.get(j + 1) == '"') {
+                            escaped = true;
+                            j += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    if (b == '\n') {
+                        recordLines++;
+                    }
+                    j++;
+                }
+                int contentEnd = j++;
+                for (; j < limit; j++) {
+                    byte b = buffer.get(j);
+                    if (b == ',' || b == '\n') {
+                        break;
+                    }
+                    if (b != '\r') {
+                        recordError = LoadReport.Reason.MALFORMED_QUOTES;
+                    }
+                }
+                endField(contentStart, contentEnd, escaped);
+                i = j;
+            } else {
+                int j = i;
+                for (; j < limit; j++) {
+                    byte b = buffer.get(j);
+                    if (b == ',' || b == '\n') {
+                        break;
+                    }
+                    if (b == '"') {
+                        recordError = LoadReport.Reason.MALFORMED_QUOTES;
+                    }
+                }
+                boolean last = j == limit || buffer.get(j) == '\n';
+                endField(i, last && j > i && buffer.get(j - 1) == '\r' ? j - 1 : j, false);
+                i = j;
+            }
+            if (i == limit) {
+                if (!eof) {
+                    return -1;
+                }
+                return handle(buffer, limit);
+            }
+            if (buffer.get(i) == '\n') {
+                return handle(buffer, i + 1);
+            }
+            i++; // past the comma
+        }
+    }
+
+    /**
+     * Records the bounds of the next field of the current record.
+     *
+     * @param start   the first byte of the field content.
+     * @param end     the position after the field content.
+     * @param escaped whether the content holds escaped quotes.
+     */
+    private void endField(int start, int end, boolean escaped) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+            fieldEscaped = Arrays.copyOf(fieldEscaped, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldEscaped[fieldCount] = escaped;
+        fieldCount++;
+    }
+
+    /**
+     * Handles a complete record: the header if there has not been one yet, otherwise a row.
+     *
+     * @param buffer the buffer holding the record.
+     * @param next   the position after the record.
+     * @return next.
+     */
+    private int handle(ByteBuffer buffer, int next) {
+        if (fieldColumns == null) {
+            header(buffer);
+        } else {
+            row(buffer);
+        }
+        line += 1 + recordLines;
+        return next;
+    }
+
+    /**
+     * Maps the header fields to columns. Fields that are not GameData columns are ignored.
+     *
+     * @param buffer the buffer holding the header.
+     */
+    private void header(ByteBuffer buffer) {
+        fieldColumns = new GameData[fieldCount];
+        boolean[] seen = new boolean[GameData.values().length];
+        for (int i = 0; i < fieldCount; i++) {
+            try {
+                fieldColumns[i] = GameData.fromColumnName(field(buffer, i));
+                seen[fieldColumns[i].ordinal()] = true;
+                lastField = i;
+            } catch (IllegalArgumentException e) {
+                // not a column we use
+            }
+        }
+        StringJoiner missing = new StringJoiner(", ");
+        for (GameData column : GameData.values()) {
+            if (!seen[column.ordinal()]) {
+                missing.add(column.getColumnName());
+            }
+        }
+        if (missing.length() > 0) {
+            lastField = -1; // every column is needed to build a game, so no row can be used
+            missingColumns = missing.toString();
+        }
+    }
+
+    /**
+     * Parses the mapped fields of a row and adds it to the builder, or counts why it is skipped.
+     * Blank lines are ignored.
+     *
+     * @param buffer the buffer holding the row.
+     */
+    private void row(ByteBuffer buffer) {
+        if (fieldCount == 1 && fieldStarts[0] == fieldEnds[0] && recordError == null) {
+            return;
+        }
+        rows++;
+        if (recordError != null) {
+            skip(recordError, "");
+            return;
+        }
+        if (lastField < 0) {
+            skip(LoadReport.Reason.MISSING_COLUMNS, missingColumns);
+            return;
+        }
+        if (fieldCount <= lastField) {
+            skip(LoadReport.Reason.MISSING_FIELDS, fieldCount + " of " + (lastField + 1));
+            return;
+        }
+        String name = null;
+        for (int field = 0; field <= lastField; field++) {
+            GameData column = fieldColumns[field];
+            if (column == null) {
+                continue;
+            }
+            int start = fieldStarts[field];
+            int end = fieldEnds[field];
+            if (column == GameData.NAME) {
+                name = field(buffer, field);
+            } else if (GameTable.isDecimal(column)) {
+                double value = fieldEscaped[field] ? Double.NaN : parseDouble(buffer, start, end);
+                if (value != value && (fieldEscaped[field] || !isNaNText(buffer, start, end))) {
+                    skip(LoadReport.Reason.BAD_NUMBER, badNumber(buffer, field));
+                    return;
+                }
+                doubleValues[column.ordinal()] = value;
+            } else {
+                long value = fieldEscaped[field] ? Long.MIN_VALUE : parseInt(buffer, start, end);
+                if (value == Long.MIN_VALUE) {
+                    skip(LoadReport.Reason.BAD_NUMBER, badNumber(buffer, field));
+                    return;
+                }
+                intValues[column.ordinal()] = (int) value;
+            }
+        }
+        if (!builder.add(name, intValues, doubleValues)) {
+            skip(LoadReport.Reason.DUPLICATE, name + " (" + intValues[GameData.ID.ordinal()] + ")");
+        } else if (rowLines != null) {
+            if (builder.size() > rowLines.length) {
+                rowLines = Arrays.copyOf(rowLines, rowLines.length * 2);
+            }
+            rowLines[builder.size() - 1] = line;
+        }
+    }
+
+    /**
+     * Counts a skipped row, and keeps it as a sample if there are not enough yet.
+     *
+     * @param reason why it was skipped.
+     * @param detail more about the row, may be empty.
+     */
+    private void skip(LoadReport.Reason reason, String detail) {
+        skip(reason, line, detail);
+    }
+
+    /**
+     * Counts a skipped row that starts on a given line, and keeps it as a sample if it is one
+     * of the first few.
+     *
+     * @param reason    why it was skipped.
+     * @param startLine the line the row starts on.
+     * @param detail    more about the row, may be empty.
+     */
+    void skip(LoadReport.Reason reason, int startLine, String detail) {
+        skipped[reason.ordinal()]++;
+        long key = (long) sourceIndex << Integer.SIZE | startLine;
+        if (samples.size() < LoadReport.MAX_SAMPLES || key < samples.lastKey()) {
+            samples.put(key, (source == null ? "" : source + " ") + "line " + startLine + ": "
+                    + reason.getDescription() + (detail.isEmpty() ? "" : " " + detail));
+            trimSamples();
+        }
+    }
+
+    /**
+     * Drops the samples past the first few.
+     */
+    private void trimSamples() {
+        while (samples.size() > LoadReport.MAX_SAMPLES) {
+            samples.pollLastEntry();
+        }
+    }
+
+    /**
+     * Describes a number field that did not parse.
+     *
+     * @param buffer the buffer holding the row.
+     * @param field  the field index.
+     * @return the column name and the field text.
+     */
+    private String badNumber(ByteBuffer buffer, int field) {
+        return fieldColumns[field].getColumnName() + " '" + field(buffer, field) + "'";
+    }
+
+    /**
+     * Decodes a field of the current record, with escaped quotes replaced.
+     *
+     * @param buffer the buffer holding the record.
+     * @param field  the field index.
+     * @return the field text.
+     */
+    private String field(ByteBuffer buffer, int field) {
+        String text = decode(buffer, fieldStarts[field], fieldEnds[field]);
+        return fieldEscaped[field] ? text.replace("\"\"", "\"") : text;
+    }
+
+    /**
+     * Parses a whole number with the same rules as {@link Integer#parseInt(String)}.
+     *
+     * @param buffer the buffer.
+     * @param start  the first byte of the number.
+     * @param end    the position after the number.
+     * @return the value, or Long.MIN_VALUE if it is not a valid int.
+     */
+    static long parseInt(ByteBuffer buffer, int start, int end) {
+        if (start >= end) {
+            return Long.MIN_VALUE;
+        }
+        boolean negative = false;
+        int i = start;
+        byte first = buffer.get(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++i == end) {
+                return Long.MIN_VALUE;
+            }
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return Long.MIN_VALUE;
+            }
+        }
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+    }
+
+    /**
+     * Parses a decimal number. Plain decimals (digits, a point and an exponent) that can be
+     * rounded exactly are parsed in place, anything else is handed to
+     * {@link Double#parseDouble(String)}, so the result is always the same as that method.
+     *
+     * @param buffer the buffer.
+     * @param start  the first byte of the number.
+     * @param end    the position after the number.
+     * @return the value, or NaN if it is not a valid number.
+     */
+    static double parseDouble(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+                    return slowParseDouble(buffer, start, end);
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (point) {
+                    scale--;
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E') && digits > 0) {
+            long exponent = parseInt(buffer, i + 1, end);
+            if (exponent == Long.MIN_VALUE || Math.abs(exponent) > POWERS_OF_TEN.length * 2) {
+                return slowParseDouble(buffer, start, end);
+            }
+            scale += (int) exponent;
+            i = end;
+        }
+        if (i != end || digits == 0 || Math.abs(scale) >= POWERS_OF_TEN.length) {
+            return slowParseDouble(buffer, start, end);
+        }
+        double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a decimal with {@link Double#parseDouble(String)}.
+     *
+     * @param buffer the buffer.
+     * @param start  the first byte of the number.
+     * @param end    the position after the number.
+     * @return the value, or NaN if it is not a valid number.
+     */
+    private static double slowParseDouble(ByteBuffer buffer, int start, int end) {
+        try {
+            return Double.parseDouble(decode(buffer, start, end, new byte[end - start]));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Checks if a field is literally a NaN (which is a valid double), as opposed to a field that
+     * did not parse.
+     *
+     * @param buffer the buffer.
+     * @param start  the first byte of the field.
+     * @param end    the position after the field.
+     * @return true if the field is NaN.
+     */
+    private static boolean isNaNText(ByteBuffer buffer, int start, int end) {
+        return decode(buffer, start, end, new byte[end - start]).trim().matches("[+-]?NaN[fFdD]?");
+    }
+
+    /**
+     * Decodes bytes as UTF-8 text, using the shared scratch array.
+     *
+     * @param buffer the buffer.
+     * @param start  the first byte.
+     * @param end    the position after the last byte.
+     * @return the text.
+     */
+    private String decode(ByteBuffer buffer, int start, int end) {
+        if (nameBytes.length < end - start) {
+            nameBytes = new byte[Math.max(end - start, nameBytes.length * 2)];
+        }
+        return decode(buffer, start, end, nameBytes);
+    }
+
+    /**
+     * Decodes bytes as UTF-8 text.
+     *
+     * @param buffer  the buffer.
+     * @param start   the first byte.
+     * @param end     the position after the last byte.
+     * @param scratch an array of at least end - start bytes to copy through.
+     * @return the text.
+     */
+    private static String decode(ByteBuffer buffer, int start, int end, byte[] scratch) {
+        int length = end - start;
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, length,
+                    StandardCharsets.UTF_8);
+        }
+        buffer.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,152 @@
+package student;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A batch of changes to a game collection, keyed by game id: games to insert or replace, games
+ * to delete, and single field updates (such as the daily rank and rating changes).
+ *
+ * Changes to the same id are folded together as they are added, so the last change wins: an
+ * update after a put changes the game that will be put, a remove drops earlier changes, and a
+ * put after a remove puts the game back. Apply the batch with {@link GameTable#apply(GameDelta)}
+ * or {@link LiveCollection#apply(GameDelta)}.
+ */
+public final class GameDelta {
+    /** The changes, by game id, in the order the ids were first changed. */
+    private final Map<Integer, Change> changes = new LinkedHashMap<>();
+
+    /**
+     * Inserts a game, or replaces every field of the game with the same id.
+     *
+     * @param game the game.
+     * @return this delta.
+     */
+    public GameDelta put(BoardGame game) {
+        Change change = new Change(game.getId());
+        change.put = true;
+        change.name = game.getName();
+        change.set(GameData.RATING, game.getRating());
+        change.set(GameData.DIFFICULTY, game.getDifficulty());
+        change.set(GameData.RANK, game.getRank());
+        change.set(GameData.MIN_PLAYERS, game.getMinPlayers());
+        change.set(GameData.MAX_PLAYERS, game.getMaxPlayers());
+        change.set(GameData.MIN_TIME, game.getMinPlayTime());
+        change.set(GameData.MAX_TIME, game.getMaxPlayTime());
+        change.set(GameData.YEAR, game.getYearPublished());
+        changes.put(change.id, change);
+        return this;
+    }
+
+    /**
+     * Deletes the game with an id. Ids that are not in the collection are ignored.
+     *
+     * @param id the game id.
+     * @return this delta.
+     */
+    public GameDelta remove(int id) {
+        Change change = new Change(id);
+        change.delete = true;
+        changes.put(id, change);
+        return this;
+    }
+
+    /**
+     * Changes one field of the game with an id. Ids that are not in the collection (or that
+     * were removed earlier in this delta) are ignored.
+     *
+     * @param id     the game id.
+     * @param column the column to change, which cannot be NAME or ID.
+     * @param value  the new value, a whole number for whole number columns.
+     * @return this delta.
+     * @throws IllegalArgumentException if the column cannot be updated or the value does not fit
+     *                                  it.
+     */
+    public GameDelta update(int id, GameData column, double value) {
+        if (column == GameData.NAME || column == GameData.ID) {
+            throw new IllegalArgumentException("Cannot update " + column + ", put the game instead");
+        }
+        if (!GameTable.isDecimal(column) && value != (int) value) {
+            throw new IllegalArgumentException("Invalid value for " + column + ": " + value);
+        }
+        Change change = changes.computeIfAbsent(id, Change::new);
+        if (!change.delete) {
+            change.set(column, value);
+        }
+        return this;
+    }
+
+    /**
+     * Gets the number of games changed.
+     *
+     * @return the number of ids with a change.
+     */
+    public int size() {
+        return changes.size();
+    }
+
+    /**
+     * Gets the changes.
+     *
+     * @return the change to each id.
+     */
+    Collection<Change> changes() {
+        return changes.values();
+    }
+
+    /**
+     * The folded changes to one game id.
+     */
+    static final class Change {
+        /** The game id. */
+        final int id;
+        /** True if the game is deleted. */
+        boolean delete;
+        /** True if every field is set, so the game is inserted if it is not there. */
+        boolean put;
+        /** The new name, or null to keep it. */
+        String name;
+        /** Bit per GameData ordinal of the fields that are set. */
+        int set;
+        /** The new whole number values, by GameData ordinal. */
+        final int[] ints = new int[GameData.values().length];
+        /** The new decimal values, by GameData ordinal. */
+        final double[] doubles = new double[GameData.values().length];
+
+        /**
+         * Constructs an empty change.
+         *
+         * @param id the game id.
+         */
+        Change(int id) {
+            this.id = id;
+            ints[GameData.ID.ordinal()] = id;
+        }
+
+        /**
+         * Sets a field.
+         *
+         * @param column the column.
+         * @param value  the value.
+         */
+        private void set(GameData column, double value) {
+            if (GameTable.isDecimal(column)) {
+                doubles[column.ordinal()] = value;
+            } else {
+                ints[column.ordinal()] = (int) value;
+            }
+            set |= 1 << column.ordinal();
+        }
+
+        /**
+         * Checks if a field is set.
+         *
+         * @param column the column.
+         * @return true if the change sets it.
+         */
+        boolean sets(GameData column) {
+            return (set & 1 << column.ordinal()) != 0;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package student;
+
+/**
+ * A set of board games keyed on their primitive id.
+ *
+ * It is an open addressing hash table with linear probing: an int[] of ids and a parallel array
+ * of the games, so adding or checking a game never boxes the id or allocates a node. Two games
+ * are the same if they are equal ({@link BoardGame#equals(Object)}: same name and id), so games
+ * that share an id but not a name are both kept.
+ *
+ * Removing single games is not supported, build a new set instead.
+ */
+final class GameIdSet {
+    /** Starting number of slots, must be a power of two. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The id in each slot. */
+    private int[] ids;
+    /** The game in each slot, null for an empty slot. */
+    private BoardGame[] games;
+    /** Number of games in the set. */
+    private int size;
+
+    /**
+     * Constructs an empty set.
+     */
+    GameIdSet() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty set sized to hold the expected number of games without growing.
+     *
+     * @param expected the expected number of games.
+     */
+    GameIdSet(int expected) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        this.ids = new int[capacity];
+        this.games = new BoardGame[capacity];
+    }
+
+    /**
+     * Adds a game, unless an equal game is already in the set.
+     *
+     * @param game the game to add.
+     * @return true if the game was added, false if it was already in the set.
+     */
+    boolean add(BoardGame game) {
+        int slot = find(game);
+        if (games[slot] != null) {
+            return false;
+        }
+        ids[slot] = game.getId();
+        games[slot] = game;
+        if (++size * 2 > games.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Checks if an equal game is in the set.
+     *
+     * @param game the game to look for.
+     * @return true if the set holds a game with the same name and id.
+     */
+    boolean contains(BoardGame game) {
+        return games[find(game)] != null;
+    }
+
+    /**
+     * Get the number of games in the set.
+     *
+     * @return the number of games.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes every game from the set.
+     */
+    void clear() {
+        ids = new int[INITIAL_CAPACITY];
+        games = new BoardGame[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Finds the slot holding an equal game, or the empty slot where it would go.
+     *
+     * @param game the game to look for.
+     * @return the slot index.
+     */
+    private int find(BoardGame game) {
+        int id = game.getId();
+        int mask = games.length - 1;
+        int slot = mix(id) & mask;
+        while (games[slot] != null && (ids[slot] != id || !games[slot].equals(game))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the number of slots and puts every game back in.
+     */
+    private void grow() {
+        BoardGame[] old = games;
+        ids = new int[old.length * 2];
+        games = new BoardGame[old.length * 2];
+        for (BoardGame game : old) {
+            if (game != null) {
+                int slot = find(game);
+                ids[slot] = game.getId();
+                games[slot] = game;
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of an id, as ids are often close together.
+     *
+     * @param id the id.
+     * @return the mixed hash.
+     */
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -13,24 +13,28 @@ public class GameList implements IGameList {
     /** Stores current filtered games. */
     private List<BoardGame> filteredGames;
 
+    /** The same games, keyed on id for fast membership checks. */
+    private GameIdSet members;
+
     /**
      * Constructs an empty GameList.
      */
     public GameList() {
         this.filteredGames = new ArrayList<>();
+        this.members = new GameIdSet();
     }
 
     /**
-     * Retrieves a sorted list of game names.
+     * Retrieves a sorted list of game names, in order of their {@link BoardGame#getNameKey()}.
      *
      * @return A list of game names in sorted order.
      */
     @Override
     public List<String> getGameNames() {
         return filteredGames.stream()
+                .sorted(Comparator.comparing(BoardGame::getNameKey) // ignores case and accents
+                        .thenComparing(BoardGame::getName)) // Ensures stable sorting
                 .map(BoardGame::getName)
-                .sorted(Comparator.comparing((String name) -> name.toLowerCase()) // Ensure case-insensitive sorting
-                        .thenComparing(name -> name)) // Ensures stable sorting
                 .collect(Collectors.toList());
     }
 
@@ -40,6 +44,7 @@ public class GameList implements IGameList {
     @Override
     public void clear() {
         filteredGames.clear();
+        members.clear();
     }
 
     /**
@@ -90,7 +95,7 @@ public class GameList implements IGameList {
     public void addToList(String str, Stream<BoardGame> filtered) throws IllegalArgumentException {
         List<BoardGame> selectedGames = parseGamesFromString(str, filtered.collect(Collectors.toList()));
         for (BoardGame game : selectedGames) {
-            if (!filteredGames.contains(game)) {
+            if (members.add(game)) {
                 filteredGames.add(game);
             }
         }
@@ -110,7 +115,36 @@ public class GameList implements IGameList {
         }
 
         List<BoardGame> toRemove = parseGamesFromString(str, new ArrayList<>(filteredGames));
-        filteredGames.removeAll(toRemove);
+        GameIdSet removed = new GameIdSet(toRemove.size());
+        toRemove.forEach(removed::add);
+        filteredGames.removeIf(removed::contains);
+        rebuildMembers();
+    }
+
+    /**
+     * Suggests the names in the list closest to a name, by bounded edit distance (see
+     * {@link EditDistance}). The list is small, so every name is checked.
+     *
+     * @param name  the name that was not found.
+     * @param limit the max number of suggestions.
+     * @return the suggested names, closest first.
+     */
+    @Override
+    public List<String> suggest(String name, int limit) {
+        String text = NameKey.of(name.trim());
+        int max = EditDistance.allowed(text.length());
+        Map<String, Integer> distances = new HashMap<>();
+        for (BoardGame game : filteredGames) {
+            int distance = EditDistance.bounded(text, game.getNameKey(), max);
+            if (distance <= max) {
+                distances.put(game.getName(), distance);
+            }
+        }
+        return distances.keySet().stream()
+                .sorted(Comparator.comparing((String n) -> distances.get(n))
+                        .thenComparing(NameKey::of))
+                .limit(limit)
+                .collect(Collectors.toList());
     }
 
     /**
@@ -120,6 +154,15 @@ public class GameList implements IGameList {
      */
     public void applyFilter(Stream<BoardGame> filteredStream) {
         filteredGames = filteredStream.collect(Collectors.toList());
+        rebuildMembers();
+    }
+
+    /**
+     * Rebuilds the membership set from the list of games.
+     */
+    private void rebuildMembers() {
+        members = new GameIdSet(filteredGames.size());
+        filteredGames.forEach(members::add);
     }
 
     /**
@@ -154,8 +197,9 @@ public class GameList implements IGameList {
         }
 
         // Assume it's a name
+        String key = NameKey.of(str);
         Optional<BoardGame> game = gameList.stream()
-                .filter(g -> g.getName().equalsIgnoreCase(str))
+                .filter(g -> key.equals(g.getNameKey()))
                 .findFirst();
         if (game.isEmpty()) {
             throw new IllegalArgumentException("Game not found in list");
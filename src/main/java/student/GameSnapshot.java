@@ -0,0 +1,363 @@
+package student;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary snapshot of a {@link GameTable}, opened with {@link FileChannel#map}.
+ *
+ * The file is little endian and made of 8 byte aligned blocks:
+ * <pre>
+ * header      magic (long), version (int), rows (int), names (int), columns (int),
+ *             value block offset of each column (long each, by GameData ordinal),
+ *             permutation block offset of each column (long each, by GameData ordinal),
+ *             name offsets block offset (long), name heap offset (long), name heap length (long)
+ * values      per column: rows ints, or rows doubles for RATING and DIFFICULTY; the NAME
+ *             column holds the name code of each row
+ * permutation per column: rows ints, the row ids in ascending order of the column
+ * name offsets names + 1 ints, where each name starts in the heap (the last is the heap length)
+ * name heap   every distinct name as UTF-8, in name code order
+ * </pre>
+ *
+ * Opening a snapshot only maps the blocks; the OS reads pages in as they are used, and several
+ * processes opening the same file share them in the page cache. The table copies a block out of
+ * the mapping the first time it needs the array (a bulk copy, with no parsing), and names are
+ * decoded one at a time until the whole dictionary is needed.
+ *
+ * The snapshot is not updated when the csv changes; write a new one.
+ */
+final class GameSnapshot {
+    /** First bytes of every snapshot, "BGARENA" and a format byte. */
+    static final long MAGIC = 0x42474152454E4101L;
+    /** Format version, 2 since the name permutation is in {@link NameKey} order. */
+    static final int VERSION = 2;
+    /** Byte order of every value in the file. */
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    /** Number of columns in a snapshot. */
+    private static final int COLUMNS = GameData.values().length;
+    /** Size of the header, in bytes. */
+    private static final int HEADER_SIZE = 24 + 16 * COLUMNS + 24;
+    /** Max number of values written per buffer. */
+    private static final int WRITE_CHUNK = 1 << 16;
+
+    /** Number of rows. */
+    private final int size;
+    /** Number of distinct names. */
+    private final int names;
+    /** Value blocks, by GameData ordinal. */
+    private final ByteBuffer[] values = new ByteBuffer[COLUMNS];
+    /** Permutation blocks, by GameData ordinal. */
+    private final ByteBuffer[] permutations = new ByteBuffer[COLUMNS];
+    /** Where each name starts in the heap. */
+    private final ByteBuffer nameOffsets;
+    /** The names, as UTF-8. */
+    private final ByteBuffer heap;
+
+    /**
+     * Opens a snapshot by mapping its blocks.
+     *
+     * @param channel the open file.
+     * @param file    the file, for error messages.
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    private GameSnapshot(FileChannel channel, Path file) throws IOException {
+        long length = channel.size();
+        if (length < HEADER_SIZE) {
+            throw new IOException("Not a game snapshot: " + file);
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ORDER);
+        if (header.getLong() != MAGIC) {
+            throw new IOException("Not a game snapshot: " + file);
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + ": " + file);
+        }
+        size = header.getInt();
+        names = header.getInt();
+        if (header.getInt() != COLUMNS || size < 0 || names < 0) {
+            throw new IOException("Snapshot does not match the game columns: " + file);
+        }
+        long[] valueOffsets = new long[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            valueOffsets[i] = header.getLong();
+        }
+        for (GameData column : GameData.values()) {
+            int width = GameTable.isDecimal(column) ? Double.BYTES : Integer.BYTES;
+            values[column.ordinal()] = map(channel, file, valueOffsets[column.ordinal()],
+                    (long) size * width);
+        }
+        for (int i = 0; i < COLUMNS; i++) {
+            permutations[i] = map(channel, file, header.getLong(), (long) size * Integer.BYTES);
+        }
+        nameOffsets = map(channel, file, header.getLong(), (long) (names + 1) * Integer.BYTES);
+        long heapOffset = header.getLong();
+        heap = map(channel, file, heapOffset, header.getLong());
+    }
+
+    /**
+     * Maps a block of the file.
+     *
+     * @param channel the open file.
+     * @param file    the file, for error messages.
+     * @param offset  where the block starts.
+     * @param length  the length of the block.
+     * @return the mapped block.
+     * @throws IOException if the block is not inside the file.
+     */
+    private static ByteBuffer map(FileChannel channel, Path file, long offset, long length)
+            throws IOException {
+        if (offset < HEADER_SIZE || length < 0 || length > Integer.MAX_VALUE
+                || offset + length > channel.size()) {
+            throw new IOException("Snapshot block out of range: " + file);
+        }
+        MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        return block.order(ORDER);
+    }
+
+    /**
+     * Opens a snapshot file.
+     *
+     * @param file the file.
+     * @return the snapshot.
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    static GameSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new GameSnapshot(channel, file); // mappings stay valid once the file is closed
+        }
+    }
+
+    /**
+     * Writes a snapshot of a table. The file is written next to the target and moved over it,
+     * so a process opening the target never sees half a file.
+     *
+     * @param table the table.
+     * @param file  the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    static void write(GameTable table, Path file) throws IOException {
+        int size = table.size();
+        String[] dictionary = table.dictionary();
+        byte[][] encoded = new byte[dictionary.length][];
+        long heapLength = 0;
+        for (int i = 0; i < dictionary.length; i++) {
+            encoded[i] = dictionary[i].getBytes(StandardCharsets.UTF_8);
+            heapLength += encoded[i].length;
+        }
+
+        long position = HEADER_SIZE;
+        long[] valueOffsets = new long[COLUMNS];
+        for (GameData column : GameData.values()) {
+            valueOffsets[column.ordinal()] = position;
+            position = align(position + (long) size
+                    * (GameTable.isDecimal(column) ? Double.BYTES : Integer.BYTES));
+        }
+        long[] permutationOffsets = new long[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            permutationOffsets[i] = position;
+            position = align(position + (long) size * Integer.BYTES);
+        }
+        long nameOffsetsOffset = position;
+        long heapOffset = align(position + (long) (dictionary.length + 1) * Integer.BYTES);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+        header.putLong(MAGIC).putInt(VERSION).putInt(size).putInt(dictionary.length).putInt(COLUMNS);
+        for (long offset : valueOffsets) {
+            header.putLong(offset);
+        }
+        for (long offset : permutationOffsets) {
+            header.putLong(offset);
+        }
+        header.putLong(nameOffsetsOffset).putLong(heapOffset).putLong(heapLength);
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeAt(out, header.flip(), 0);
+            for (GameData column : GameData.values()) {
+                if (GameTable.isDecimal(column)) {
+                    writeDoubles(out, table.doubleColumn(column), valueOffsets[column.ordinal()]);
+                } else {
+                    writeInts(out, table.intColumn(column), valueOffsets[column.ordinal()]);
+                }
+                writeInts(out, table.permutation(column), permutationOffsets[column.ordinal()]);
+            }
+            int[] starts = new int[dictionary.length + 1];
+            for (int i = 0; i < dictionary.length; i++) {
+                starts[i + 1] = starts[i] + encoded[i].length;
+            }
+            writeInts(out, starts, nameOffsetsOffset);
+            long at = heapOffset;
+            for (byte[] name : encoded) {
+                writeAt(out, ByteBuffer.wrap(name), at);
+                at += name.length;
+            }
+            // with no names (an empty table) nothing reaches the aligned start of the heap,
+            // so the file is grown to its end for open() to map it
+            if (out.size() < at) {
+                writeAt(out, ByteBuffer.allocate(1), at - 1);
+            }
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Rounds a position up to the next multiple of 8.
+     *
+     * @param position the position.
+     * @return the aligned position.
+     */
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * Writes ints at a position, a chunk at a time.
+     *
+     * @param out      the file.
+     * @param array    the values.
+     * @param position where to write them.
+     * @throws IOException if they cannot be written.
+     */
+    private static void writeInts(FileChannel out, int[] array, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_CHUNK * Integer.BYTES).order(ORDER);
+        for (int from = 0; from < array.length; from += WRITE_CHUNK) {
+            int count = Math.min(WRITE_CHUNK, array.length - from);
+            buffer.clear();
+            buffer.asIntBuffer().put(array, from, count);
+            buffer.limit(count * Integer.BYTES);
+            writeAt(out, buffer, position + (long) from * Integer.BYTES);
+        }
+    }
+
+    /**
+     * Writes doubles at a position, a chunk at a time.
+     *
+     * @param out      the file.
+     * @param array    the values.
+     * @param position where to write them.
+     * @throws IOException if they cannot be written.
+     */
+    private static void writeDoubles(FileChannel out, double[] array, long position)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_CHUNK * Double.BYTES).order(ORDER);
+        for (int from = 0; from < array.length; from += WRITE_CHUNK) {
+            int count = Math.min(WRITE_CHUNK, array.length - from);
+            buffer.clear();
+            buffer.asDoubleBuffer().put(array, from, count);
+            buffer.limit(count * Double.BYTES);
+            writeAt(out, buffer, position + (long) from * Double.BYTES);
+        }
+    }
+
+    /**
+     * Writes a whole buffer at a position.
+     *
+     * @param out      the file.
+     * @param buffer   the bytes to write.
+     * @param position where to write them.
+     * @throws IOException if they cannot be written.
+     */
+    private static void writeAt(FileChannel out, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += out.write(buffer, position);
+        }
+    }
+
+    /**
+     * Gets the number of rows.
+     *
+     * @return the number of rows.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copies a whole number column (or the name codes, for NAME) out of the mapping.
+     *
+     * @param column the column.
+     * @return the values by row id.
+     */
+    int[] intColumn(GameData column) {
+        return ints(values[column.ordinal()], size);
+    }
+
+    /**
+     * Copies a decimal column out of the mapping.
+     *
+     * @param column the column.
+     * @return the values by row id.
+     */
+    double[] doubleColumn(GameData column) {
+        double[] array = new double[size];
+        values[column.ordinal()].duplicate().order(ORDER).asDoubleBuffer().get(array);
+        return array;
+    }
+
+    /**
+     * Copies the sort permutation of a column out of the mapping.
+     *
+     * @param column the column.
+     * @return every row id, in ascending order of the column.
+     */
+    int[] permutation(GameData column) {
+        return ints(permutations[column.ordinal()], size);
+    }
+
+    /**
+     * Decodes one name.
+     *
+     * @param code the name code.
+     * @return the name.
+     */
+    String name(int code) {
+        int start = nameOffsets.getInt(code * Integer.BYTES);
+        int end = nameOffsets.getInt((code + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        heap.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes every name.
+     *
+     * @return the names, indexed by name code.
+     */
+    String[] dictionary() {
+        String[] dictionary = new String[names];
+        for (int code = 0; code < names; code++) {
+            dictionary[code] = name(code);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Copies ints out of a block. The block is duplicated so several threads can copy at once.
+     *
+     * @param block the block.
+     * @param count the number of ints.
+     * @return the ints.
+     */
+    private static int[] ints(ByteBuffer block, int count) {
+        int[] array = new int[count];
+        block.duplicate().order(ORDER).asIntBuffer().get(array);
+        return array;
+    }
+}
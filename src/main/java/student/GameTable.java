@@ -0,0 +1,1164 @@
+package student;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Column store for a board game collection.
+ *
+ * Instead of one {@link BoardGame} object per game, the table keeps one primitive array per
+ * {@link GameData} column, indexed by row id (0 to size - 1). Names are dictionary encoded: each
+ * distinct name is stored once, and the name column holds the code of the name for each row.
+ * Each distinct name's {@link NameKey} is also built once, and names are matched and sorted by
+ * their keys.
+ *
+ * Sort permutations (the row ids in ascending order) are built for every column when the table
+ * is built, so a sorted result is a walk of the permutation that keeps the selected rows, with
+ * no comparisons.
+ *
+ * Statistics of every column ({@link ColumnStats}) are also built when the table is loaded, for
+ * estimating how many rows a condition matches.
+ *
+ * Numeric columns can also have a {@link SortedIndex}, which is built the first time it is asked
+ * for with {@link #index(GameData)}, and the names have a trigram {@link NameIndex} for the
+ * contains operator, built the first time it is asked for with {@link #nameIndex()}.
+ *
+ * Filters are evaluated as loops over the arrays (see {@link CompiledFilter#evaluate(GameTable)}),
+ * and rows are only turned back into {@link BoardGame} objects when they are output, using
+ * {@link #game(int)}.
+ *
+ * A table can also be opened on a binary {@link GameSnapshot} file, which holds the columns,
+ * names and sort permutations as written by an earlier build. Each array is copied out of the
+ * mapped file the first time it is used, so nothing is parsed or sorted.
+ *
+ * The table is immutable once built. {@link #apply(GameDelta)} builds a changed copy by patching
+ * the columns and sort permutations, without sorting the whole table again.
+ */
+public final class GameTable {
+    /** Max number of condition bitmaps to keep, each one is size / 8 bytes. */
+    private static final int BITMAP_CACHE_SIZE = 128;
+
+    /** Number of rows in the table. */
+    private final int size;
+    /**
+     * Whole number columns by GameData ordinal, with the name code of each row under NAME (null
+     * for decimal columns). Read from the snapshot on first use for snapshot tables.
+     */
+    private final AtomicReferenceArray<int[]> intColumns =
+            new AtomicReferenceArray<>(GameData.values().length);
+    /** Decimal columns by GameData ordinal, read from the snapshot on first use. */
+    private final AtomicReferenceArray<double[]> doubleColumns =
+            new AtomicReferenceArray<>(GameData.values().length);
+    /** Every distinct name, indexed by name code, read from the snapshot on first use. */
+    private volatile String[] dictionary;
+    /**
+     * The {@link NameKey} of every distinct name, indexed by name code. Built with the table, or
+     * on first use for snapshot tables.
+     */
+    private volatile String[] keys;
+    /**
+     * Row ids in ascending order of each column, by GameData ordinal. Names are in order of their
+     * {@link NameKey}, and every other column breaks ties by name order. Read from the snapshot
+     * on first use.
+     */
+    private final AtomicReferenceArray<int[]> permutations =
+            new AtomicReferenceArray<>(GameData.values().length);
+    /** The snapshot the columns are read from, null if the table was built in memory. */
+    private final GameSnapshot snapshot;
+    /** Bitmaps of single conditions, keyed by condition text. */
+    private final LruCache<String, BitSet> bitmapCache = new LruCache<>(BITMAP_CACHE_SIZE);
+    /** Inverse sort permutations (rank of each row) by GameData ordinal, built on first use. */
+    private final AtomicReferenceArray<int[]> ranks =
+            new AtomicReferenceArray<>(GameData.values().length);
+    /** Sorted indexes by GameData ordinal, built on first use. */
+    private final AtomicReferenceArray<SortedIndex> indexes =
+            new AtomicReferenceArray<>(GameData.values().length);
+    /**
+     * Column statistics by GameData ordinal. Built with the table when it is loaded, or on first
+     * use for snapshot tables and tables from {@link #apply(GameDelta)}.
+     */
+    private final AtomicReferenceArray<ColumnStats> stats =
+            new AtomicReferenceArray<>(GameData.values().length);
+    /** The substring index of the names, built on first use. */
+    private volatile NameIndex nameIndex;
+    /** The prefix completion index of the names, built on first use. */
+    private volatile PrefixIndex prefixIndex;
+    /** Every row set, shared by the unfiltered working set of every planner, built on first use. */
+    private volatile BitSet allRows;
+
+    /**
+     * Constructor for the table, use {@link #of(Collection)} or a {@link Builder} to build one.
+     *
+     * @param size          the number of rows.
+     * @param intColumns    the whole number columns.
+     * @param doubleColumns the decimal columns.
+     * @param dictionary    the distinct names.
+     * @param keys          the keys of the distinct names, or null to build them.
+     * @param nameCodes     the name code of each row.
+     * @param permutations  the sort permutations by GameData ordinal, or null to sort the rows.
+     */
+    private GameTable(int size, int[][] intColumns, double[][] doubleColumns, String[] dictionary,
+            String[] keys, int[] nameCodes, int[][] permutations) {
+        this.size = size;
+        this.snapshot = null;
+        for (int i = 0; i < intColumns.length; i++) {
+            this.intColumns.set(i, intColumns[i]);
+            this.doubleColumns.set(i, doubleColumns[i]);
+        }
+        this.intColumns.set(GameData.NAME.ordinal(), nameCodes);
+        this.dictionary = dictionary;
+        this.keys = keys != null ? keys : keysOf(dictionary);
+        if (permutations != null) {
+            for (int i = 0; i < permutations.length; i++) {
+                this.permutations.set(i, permutations[i]);
+            }
+            return;
+        }
+        int[] byName = permutationOf(GameData.NAME, identity(size));
+        for (GameData column : GameData.values()) {
+            this.permutations.set(column.ordinal(), column == GameData.NAME ? byName
+                    : permutationOf(column, byName));
+        }
+        for (GameData column : GameData.values()) {
+            this.stats.set(column.ordinal(), new ColumnStats(this, column));
+        }
+    }
+
+    /**
+     * Constructor for a table backed by a snapshot. Nothing is read until it is used.
+     *
+     * @param snapshot the snapshot.
+     */
+    private GameTable(GameSnapshot snapshot) {
+        this.size = snapshot.size();
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Opens a table on a snapshot file (see {@link GameSnapshot}). Columns, sort permutations
+     * and names are read from the mapped file the first time they are used, with no parsing
+     * and no sorting, so opening takes the same time for any size of collection.
+     *
+     * @param snapshot the opened snapshot.
+     * @return the table.
+     */
+    static GameTable of(GameSnapshot snapshot) {
+        return new GameTable(snapshot);
+    }
+
+    /**
+     * Builds a table holding the given games, in the order they are returned by the
+     * collection. Games that are equal to an earlier game (same name and id) are left out.
+     *
+     * @param games the games to store.
+     * @return the table.
+     */
+    public static GameTable of(Collection<BoardGame> games) {
+        Builder builder = new Builder(games.size());
+        for (BoardGame game : games) {
+            builder.add(game);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Checks if a column holds decimal (double) values.
+     *
+     * @param column the column to check.
+     * @return true for decimal columns, false for whole number and name columns.
+     */
+    static boolean isDecimal(GameData column) {
+        return column == GameData.RATING || column == GameData.DIFFICULTY;
+    }
+
+    /**
+     * Get the number of rows in the table.
+     *
+     * @return the number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the name of the game in a row.
+     *
+     * @param row the row id.
+     * @return the name.
+     */
+    public String name(int row) {
+        String[] names = dictionary;
+        int code = nameCodes()[row];
+        return names != null ? names[code] : snapshot.name(code);
+    }
+
+    /**
+     * Get a whole number value.
+     *
+     * @param column the column, which cannot be NAME, RATING or DIFFICULTY.
+     * @param row    the row id.
+     * @return the value.
+     */
+    public int getInt(GameData column, int row) {
+        return intColumn(column)[row];
+    }
+
+    /**
+     * Get a decimal value.
+     *
+     * @param column RATING or DIFFICULTY.
+     * @param row    the row id.
+     * @return the value.
+     */
+    public double getDouble(GameData column, int row) {
+        return doubleColumn(column)[row];
+    }
+
+    /**
+     * Get the backing array of a whole number column. The array must not be changed.
+     *
+     * @param column the column.
+     * @return the values by row id.
+     */
+    int[] intColumn(GameData column) {
+        int[] values = intColumns.get(column.ordinal());
+        if (values == null) {
+            intColumns.compareAndSet(column.ordinal(), null, snapshot.intColumn(column));
+            values = intColumns.get(column.ordinal());
+        }
+        return values;
+    }
+
+    /**
+     * Get the backing array of a decimal column. The array must not be changed.
+     *
+     * @param column the column.
+     * @return the values by row id.
+     */
+    double[] doubleColumn(GameData column) {
+        double[] values = doubleColumns.get(column.ordinal());
+        if (values == null) {
+            doubleColumns.compareAndSet(column.ordinal(), null, snapshot.doubleColumn(column));
+            values = doubleColumns.get(column.ordinal());
+        }
+        return values;
+    }
+
+    /**
+     * Get the name dictionary. The array must not be changed.
+     *
+     * @return the distinct names, indexed by name code.
+     */
+    String[] dictionary() {
+        String[] names = dictionary;
+        if (names == null) {
+            names = snapshot.dictionary();
+            dictionary = names; // a race decodes the names twice, either copy is the same
+        }
+        return names;
+    }
+
+    /**
+     * Get the {@link NameKey} of every distinct name. The array must not be changed.
+     *
+     * @return the name keys, indexed by name code.
+     */
+    String[] keys() {
+        String[] nameKeys = keys;
+        if (nameKeys == null) {
+            nameKeys = keysOf(dictionary());
+            keys = nameKeys; // a race builds the keys twice, either copy is the same
+        }
+        return nameKeys;
+    }
+
+    /**
+     * Builds the key of each name.
+     *
+     * @param names the names.
+     * @return the keys, in the same order.
+     */
+    private static String[] keysOf(String[] names) {
+        String[] nameKeys = new String[names.length];
+        for (int code = 0; code < names.length; code++) {
+            nameKeys[code] = NameKey.of(names[code]);
+        }
+        return nameKeys;
+    }
+
+    /**
+     * Get the {@link NameKey} of the name of a row.
+     *
+     * @param row the row id.
+     * @return the name key.
+     */
+    String key(int row) {
+        return keys()[nameCodes()[row]];
+    }
+
+    /**
+     * Get the name code of each row. The array must not be changed.
+     *
+     * @return the name codes by row id.
+     */
+    int[] nameCodes() {
+        return intColumn(GameData.NAME);
+    }
+
+    /**
+     * Get the rank of each row in a column's sort permutation, building it on first use. The
+     * array must not be changed.
+     *
+     * @param column the column.
+     * @return the position of each row id in {@link #permutation(GameData)}.
+     */
+    int[] ranks(GameData column) {
+        int[] rank = ranks.get(column.ordinal());
+        if (rank == null) {
+            int[] permutation = permutation(column);
+            rank = new int[size];
+            for (int i = 0; i < size; i++) {
+                rank[permutation[i]] = i;
+            }
+            ranks.compareAndSet(column.ordinal(), null, rank);
+            rank = ranks.get(column.ordinal());
+        }
+        return rank;
+    }
+
+    /**
+     * Get the sorted index of a numeric column, building it if this is the first use.
+     *
+     * @param column the column, which cannot be NAME.
+     * @return the index for the column.
+     */
+    public SortedIndex index(GameData column) {
+        SortedIndex index = indexes.get(column.ordinal());
+        if (index == null) {
+            // if two threads race, both build the same index and the first one is kept
+            indexes.compareAndSet(column.ordinal(), null, new SortedIndex(this, column));
+            index = indexes.get(column.ordinal());
+        }
+        return index;
+    }
+
+    /**
+     * Get the statistics of a column, building them if this is the first use.
+     *
+     * @param column the column.
+     * @return the statistics of the column.
+     */
+    public ColumnStats stats(GameData column) {
+        ColumnStats columnStats = stats.get(column.ordinal());
+        if (columnStats == null) {
+            stats.compareAndSet(column.ordinal(), null, new ColumnStats(this, column));
+            columnStats = stats.get(column.ordinal());
+        }
+        return columnStats;
+    }
+
+    /**
+     * Get the substring index of the names, building it if this is the first use.
+     *
+     * @return the name index.
+     */
+    public NameIndex nameIndex() {
+        NameIndex index = nameIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = nameIndex;
+                if (index == null) {
+                    index = new NameIndex(this);
+                    nameIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get the prefix completion index of the names, building it if this is the first use.
+     *
+     * @return the prefix index.
+     */
+    public PrefixIndex prefixIndex() {
+        PrefixIndex index = prefixIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = prefixIndex;
+                if (index == null) {
+                    index = new PrefixIndex(this);
+                    prefixIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Checks if the name index has been built, so a table replacing this one can build it too.
+     *
+     * @return true if {@link #nameIndex()} has been built.
+     */
+    boolean hasNameIndex() {
+        return nameIndex != null;
+    }
+
+    /**
+     * Get the sorted indexes that have been built so far, so their build time and memory use
+     * can be checked.
+     *
+     * @return the built indexes, in GameData order.
+     */
+    public List<SortedIndex> builtIndexes() {
+        List<SortedIndex> built = new ArrayList<>();
+        for (int i = 0; i < indexes.length(); i++) {
+            if (indexes.get(i) != null) {
+                built.add(indexes.get(i));
+            }
+        }
+        return built;
+    }
+
+    /**
+     * Gets the cached bitmap of the rows matching a condition.
+     *
+     * @param condition the condition.
+     * @return the matching rows, or null if the condition is not cached. The bitmap is shared
+     *         and must not be changed.
+     */
+    BitSet cachedBitmap(CompiledFilter condition) {
+        return bitmapCache.get(condition.toString());
+    }
+
+    /**
+     * Caches the bitmap of the rows matching a condition. The bitmap must not be changed after
+     * it is cached.
+     *
+     * @param condition the condition.
+     * @param bits      the rows that match the condition.
+     * @return the cached bitmap, which is bits unless another one was cached first.
+     */
+    BitSet cacheBitmap(CompiledFilter condition, BitSet bits) {
+        return bitmapCache.computeIfAbsent(condition.toString(), key -> bits);
+    }
+
+    /**
+     * Builds a BoardGame view of a row.
+     *
+     * @param row the row id.
+     * @return the game stored in the row.
+     */
+    public BoardGame game(int row) {
+        return new BoardGame(name(row), key(row), getInt(GameData.ID, row),
+                getInt(GameData.MIN_PLAYERS, row), getInt(GameData.MAX_PLAYERS, row),
+                getInt(GameData.MIN_TIME, row), getInt(GameData.MAX_TIME, row),
+                getDouble(GameData.DIFFICULTY, row), getInt(GameData.RANK, row),
+                getDouble(GameData.RATING, row), getInt(GameData.YEAR, row));
+    }
+
+    /**
+     * Builds a selection holding every row in the table.
+     *
+     * @return a new bitmap with every row set.
+     */
+    public BitSet all() {
+        BitSet all = new BitSet(size);
+        all.set(0, size);
+        return all;
+    }
+
+    /**
+     * Gets the selection of every row, shared instead of built for each caller.
+     *
+     * @return the bitmap with every row set, which must not be changed.
+     */
+    BitSet allRows() {
+        BitSet rows = allRows;
+        if (rows == null) {
+            rows = all();
+            allRows = rows; // a race builds the bitmap twice, either copy is the same
+        }
+        return rows;
+    }
+
+    /**
+     * Get the rows of a selection in ascending order of a column, by walking the column's sort
+     * permutation. Walk the result backwards for descending order.
+     *
+     * @param selection the rows to keep.
+     * @param column    the column to order by.
+     * @return the selected row ids, in ascending order of the column.
+     */
+    public int[] inOrder(BitSet selection, GameData column) {
+        int[] rows = new int[selection.cardinality()];
+        if (rows.length == size) {
+            return permutation(column).clone();
+        }
+        int count = 0;
+        for (int row : permutation(column)) {
+            if (selection.get(row)) {
+                rows[count++] = row;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Get the sort permutation of a column. The array must not be changed.
+     *
+     * @param column the column.
+     * @return every row id, in ascending order of the column.
+     */
+    int[] permutation(GameData column) {
+        int[] permutation = permutations.get(column.ordinal());
+        if (permutation == null) {
+            permutations.compareAndSet(column.ordinal(), null, snapshot.permutation(column));
+            permutation = permutations.get(column.ordinal());
+        }
+        return permutation;
+    }
+
+    /**
+     * Builds the sort permutation of a column. Rows with equal values are kept in the order
+     * they have in ties, which makes the sort stable with respect to that order.
+     *
+     * Each row gets an int sort key (the value itself for whole number columns, a dense rank
+     * for decimals and names), and the key is packed with the row's position in ties into a
+     * long, so the sort is a primitive {@link Arrays#parallelSort(long[])} with no comparator
+     * calls (it only splits the work across threads for large tables).
+     *
+     * @param column the column to sort on.
+     * @param ties   the order to keep rows with equal values in.
+     * @return every row id, in ascending order of the column.
+     */
+    private int[] permutationOf(GameData column, int[] ties) {
+        int[] keys;
+        if (column == GameData.NAME) {
+            keys = nameRanks();
+        } else if (isDecimal(column)) {
+            keys = denseRanks(doubleColumn(column));
+        } else {
+            keys = intColumn(column);
+        }
+        long[] packed = new long[size];
+        for (int i = 0; i < size; i++) {
+            packed[i] = ((long) keys[ties[i]] << Integer.SIZE) | i;
+        }
+        Arrays.parallelSort(packed);
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = ties[(int) packed[i]];
+        }
+        return rows;
+    }
+
+    /**
+     * Ranks each row by the key of its name. Names with the same key (equal ignoring case and
+     * accents) share a rank, so their order is left to the tie breaker.
+     *
+     * @return the name rank of each row.
+     */
+    private int[] nameRanks() {
+        String[] nameKeys = keys();
+        int[] nameCodes = nameCodes();
+        Integer[] codes = new Integer[nameKeys.length];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = i;
+        }
+        Arrays.sort(codes, (a, b) -> nameKeys[a].compareTo(nameKeys[b]));
+        int[] codeRanks = new int[nameKeys.length];
+        int rank = 0;
+        for (int i = 0; i < codes.length; i++) {
+            if (i > 0 && !nameKeys[codes[i - 1]].equals(nameKeys[codes[i]])) {
+                rank++;
+            }
+            codeRanks[codes[i]] = rank;
+        }
+        int[] ranks = new int[size];
+        for (int row = 0; row < size; row++) {
+            ranks[row] = codeRanks[nameCodes[row]];
+        }
+        return ranks;
+    }
+
+    /**
+     * Ranks each value among the distinct values of a decimal column, in
+     * {@link Double#compare(double, double)} order.
+     *
+     * @param values the column values.
+     * @return the rank of each row's value.
+     */
+    private static int[] denseRanks(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || Double.compare(sorted[i - 1], sorted[i]) != 0) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        int[] ranks = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ranks[i] = Arrays.binarySearch(sorted, 0, distinct, values[i]);
+        }
+        return ranks;
+    }
+
+    /**
+     * Builds a copy of the table with a delta applied, for updates that change a small part of
+     * a large collection.
+     *
+     * Rows are found by id with a binary search of the id permutation. The columns are copied
+     * with the deleted rows left out (so later rows move up, keeping their order), the updated
+     * values are patched in place, and inserted games are added at the end. Each sort permutation
+     * is patched the same way: the rows whose position may have changed (updated in that column,
+     * renamed, or inserted) are taken out of the old permutation, sorted on their own and merged
+     * back in at binary searched positions, so only the changed rows are ever compared. The
+     * result is the same as building the new rows from scratch. Sorted indexes built on this
+     * table are rebuilt on the copy from the patched permutations.
+     *
+     * Names of deleted games stay in the dictionary.
+     *
+     * @param delta the changes.
+     * @return the changed table, or this table if the delta is empty.
+     */
+    public GameTable apply(GameDelta delta) {
+        if (delta.size() == 0) {
+            return this;
+        }
+        int[] ids = intColumn(GameData.ID);
+        int[] byId = permutation(GameData.ID);
+        BitSet deleted = new BitSet(size);
+        List<Integer> updatedRows = new ArrayList<>();
+        List<GameDelta.Change> updates = new ArrayList<>();
+        List<GameDelta.Change> inserts = new ArrayList<>();
+        for (GameDelta.Change change : delta.changes()) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ids[byId[mid]] < change.id) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            if (low == size || ids[byId[low]] != change.id) {
+                if (change.put) {
+                    inserts.add(change);
+                }
+                continue;
+            }
+            // a put replaces every row with the id by one row, the first in name order
+            for (int pos = low; pos < size && ids[byId[pos]] == change.id; pos++) {
+                if (change.delete || change.put && pos > low) {
+                    deleted.set(byId[pos]);
+                } else {
+                    updatedRows.add(byId[pos]);
+                    updates.add(change);
+                }
+            }
+        }
+
+        int kept = size - deleted.cardinality();
+        int newSize = kept + inserts.size();
+        int[] newRow = new int[size];
+        for (int row = 0, next = 0; row < size; row++) {
+            newRow[row] = deleted.get(row) ? -1 : next++;
+        }
+        GameData[] columns = GameData.values();
+        int[][] newInts = new int[columns.length][];
+        double[][] newDoubles = new double[columns.length][];
+        for (GameData column : columns) {
+            if (isDecimal(column)) {
+                newDoubles[column.ordinal()] = new double[newSize];
+                compact(doubleColumn(column), newDoubles[column.ordinal()], deleted);
+            } else {
+                newInts[column.ordinal()] = new int[newSize];
+                compact(intColumn(column), newInts[column.ordinal()], deleted);
+            }
+        }
+        int[] newCodes = newInts[GameData.NAME.ordinal()];
+        String[] names = dictionary();
+        String[] nameKeys = keys();
+        Map<String, Integer> added = new HashMap<>();
+
+        // per column: old rows to take out of the permutation, and new rows to merge back in
+        BitSet[] moved = new BitSet[columns.length];
+        List<List<Integer>> placed = new ArrayList<>();
+        for (GameData column : columns) {
+            moved[column.ordinal()] = (BitSet) deleted.clone();
+            placed.add(new ArrayList<>());
+        }
+        for (int i = 0; i < updates.size(); i++) {
+            int row = updatedRows.get(i);
+            GameDelta.Change change = updates.get(i);
+            int to = newRow[row];
+            boolean renamed = change.name != null && !change.name.equals(name(row));
+            if (renamed) {
+                newCodes[to] = codeOf(change.name, names, nameKeys, added);
+            }
+            for (GameData column : columns) {
+                boolean changed = renamed;
+                if (column != GameData.NAME && change.sets(column)) {
+                    if (isDecimal(column)) {
+                        double value = change.doubles[column.ordinal()];
+                        changed |= Double.compare(newDoubles[column.ordinal()][to], value) != 0;
+                        newDoubles[column.ordinal()][to] = value;
+                    } else {
+                        int value = change.ints[column.ordinal()];
+                        changed |= newInts[column.ordinal()][to] != value;
+                        newInts[column.ordinal()][to] = value;
+                    }
+                }
+                if (changed) {
+                    moved[column.ordinal()].set(row);
+                    placed.get(column.ordinal()).add(to);
+                }
+            }
+        }
+        for (int i = 0; i < inserts.size(); i++) {
+            GameDelta.Change change = inserts.get(i);
+            int to = kept + i;
+            newCodes[to] = codeOf(change.name, names, nameKeys, added);
+            for (GameData column : columns) {
+                if (isDecimal(column)) {
+                    newDoubles[column.ordinal()][to] = change.doubles[column.ordinal()];
+                } else if (column != GameData.NAME) {
+                    newInts[column.ordinal()][to] = change.ints[column.ordinal()];
+                }
+                placed.get(column.ordinal()).add(to);
+            }
+        }
+
+        String[] newNames = names;
+        String[] newKeys = nameKeys;
+        if (!added.isEmpty()) {
+            newNames = Arrays.copyOf(names, names.length + added.size());
+            newKeys = Arrays.copyOf(nameKeys, names.length + added.size());
+            for (Map.Entry<String, Integer> entry : added.entrySet()) {
+                newNames[entry.getValue()] = entry.getKey();
+                newKeys[entry.getValue()] = NameKey.of(entry.getKey());
+            }
+        }
+        String[] keyOf = newKeys;
+        int[][] newPermutations = new int[columns.length][];
+        int[] byName = patch(permutation(GameData.NAME), moved[GameData.NAME.ordinal()],
+                placed.get(GameData.NAME.ordinal()), newRow, newSize, (a, b) -> {
+                    int order = keyOf[newCodes[a]].compareTo(keyOf[newCodes[b]]);
+                    return order != 0 ? order : Integer.compare(a, b);
+                });
+        newPermutations[GameData.NAME.ordinal()] = byName;
+        int[] nameRank = new int[newSize];
+        for (int i = 0; i < newSize; i++) {
+            nameRank[byName[i]] = i;
+        }
+        for (GameData column : columns) {
+            if (column == GameData.NAME) {
+                continue;
+            }
+            int[] intValues = newInts[column.ordinal()];
+            double[] doubleValues = newDoubles[column.ordinal()];
+            newPermutations[column.ordinal()] = patch(permutation(column), moved[column.ordinal()],
+                    placed.get(column.ordinal()), newRow, newSize, (a, b) -> {
+                        int order = doubleValues != null
+                                ? Double.compare(doubleValues[a], doubleValues[b])
+                                : Integer.compare(intValues[a], intValues[b]);
+                        return order != 0 ? order : Integer.compare(nameRank[a], nameRank[b]);
+                    });
+        }
+
+        GameTable table = new GameTable(newSize, newInts, newDoubles, newNames, newKeys,
+                newCodes, newPermutations);
+        for (SortedIndex index : builtIndexes()) {
+            table.index(index.getColumn());
+        }
+        if (hasNameIndex()) {
+            table.nameIndex();
+        }
+        return table;
+    }
+
+    /**
+     * Finds the code of a name for {@link #apply(GameDelta)}: the code it has in this table, by
+     * a binary search of the name permutation, or a new code after the dictionary.
+     *
+     * @param name     the name.
+     * @param names    the dictionary of this table.
+     * @param nameKeys the keys of the dictionary.
+     * @param added    the names added so far, by their new code.
+     * @return the name code.
+     */
+    private int codeOf(String name, String[] names, String[] nameKeys,
+            Map<String, Integer> added) {
+        int[] byName = permutation(GameData.NAME);
+        int[] codes = nameCodes();
+        String nameKey = NameKey.of(name);
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (nameKeys[codes[byName[mid]]].compareTo(nameKey) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int pos = low; pos < size && nameKeys[codes[byName[pos]]].equals(nameKey); pos++) {
+            if (names[codes[byName[pos]]].equals(name)) {
+                return codes[byName[pos]];
+            }
+        }
+        return added.computeIfAbsent(name, key -> names.length + added.size());
+    }
+
+    /**
+     * Copies a column, leaving out the deleted rows.
+     *
+     * @param from    the column, an int[] or double[].
+     * @param to      the array to copy into, of the same type, with room for the kept rows.
+     * @param deleted the rows to leave out.
+     */
+    private static void compact(Object from, Object to, BitSet deleted) {
+        int length = Array.getLength(from);
+        int next = 0;
+        for (int start = 0; start < length; ) {
+            int end = deleted.nextSetBit(start);
+            if (end < 0) {
+                end = length;
+            }
+            System.arraycopy(from, start, to, next, end - start);
+            next += end - start;
+            start = deleted.nextClearBit(end);
+        }
+    }
+
+    /**
+     * Patches a sort permutation for {@link #apply(GameDelta)}.
+     *
+     * @param old     the permutation of this table.
+     * @param moved   the rows of this table to take out: deleted rows and rows that may move.
+     * @param placed  the new row ids to put in: moved rows that were kept, and inserted rows.
+     * @param newRow  the new row id of each row of this table.
+     * @param newSize the number of rows in the new table.
+     * @param order   the order of the new table's rows, with no ties.
+     * @return the permutation of the new table.
+     */
+    private static int[] patch(int[] old, BitSet moved, List<Integer> placed, int[] newRow,
+            int newSize, Comparator<Integer> order) {
+        int[] base = new int[newSize - placed.size()];
+        int count = 0;
+        for (int row : old) {
+            if (!moved.get(row)) {
+                base[count++] = newRow[row];
+            }
+        }
+        Integer[] sorted = placed.toArray(new Integer[0]);
+        Arrays.sort(sorted, order);
+        int[] rows = new int[newSize];
+        int from = 0;
+        int next = 0;
+        for (Integer row : sorted) {
+            int low = from;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (order.compare(base[mid], row) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            System.arraycopy(base, from, rows, next, low - from);
+            next += low - from;
+            from = low;
+            rows[next++] = row;
+        }
+        System.arraycopy(base, from, rows, next, count - from);
+        return rows;
+    }
+
+    /**
+     * Builds the row ids 0 to size - 1.
+     *
+     * @param size the number of rows.
+     * @return the row ids, in order.
+     */
+    private static int[] identity(int size) {
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    /**
+     * Builds a table one row at a time, straight from primitive values, so a loader does not
+     * have to make a {@link BoardGame} per row.
+     *
+     * Rows that are equal to an earlier row (same name and id, as in
+     * {@link BoardGame#equals(Object)}) are dropped, so the first one wins, just as it does when
+     * adding to a HashSet.
+     */
+    public static final class Builder {
+        /** Number of rows added so far. */
+        private int size;
+        /** Whole number columns, indexed by GameData ordinal (null for other columns). */
+        private final int[][] ints = new int[GameData.values().length][];
+        /** Decimal columns, indexed by GameData ordinal (null for other columns). */
+        private final double[][] doubles = new double[GameData.values().length][];
+        /** The name code of each row. */
+        private int[] nameCodes;
+        /** Name code of each distinct name. */
+        private final Map<String, Integer> codes = new HashMap<>();
+        /** Every distinct name, indexed by name code. */
+        private final List<String> dictionary = new ArrayList<>();
+        /** Open addressing table of row + 1 (0 is empty), keyed on name code and id. */
+        private int[] slots;
+
+        /**
+         * Constructs an empty builder.
+         */
+        public Builder() {
+            this(16);
+        }
+
+        /**
+         * Constructs an empty builder with room for the expected number of rows.
+         *
+         * @param expected the expected number of rows.
+         */
+        public Builder(int expected) {
+            int capacity = Math.max(16, expected);
+            for (GameData column : GameData.values()) {
+                if (isDecimal(column)) {
+                    doubles[column.ordinal()] = new double[capacity];
+                } else if (column != GameData.NAME) {
+                    ints[column.ordinal()] = new int[capacity];
+                }
+            }
+            nameCodes = new int[capacity];
+            slots = new int[Integer.highestOneBit(capacity) * 4];
+        }
+
+        /**
+         * Get the number of rows added so far.
+         *
+         * @return the number of rows.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Adds a game.
+         *
+         * @param game the game to add.
+         * @return true if it was added, false if an equal game was already added.
+         */
+        public boolean add(BoardGame game) {
+            int[] intValues = new int[GameData.values().length];
+            double[] doubleValues = new double[GameData.values().length];
+            intValues[GameData.ID.ordinal()] = game.getId();
+            intValues[GameData.RANK.ordinal()] = game.getRank();
+            intValues[GameData.MIN_PLAYERS.ordinal()] = game.getMinPlayers();
+            intValues[GameData.MAX_PLAYERS.ordinal()] = game.getMaxPlayers();
+            intValues[GameData.MIN_TIME.ordinal()] = game.getMinPlayTime();
+            intValues[GameData.MAX_TIME.ordinal()] = game.getMaxPlayTime();
+            intValues[GameData.YEAR.ordinal()] = game.getYearPublished();
+            doubleValues[GameData.RATING.ordinal()] = game.getRating();
+            doubleValues[GameData.DIFFICULTY.ordinal()] = game.getDifficulty();
+            return add(game.getName(), intValues, doubleValues);
+        }
+
+        /**
+         * Adds a row from its values.
+         *
+         * @param name         the name of the game.
+         * @param intValues    the whole number values, indexed by GameData ordinal (other
+         *                     entries are ignored). The array is not kept.
+         * @param doubleValues the decimal values, indexed by GameData ordinal (other entries are
+         *                     ignored). The array is not kept.
+         * @return true if it was added, false if an equal game was already added.
+         */
+        public boolean add(String name, int[] intValues, double[] doubleValues) {
+            int code = code(name);
+            int id = intValues[GameData.ID.ordinal()];
+            int slot = find(code, id);
+            if (slots[slot] != 0) {
+                return false;
+            }
+
+            if (size == nameCodes.length) {
+                grow();
+            }
+            for (int i = 0; i < ints.length; i++) {
+                if (ints[i] != null) {
+                    ints[i][size] = intValues[i];
+                } else if (doubles[i] != null) {
+                    doubles[i][size] = doubleValues[i];
+                }
+            }
+            nameCodes[size] = code;
+            slots[slot] = ++size;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return true;
+        }
+
+        /**
+         * Adds every row of another builder, in order, as if each was passed to
+         * {@link #add(String, int[], double[])}. Rows equal to a row already in this builder
+         * are left out and passed to duplicates.
+         *
+         * @param part       the builder to add rows from, which is not changed.
+         * @param duplicates called with the row number (in part) of each row left out.
+         */
+        void addAll(Builder part, IntConsumer duplicates) {
+            int[] remap = new int[part.dictionary.size()];
+            for (int i = 0; i < remap.length; i++) {
+                remap[i] = code(part.dictionary.get(i));
+            }
+            while (nameCodes.length < size + part.size) {
+                grow();
+            }
+            int[] partIds = part.ints[GameData.ID.ordinal()];
+            for (int row = 0; row < part.size; row++) {
+                int code = remap[part.nameCodes[row]];
+                int slot = find(code, partIds[row]);
+                if (slots[slot] != 0) {
+                    duplicates.accept(row);
+                    continue;
+                }
+                for (int i = 0; i < ints.length; i++) {
+                    if (ints[i] != null) {
+                        ints[i][size] = part.ints[i][row];
+                    } else if (doubles[i] != null) {
+                        doubles[i][size] = part.doubles[i][row];
+                    }
+                }
+                nameCodes[size] = code;
+                slots[slot] = ++size;
+                if (size * 2 > slots.length) {
+                    rehash();
+                }
+            }
+        }
+
+        /**
+         * Gets the name of a row added so far.
+         *
+         * @param row the row.
+         * @return the name.
+         */
+        String name(int row) {
+            return dictionary.get(nameCodes[row]);
+        }
+
+        /**
+         * Gets a whole number value of a row added so far.
+         *
+         * @param row    the row.
+         * @param column a whole number column.
+         * @return the value.
+         */
+        int getInt(int row, GameData column) {
+            return ints[column.ordinal()][row];
+        }
+
+        /**
+         * Builds the table from the rows added so far. The builder should not be used after.
+         *
+         * @return the table.
+         */
+        public GameTable build() {
+            int[][] intColumns = new int[ints.length][];
+            double[][] doubleColumns = new double[doubles.length][];
+            for (int i = 0; i < ints.length; i++) {
+                if (ints[i] != null) {
+                    intColumns[i] = Arrays.copyOf(ints[i], size);
+                } else if (doubles[i] != null) {
+                    doubleColumns[i] = Arrays.copyOf(doubles[i], size);
+                }
+            }
+            return new GameTable(size, intColumns, doubleColumns,
+                    dictionary.toArray(new String[0]), null, Arrays.copyOf(nameCodes, size), null);
+        }
+
+        /**
+         * Gets the code of a name, adding it to the dictionary if it is new.
+         *
+         * @param name the name.
+         * @return the name code.
+         */
+        private int code(String name) {
+            Integer code = codes.get(name);
+            if (code == null) {
+                code = dictionary.size();
+                codes.put(name, code);
+                dictionary.add(name);
+            }
+            return code;
+        }
+
+        /**
+         * Finds the slot of the row with the given name code and id, or the empty slot where it
+         * would go.
+         *
+         * @param code the name code.
+         * @param id   the game id.
+         * @return the slot index.
+         */
+        private int find(int code, int id) {
+            int mask = slots.length - 1;
+            int h = (code * 0x9E3779B9) ^ id * 0x85EBCA6B;
+            int slot = (h ^ (h >>> 16)) & mask;
+            int[] ids = ints[GameData.ID.ordinal()];
+            while (slots[slot] != 0) {
+                int row = slots[slot] - 1;
+                if (ids[row] == id && nameCodes[row] == code) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Doubles the room for rows in every column.
+         */
+        private void grow() {
+            int capacity = nameCodes.length * 2;
+            for (int i = 0; i < ints.length; i++) {
+                if (ints[i] != null) {
+                    ints[i] = Arrays.copyOf(ints[i], capacity);
+                } else if (doubles[i] != null) {
+                    doubles[i] = Arrays.copyOf(doubles[i], capacity);
+                }
+            }
+            nameCodes = Arrays.copyOf(nameCodes, capacity);
+        }
+
+        /**
+         * Doubles the number of duplicate check slots and puts every row back in.
+         */
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int[] ids = ints[GameData.ID.ordinal()];
+            for (int row = 0; row < size; row++) {
+                slots[find(nameCodes[row], ids[row])] = row + 1;
+            }
+        }
+    }
+}
@@ -1,28 +1,31 @@
 package student;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Loads the games from the csv file into a set of BoardGame objects.
  * This file is stored in the resources folder, and while it is
  * passed in - often tends to be more fixed.
  * 
- * It assumes there are no comma's in the data (and does not handle errors if
- * there are extra commas like in the name).
+ * The file is streamed through {@link GameCsvParser}, which writes the rows straight into a
+ * {@link GameTable}, so no line strings or per game objects are made while loading. Quoted
+ * fields (names with commas, quotes or line breaks) are handled as in RFC 4180.
+ * 
+ * Collections can also be loaded from disk: a file (plain or gzipped) or a directory of shards,
+ * see {@link #load(Path, int)}.
  * 
  */
 public final class GamesLoader {
-    /** Standard csv delim. */
-    private static final String DELIMITER = ",";
 
     /** private constructor to prevent instantiation. */
     private GamesLoader() {
@@ -35,86 +38,213 @@ public final class GamesLoader {
      * @return a set of BoardGame objects
      */
     public static Set<BoardGame> loadGamesFile(String filename) {
+        GameTable table = loadTable(filename);
+        Set<BoardGame> games = new LinkedHashSet<>();
+        for (int row = 0; row < table.size(); row++) {
+            games.add(table.game(row));
+        }
+        return games;
+    }
 
-        Set<BoardGame> games = new HashSet<>();
+    /**
+     * Loads the games from the csv file straight into a column store.
+     * 
+     * Rows that cannot be parsed are skipped, and duplicate games (same name and id) are only
+     * loaded once. If any rows were skipped, a summary is printed to standard error.
+     * 
+     * @param filename the name of the file to load, relative to the resources folder
+     * @return the table of games, empty if the file could not be read
+     */
+    public static GameTable loadTable(String filename) {
+        return tableOf(filename, load(filename));
+    }
 
-        List<String> lines;
-        try {
-            // this is so we can store the files in the resources folder
-            InputStream is = GamesLoader.class.getResourceAsStream(filename);
-            InputStreamReader isr = new InputStreamReader(is, StandardCharsets.UTF_8);
-            BufferedReader reader = new BufferedReader(isr);
-            lines = reader.lines().collect(Collectors.toList());
-        } catch (Exception e) {
-            System.err.println("Error reading file: " + e.getMessage());
-            return games;
-        }
-        if (lines == null || lines.isEmpty()) {
-            return games;
+    /**
+     * Loads the games from the csv file straight into a column store, parsing chunks of the
+     * file on several threads (see {@link #load(Path, int)}).
+     * 
+     * The file is read in parallel when it is a plain file on disk (as it is when running
+     * from the build folder). Otherwise, such as when it is packed in a jar, it is loaded on
+     * one thread.
+     * 
+     * @param filename the name of the file to load, relative to the resources folder
+     * @param threads  the number of threads to parse on, 1 or less to load on this thread
+     * @return the table of games, empty if the file could not be read
+     */
+    public static GameTable loadTable(String filename, int threads) {
+        Path path = resourcePath(filename);
+        if (threads <= 1 || path == null) {
+            return loadTable(filename);
         }
+        return tableOf(filename, load(path, threads));
+    }
 
-        Map<GameData, Integer> columnMap = processHeader(lines.remove(0));
-
-        games = lines.stream().map(line -> toBoardGame(line, columnMap))
-                .filter(game -> game != null).collect(Collectors.toSet());
+    /**
+     * Finds the file on disk behind a resource, such as the built in collection when running
+     * from the build folder.
+     * 
+     * @param filename the name of the file, relative to the resources folder
+     * @return the path of the file, or null if it is not a plain file (such as in a jar)
+     */
+    static Path resourcePath(String filename) {
+        URL url = GamesLoader.class.getResource(filename);
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Path.of(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
 
-        return games;
+    /**
+     * Prints a summary of the skipped rows to standard error, if there are any.
+     * 
+     * @param source the file name, for the summary
+     * @param report the report of loading the file
+     * @return the table of games
+     */
+    private static GameTable tableOf(String source, LoadReport report) {
+        if (report.getSkipped() > 0) {
+            System.err.println(source + ": " + report);
+            report.getSamples().forEach(sample -> System.err.println("  " + sample));
+        }
+        return report.getTable();
+    }
 
+    /**
+     * Loads the games from the csv file, reporting which rows were skipped and why.
+     * 
+     * @param filename the name of the file to load, relative to the resources folder
+     * @return the report, holding the table of games (empty if the file could not be read)
+     */
+    public static LoadReport load(String filename) {
+        GameTable.Builder builder = new GameTable.Builder();
+        GameCsvParser parser = new GameCsvParser(builder);
+        // this is so we can store the files in the resources folder
+        InputStream is = GamesLoader.class.getResourceAsStream(filename);
+        if (is == null) {
+            System.err.println("Error reading file: " + filename + " not found");
+            return parser.report(builder.build());
+        }
+        try (ReadableByteChannel channel = Channels.newChannel(is)) {
+            parser.parse(channel);
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            GameTable.Builder empty = new GameTable.Builder();
+            return new GameCsvParser(empty).report(empty.build());
+        }
+        return parser.report(builder.build());
     }
 
     /**
-     * Converts a line from the csv file into a BoardGame object.
+     * Loads the games from a csv file on disk, or from every shard in a directory.
+     * 
+     * <ul>
+     * <li>A directory is loaded shard by shard (the files ending in .csv or .csv.gz, each with
+     * its own header), with up to threads shards parsed at the same time. The shards are merged
+     * in file name order.</li>
+     * <li>A gzipped file (ending in .gz) is decompressed as a stream, on this thread.</li>
+     * <li>A plain file is read through a file channel into a large direct buffer. With more
+     * than one thread it is split into byte ranges that start at a record, each range is parsed
+     * on a {@link ForkJoinPool}, and the partial results are merged in file order.</li>
+     * </ul>
+     * 
+     * In every case the table and report are the same as loading the rows on one thread:
+     * duplicate games keep their first row.
      * 
-     * @param line      the line to convert
-     * @param columnMap the map of columns to index
-     * @return a BoardGame object
+     * @param path    the file or directory to load
+     * @param threads the number of threads to parse on
+     * @return the report, holding the table of games (empty if the files could not be read)
      */
-    private static BoardGame toBoardGame(String line, Map<GameData, Integer> columnMap) {
-        String[] columns = line.split(DELIMITER);
-        if (columns.length < columnMap.values().stream().max(Integer::compareTo).get()) {
-            return null;
+    public static LoadReport load(Path path, int threads) {
+        try {
+            return read(path, threads);
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            GameTable.Builder empty = new GameTable.Builder();
+            return new GameCsvParser(empty).report(empty.build());
         }
+    }
 
+    /**
+     * Loads the games from a csv file on disk, or from every shard in a directory, as
+     * {@link #load(Path, int)} does, but passes on read errors.
+     * 
+     * @param path    the file or directory to load
+     * @param threads the number of threads to parse on
+     * @return the report, holding the table of games
+     * @throws IOException if the files cannot be read
+     */
+    static LoadReport read(Path path, int threads) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
         try {
-            BoardGame game = new BoardGame(columns[columnMap.get(GameData.NAME)],
-                    Integer.parseInt(columns[columnMap.get(GameData.ID)]),
-                    Integer.parseInt(columns[columnMap.get(GameData.MIN_PLAYERS)]),
-                    Integer.parseInt(columns[columnMap.get(GameData.MAX_PLAYERS)]),
-                    Integer.parseInt(columns[columnMap.get(GameData.MIN_TIME)]),
-                    Integer.parseInt(columns[columnMap.get(GameData.MAX_TIME)]),
-                    Double.parseDouble(columns[columnMap.get(GameData.DIFFICULTY)]),
-                    Integer.parseInt(columns[columnMap.get(GameData.RANK)]),
-                    Double.parseDouble(columns[columnMap.get(GameData.RATING)]),
-                    Integer.parseInt(columns[columnMap.get(GameData.YEAR)]));
-            return game;
-        } catch (NumberFormatException e) {
-            // skip if there is an issue
-            return null;
+            if (Files.isDirectory(path)) {
+                return ShardedCsvLoader.load(ShardedCsvLoader.shards(path), pool);
+            }
+            if (threads > 1 && !ShardedCsvLoader.isGzip(path)) {
+                return ParallelCsvLoader.load(path, pool, ParallelCsvLoader.MIN_CHUNK);
+            }
+            GameTable.Builder builder = new GameTable.Builder();
+            GameCsvParser parser = new GameCsvParser(builder);
+            ShardedCsvLoader.parse(path, parser);
+            return parser.report(builder.build());
+        } finally {
+            pool.shutdown();
         }
     }
 
     /**
-     * Processes the header line to determine the column mapping.
+     * Loads the games from a csv file on disk, or from every shard in a directory, straight
+     * into a column store (see {@link #load(Path, int)}). If any rows were skipped, a summary is
+     * printed to standard error.
+     * 
+     * @param path    the file or directory to load
+     * @param threads the number of threads to parse on
+     * @return the table of games, empty if the files could not be read
+     */
+    public static GameTable loadTable(Path path, int threads) {
+        return tableOf(path.toString(), load(path, threads));
+    }
+
+    /**
+     * Opens a binary snapshot of a collection, written earlier by
+     * {@link #writeSnapshot(GameTable, Path)}.
      * 
-     * It is common to do this for csv files as the columns can be in any order.
-     * This makes it order independent by taking a moment to link the columns
-     * with their actual index in the file.
+     * The file is memory mapped and nothing is parsed: columns are copied out of the mapping
+     * the first time a query needs them, so this takes the same time for any size of
+     * collection, and processes opening the same snapshot share it in the page cache.
      * 
-     * @param header the header line
-     * @return a map of column to index
+     * @param file the snapshot file
+     * @return the table of games, empty if the file could not be read
      */
-    private static Map<GameData, Integer> processHeader(String header) {
-        Map<GameData, Integer> columnMap = new HashMap<>();
-        String[] columns = header.split(DELIMITER);
-        for (int i = 0; i < columns.length; i++) {
-            try {
-                GameData col = GameData.fromColumnName(columns[i]);
-                columnMap.put(col, i);
-            } catch (IllegalArgumentException e) {
-                // System.out.println("Ignoring column: " + columns[i]);
-            }
+    public static GameTable loadSnapshot(Path file) {
+        try {
+            return GameTable.of(GameSnapshot.open(file));
+        } catch (IOException e) {
+            System.err.println("Error reading snapshot: " + e.getMessage());
+            return new GameTable.Builder().build();
+        }
+    }
+
+    /**
+     * Writes a binary snapshot of a collection, so later starts can open it with
+     * {@link #loadSnapshot(Path)} instead of parsing the csv. The snapshot is replaced in one
+     * step, so a process opening it never sees half a file.
+     * 
+     * @param table the games to write
+     * @param file  the snapshot file
+     * @return true if it was written
+     */
+    public static boolean writeSnapshot(GameTable table, Path file) {
+        try {
+            GameSnapshot.write(table, file);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing snapshot: " + e.getMessage());
+            return false;
         }
-        return columnMap;
     }
 
 }
@@ -28,9 +28,9 @@ public interface IGameList {
 
     /**
      * Gets the contents of a list, as list of names (Strings) in ascending order
-     * ignoring case.
+     * ignoring case and accents.
      * 
-     * @return the list of game names in ascending order ignoring case.
+     * @return the list of game names in ascending order ignoring case and accents.
      */
     List<String> getGameNames();
 
@@ -109,4 +109,15 @@ public interface IGameList {
      */
     void removeFromList(String str) throws IllegalArgumentException;
 
+    /**
+     * Suggests the names in the list closest to a name that was not found, such as a typo
+     * given to {@link #removeFromList(String)}. Names are compared ignoring case and accents,
+     * by edit distance, and only names a few edits away are suggested.
+     * 
+     * @param name  the name that was not found.
+     * @param limit the max number of suggestions.
+     * @return the suggested names, closest first.
+     */
+    List<String> suggest(String name, int limit);
+
 }
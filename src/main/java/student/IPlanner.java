@@ -1,5 +1,6 @@
 package student;
 
+import java.util.List;
 import java.util.stream.Stream;
 
 /**
@@ -80,6 +81,17 @@ public interface IPlanner {
      * This would filter the board games to only those with a minimum number of players greater than
      * 4 and less than 6.
      * 
+     * Filters can also be joined with &amp; (the same as a comma), | (or) and ! (not), and grouped
+     * with parentheses, with &amp; binding tighter than |. For example:
+     * 
+     * (minPlayers&gt;=4 | maxPlayTime&lt;30) &amp; !name~=expansion
+     * 
+     * An &amp; or | that is not followed by another condition is part of the value, as in
+     * name~=Inns &amp; Cathedrals. A value that holds a comma, an unbalanced parenthesis, or an
+     * &amp; or | that is can be written in double quotes (see {@link FilterCompiler}). A
+     * condition that cannot be read is an error, unless it is one of a list of comma separated
+     * conditions, where it is left out.
+     * 
      * Spaces should be ignored, but can be included for readability. For example:
      * 
      * minPlayers > 4
@@ -115,6 +127,75 @@ public interface IPlanner {
      */
     Stream<BoardGame> filter(String filter, GameData sortOn, boolean ascending);
 
+    /**
+     * Filters the board games in the same way as {@link #filter(String, GameData, boolean)}, but
+     * only returns one page of the sorted results.
+     * 
+     * For example, the top 20 games by rating with at least 5 max players is
+     * 
+     * page("maxplayers>=5", GameData.RATING, false, 0, 20)
+     * 
+     * The filter is progressive, just like the other filter methods.
+     * 
+     * @param filter The filter to apply to the board games.
+     * @param sortOn The column to sort the results on.
+     * @param ascending Whether to sort the results in ascending order or descending order.
+     * @param offset The number of games to skip, 0 for the first page.
+     * @param limit The max number of games on the page.
+     * @return The page of games.
+     * @throws IllegalArgumentException if offset or limit is negative.
+     */
+    Page page(String filter, GameData sortOn, boolean ascending, int offset, int limit);
+
+    /**
+     * Gets the page that follows the page the cursor came from ({@link Page#getCursor()}).
+     * 
+     * The cursor remembers the sort and the last game returned, so the next page continues from
+     * there without going over the earlier pages again. A cursor is only valid for the working
+     * set it came from: once a filter or reset replaces that working set, the cursor is rejected
+     * rather than paging through the new one. An undo back to that working set makes the cursor
+     * valid again.
+     * 
+     * @param cursor The cursor from the previous page.
+     * @param limit The max number of games on the page.
+     * @return The next page of games.
+     * @throws IllegalArgumentException if the cursor cannot be read, if it came from another
+     *         working set than the current one, or if limit is negative.
+     */
+    Page nextPage(String cursor, int limit);
+
+    /**
+     * Completes a game name as it is typed: the games whose names start with the prefix, ignoring
+     * case and leading spaces, best first by a column.
+     * 
+     * For example, the 5 best rated games starting with "ticket" are
+     * 
+     * complete("ticket", GameData.RATING, false, 5)
+     * 
+     * Completions come from the whole collection, not the current filter, and do not change the
+     * filter.
+     * 
+     * @param prefix The start of the name, as typed so far.
+     * @param sortOn The column to rank the completions by.
+     * @param ascending Whether the smallest values (as for rank) or the largest (as for rating)
+     *        come first.
+     * @param limit The max number of completions.
+     * @return The completions, in order of the column.
+     * @throws IllegalArgumentException if limit is negative.
+     */
+    List<BoardGame> complete(String prefix, GameData sortOn, boolean ascending, int limit);
+
+    /**
+     * Suggests the names of the games in the current filter closest to a name, for when a name
+     * was mistyped. Names are compared ignoring case, by edit distance, and only names a few
+     * edits away are suggested.
+     * 
+     * @param name The name that was not found.
+     * @param limit The max number of suggestions.
+     * @return The suggested names, closest first.
+     */
+    List<String> suggest(String name, int limit);
+
     /**
      * Resets the collection to have no filters applied.
      */
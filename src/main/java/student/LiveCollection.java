@@ -0,0 +1,235 @@
+package student;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A collection loaded from a file (or a directory of shards) on disk, which can be reloaded
+ * while it is being queried.
+ *
+ * Each load builds a complete, immutable {@link TableVersion} (the table, its sort permutations,
+ * and every {@link SortedIndex} the previous version had built) before it is swapped in with a
+ * single atomic write. A query holds on to the version it started with, so queries in flight
+ * finish on the old version, and no query ever sees a half loaded table.
+ *
+ * In watch mode, a background thread watches the file (or directory) and reloads once it has
+ * stopped changing for {@link #QUIET_MILLIS} ms. If a load fails, the current version is kept.
+ * Exports should be written elsewhere and moved into place, so a load never reads a file that
+ * is still being written.
+ *
+ * Small changes (such as the daily rank and rating updates) can be applied as a
+ * {@link GameDelta} instead, which patches the current table into the next version without a
+ * reload.
+ */
+public final class LiveCollection implements AutoCloseable {
+    /** How long the file must go without changes before it is reloaded, in milliseconds. */
+    static final long QUIET_MILLIS = 250;
+
+    /** The file or directory the collection is loaded from, null if it was built in memory. */
+    private final Path path;
+    /** Number of threads to load on. */
+    private final int threads;
+    /** The version queries should use. */
+    private final AtomicReference<TableVersion> current = new AtomicReference<>();
+    /** Watches the file for changes, null until {@link #watch()} is called. */
+    private WatchService watcher;
+    /** The thread reloading on changes. */
+    private Thread watchThread;
+
+    /**
+     * Loads the first version of a collection.
+     *
+     * @param path    the csv file (plain or gzipped) or directory of shards to load.
+     * @param threads the number of threads to load on.
+     * @throws IOException if the collection cannot be read.
+     */
+    public LiveCollection(Path path, int threads) throws IOException {
+        this.path = path.toAbsolutePath();
+        this.threads = threads;
+        reload(System.nanoTime());
+    }
+
+    /**
+     * Starts a collection from a table that is already built. It can be changed with deltas,
+     * but not reloaded or watched.
+     *
+     * @param table the first version of the games.
+     */
+    public LiveCollection(GameTable table) {
+        this.path = null;
+        this.threads = 1;
+        current.set(TableVersion.of(table));
+    }
+
+    /**
+     * Gets the current version. Hold on to it (not to this collection) for the length of a
+     * query, so the whole query sees the same table.
+     *
+     * @return the current version.
+     */
+    public TableVersion current() {
+        return current.get();
+    }
+
+    /**
+     * Loads the collection again now and swaps in the new version.
+     *
+     * @return the new version.
+     * @throws IOException if the collection cannot be read, in which case the current version
+     *                     is kept.
+     * @throws IllegalStateException if the collection was not loaded from a file.
+     */
+    public TableVersion reload() throws IOException {
+        return reload(System.nanoTime());
+    }
+
+    /**
+     * Loads the collection again and swaps in the new version.
+     *
+     * @param noticed when the change was noticed, from {@link System#nanoTime()}.
+     * @return the new version.
+     * @throws IOException if the collection cannot be read.
+     */
+    private synchronized TableVersion reload(long noticed) throws IOException {
+        if (path == null) {
+            throw new IllegalStateException("The collection was not loaded from a file");
+        }
+        long start = System.nanoTime();
+        LoadReport report = GamesLoader.read(path, threads);
+        GameTable table = report.getTable();
+        TableVersion old = current.get();
+        if (old != null) {
+            // build what queries on the old version built, so the first queries stay fast
+            for (SortedIndex index : old.getTable().builtIndexes()) {
+                table.index(index.getColumn());
+            }
+            if (old.getTable().hasNameIndex()) {
+                table.nameIndex();
+            }
+        }
+        if (report.getSkipped() > 0) {
+            System.err.println(path + ": " + report);
+        }
+        return publish(table, start, noticed);
+    }
+
+    /**
+     * Applies a delta to the current version and swaps in the result, without reading the
+     * collection again. See {@link GameTable#apply(GameDelta)}.
+     *
+     * @param delta the changes.
+     * @return the new version.
+     */
+    public synchronized TableVersion apply(GameDelta delta) {
+        long start = System.nanoTime();
+        return publish(current.get().getTable().apply(delta), start, start);
+    }
+
+    /**
+     * Swaps in the next version.
+     *
+     * @param table   the games of the version.
+     * @param start   when building the table started, from {@link System#nanoTime()}.
+     * @param noticed when the change was noticed, from {@link System#nanoTime()}.
+     * @return the new version.
+     */
+    private TableVersion publish(GameTable table, long start, long noticed) {
+        TableVersion old = current.get();
+        long end = System.nanoTime();
+        TableVersion next = new TableVersion(table, old == null ? 1 : old.getNumber() + 1,
+                Instant.now(), end - start, end - noticed);
+        current.set(next);
+        return next;
+    }
+
+    /**
+     * Starts reloading the collection in the background whenever the file changes.
+     *
+     * @throws IOException if the file system cannot be watched.
+     * @throws IllegalStateException if the collection was not loaded from a file.
+     */
+    public synchronized void watch() throws IOException {
+        if (path == null) {
+            throw new IllegalStateException("The collection was not loaded from a file");
+        }
+        if (watcher != null) {
+            return;
+        }
+        Path dir = Files.isDirectory(path) ? path : path.getParent();
+        watcher = FileSystems.getDefault().newWatchService();
+        dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        watchThread = new Thread(this::watchLoop, "collection-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * Waits for changes, lets them settle, and reloads, until the collection is closed.
+     */
+    private void watchLoop() {
+        try {
+            while (true) {
+                if (!changed(watcher.take())) {
+                    continue;
+                }
+                long noticed = System.nanoTime();
+                for (WatchKey key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS); key != null;
+                        key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) {
+                    changed(key);
+                }
+                try {
+                    TableVersion version = reload(noticed);
+                    System.err.println("Reloaded " + path + ": " + version);
+                } catch (IOException e) {
+                    System.err.println("Error reloading " + path + ", keeping version "
+                            + current().getNumber() + ": " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Checks if any event of a watch key is about the collection, and resets the key.
+     *
+     * @param key the key.
+     * @return true if the collection file, or anything in the collection directory, changed.
+     */
+    private boolean changed(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || path.getFileName().equals(event.context())
+                    || Files.isDirectory(path)) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Stops watching the file. The current version can still be used.
+     *
+     * @throws IOException if the watcher cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+            watchThread.interrupt();
+        }
+    }
+}
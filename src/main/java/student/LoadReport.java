@@ -0,0 +1,159 @@
+package student;
+
+import java.util.List;
+
+/**
+ * The outcome of loading a games csv: the table that was built, and how many rows were skipped
+ * and why.
+ */
+public final class LoadReport {
+    /** Most samples of skipped rows a report keeps. */
+    static final int MAX_SAMPLES = 10;
+
+    /**
+     * Why a row was not loaded.
+     */
+    public enum Reason {
+        /** The header does not have every column a game needs. */
+        MISSING_COLUMNS("missing columns"),
+        /** The row has fewer fields than the header maps. */
+        MISSING_FIELDS("missing fields"),
+        /** A number field does not parse. */
+        BAD_NUMBER("bad number"),
+        /** A quote inside an unquoted field, or text after a closing quote. */
+        MALFORMED_QUOTES("malformed quotes"),
+        /** A quoted field is still open at the end of the file. */
+        UNTERMINATED_QUOTE("unterminated quote"),
+        /** A game with the same name and id was already loaded. */
+        DUPLICATE("duplicate");
+
+        /** How the reason reads in a report. */
+        private final String description;
+
+        /**
+         * Constructor for the enum.
+         *
+         * @param description how the reason reads in a report.
+         */
+        Reason(String description) {
+            this.description = description;
+        }
+
+        /**
+         * Gets how the reason reads in a report.
+         *
+         * @return the description.
+         */
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /** The loaded games. */
+    private final GameTable table;
+    /** Number of data rows read, loaded or not. */
+    private final int rows;
+    /** Rows skipped for each reason, by ordinal. */
+    private final int[] skipped;
+    /** The first few skipped rows, as "line n: reason detail". */
+    private final List<String> samples;
+
+    /**
+     * Constructs a report.
+     *
+     * @param table   the loaded games.
+     * @param rows    the number of data rows read.
+     * @param skipped the rows skipped for each reason, by ordinal. The array is not copied.
+     * @param samples the first few skipped rows.
+     */
+    LoadReport(GameTable table, int rows, int[] skipped, List<String> samples) {
+        this.table = table;
+        this.rows = rows;
+        this.skipped = skipped;
+        this.samples = List.copyOf(samples);
+    }
+
+    /**
+     * Gets the loaded games.
+     *
+     * @return the table.
+     */
+    public GameTable getTable() {
+        return table;
+    }
+
+    /**
+     * Gets the number of data rows read, not counting the header or blank lines.
+     *
+     * @return the number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of rows loaded.
+     *
+     * @return the table size.
+     */
+    public int getLoaded() {
+        return table.size();
+    }
+
+    /**
+     * Gets the number of rows skipped for any reason.
+     *
+     * @return the number of skipped rows.
+     */
+    public int getSkipped() {
+        int total = 0;
+        for (int count : skipped) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of rows skipped for a reason.
+     *
+     * @param reason the reason.
+     * @return the number of rows.
+     */
+    public int getSkipped(Reason reason) {
+        return skipped[reason.ordinal()];
+    }
+
+    /**
+     * Gets the first few skipped rows, at most {@value #MAX_SAMPLES}, as "line n: reason detail".
+     *
+     * @return the samples, in file order.
+     */
+    public List<String> getSamples() {
+        return samples;
+    }
+
+    /**
+     * Summarises the report, such as "loaded 751 of 753 rows, skipped 2 (bad number: 1,
+     * duplicate: 1)".
+     *
+     * @return the summary.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("loaded ").append(getLoaded()).append(" of ").append(rows).append(" rows");
+        if (getSkipped() > 0) {
+            sb.append(", skipped ").append(getSkipped()).append(" (");
+            String separator = "";
+            for (Reason reason : Reason.values()) {
+                if (skipped[reason.ordinal()] > 0) {
+                    sb.append(separator).append(reason.getDescription()).append(": ")
+                            .append(skipped[reason.ordinal()]);
+                    separator = ", ";
+                }
+            }
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,131 @@
+package student;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A small, bounded cache that drops the least recently used entry once it is full.
+ *
+ * The entries are split by key hash into segments, each an access ordered {@link LinkedHashMap}
+ * with its own lock, so planners sharing one cache on different threads only wait for each other
+ * when their keys land in the same segment. Each segment drops its own least recently used
+ * entry, so eviction is least recently used within a segment rather than across the whole cache.
+ * Small caches (under {@link #MIN_SEGMENT_CAPACITY} entries per segment) have one segment.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ */
+public final class LruCache<K, V> {
+    /** Max number of segments. */
+    private static final int MAX_SEGMENTS = 16;
+    /** Least number of entries a segment holds. */
+    private static final int MIN_SEGMENT_CAPACITY = 8;
+
+    /** The segments, each in least to most recently used order. */
+    private final Map<K, V>[] segments;
+
+    /**
+     * Constructs a cache that holds at most capacity entries.
+     *
+     * @param capacity the max number of entries to keep.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LruCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        int count = Integer.highestOneBit(
+                Math.max(1, Math.min(MAX_SEGMENTS, capacity / MIN_SEGMENT_CAPACITY)));
+        this.segments = new Map[count];
+        for (int i = 0; i < count; i++) {
+            // spread the remainder, so the segments add up to the capacity
+            int limit = capacity / count + (i < capacity % count ? 1 : 0);
+            segments[i] = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    return size() > limit;
+                }
+            };
+        }
+    }
+
+    /**
+     * Gets the value for the key, computing and storing it if it is not in the cache.
+     *
+     * The value is computed without holding the segment lock, so two threads missing on the same
+     * key may both compute it. The first one stored is returned to both.
+     *
+     * @param key     the key to look up.
+     * @param compute builds the value if it is missing.
+     * @return the cached or newly computed value.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> compute) {
+        Map<K, V> segment = segment(key);
+        synchronized (segment) {
+            V value = segment.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        V value = compute.apply(key);
+        if (value == null) {
+            return null;
+        }
+        synchronized (segment) {
+            V cached = segment.putIfAbsent(key, value);
+            return cached != null ? cached : value;
+        }
+    }
+
+    /**
+     * Gets the value for the key.
+     *
+     * @param key the key to look up.
+     * @return the value, or null if it is not in the cache.
+     */
+    public V get(K key) {
+        Map<K, V> segment = segment(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    /**
+     * Get the number of entries in the cache.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        int size = 0;
+        for (Map<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes every entry from the cache.
+     */
+    public void clear() {
+        for (Map<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Finds the segment a key belongs to.
+     *
+     * @param key the key.
+     * @return the segment.
+     */
+    private Map<K, V> segment(K key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+}
@@ -0,0 +1,451 @@
+package student;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * Substring search index over the names of a {@link GameTable}, for the contains (~=) operator.
+ *
+ * Names are searched by their {@link NameKey}, which the table builds once for each distinct name,
+ * so case and accents are ignored. Every run of three characters (a trigram) of the keys is mapped
+ * to the sorted list of name codes that hold it, so a search for three or more characters
+ * intersects the lists of its trigrams and only checks the few names left with
+ * {@link String#contains}. Shorter searches have no trigram to look up, and check every key
+ * instead, which still builds no strings per search.
+ *
+ * The same lists find the names close to a mistyped one ({@link #similar}): a name within k
+ * edits of the text still holds all but at most 3k of the text's trigrams, as each edit breaks at
+ * most three of them, so only names holding enough of them are checked with
+ * {@link EditDistance}.
+ *
+ * The row ids are also grouped by name code, so the rows of the matching names are set in the
+ * result directly instead of scanning the name column.
+ *
+ * The trigrams are kept in an open addressing hash of primitive keys (three chars packed into a
+ * long), and the lists are slices of one int array, so the index holds no boxed values.
+ *
+ * The index is built by the table the first time it is needed (see
+ * {@link GameTable#nameIndex()}), and records how long it took to build and how much memory it
+ * uses.
+ */
+public final class NameIndex {
+    /** Marks a used hash slot, above the 48 bits of a trigram. */
+    private static final long USED = 1L << 48;
+
+    /** Number of rows in the table. */
+    private final int size;
+    /** Name keys by name code, shared with the table. */
+    private final String[] keys;
+    /** Hash slots holding a trigram with the USED bit set, or 0 for an empty slot. */
+    private long[] slots;
+    /** Trigram id of each used slot. */
+    private int[] slotIds;
+    /** Number of distinct trigrams. */
+    private int grams;
+    /** Start of each trigram's list of name codes in {@link #postings}, by trigram id. */
+    private final int[] gramStarts;
+    /** Name codes holding each trigram, ascending within each trigram's slice. */
+    private final int[] postings;
+    /** Start of each name code's rows in {@link #rows}, by name code. */
+    private final int[] rowStarts;
+    /** Row ids grouped by name code. */
+    private final int[] rows;
+    /** Time taken to build the index, in nanoseconds. */
+    private final long buildNanos;
+
+    /**
+     * Builds the index for the names of a table.
+     *
+     * @param table the table to index.
+     */
+    NameIndex(GameTable table) {
+        long start = System.nanoTime();
+        this.size = table.size();
+        this.keys = table.keys();
+
+        // count the names holding each trigram, then fill the lists in name code order
+        this.slots = new long[Math.max(16, Integer.highestOneBit(keys.length) * 4)];
+        this.slotIds = new int[slots.length];
+        int[] counts = new int[slots.length / 2];
+        int[] last = new int[slots.length / 2];
+        Arrays.fill(last, -1);
+        for (int code = 0; code < keys.length; code++) {
+            String name = keys[code];
+            for (int i = 0; i + 3 <= name.length(); i++) {
+                int id = add(gram(name, i));
+                if (id == counts.length) {
+                    counts = Arrays.copyOf(counts, id * 2);
+                    last = Arrays.copyOf(last, id * 2);
+                    Arrays.fill(last, id, last.length, -1);
+                }
+                if (last[id] != code) {
+                    last[id] = code;
+                    counts[id]++;
+                }
+            }
+        }
+        this.gramStarts = new int[grams + 1];
+        for (int id = 0; id < grams; id++) {
+            gramStarts[id + 1] = gramStarts[id] + counts[id];
+        }
+        this.postings = new int[gramStarts[grams]];
+        int[] next = Arrays.copyOf(gramStarts, grams);
+        Arrays.fill(last, -1);
+        for (int code = 0; code < keys.length; code++) {
+            String name = keys[code];
+            for (int i = 0; i + 3 <= name.length(); i++) {
+                int id = find(gram(name, i));
+                if (last[id] != code) {
+                    last[id] = code;
+                    postings[next[id]++] = code;
+                }
+            }
+        }
+
+        int[] nameCodes = table.nameCodes();
+        this.rowStarts = new int[keys.length + 1];
+        for (int row = 0; row < size; row++) {
+            rowStarts[nameCodes[row] + 1]++;
+        }
+        for (int code = 0; code < keys.length; code++) {
+            rowStarts[code + 1] += rowStarts[code];
+        }
+        this.rows = new int[size];
+        int[] fill = Arrays.copyOf(rowStarts, keys.length);
+        for (int row = 0; row < size; row++) {
+            rows[fill[nameCodes[row]]++] = row;
+        }
+        this.buildNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Get the number of distinct trigrams in the names.
+     *
+     * @return the number of trigrams.
+     */
+    public int trigrams() {
+        return grams;
+    }
+
+    /**
+     * Get the time it took to build the index.
+     *
+     * @return the build time in nanoseconds.
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * Get the approximate memory used by the index: the hash, the lists and the rows grouped by
+     * name. The name keys are not counted, as they belong to the table.
+     *
+     * @return the size in bytes.
+     */
+    public long getMemoryBytes() {
+        return (long) Long.BYTES * slots.length + (long) Integer.BYTES * (slotIds.length
+                + gramStarts.length + postings.length + rowStarts.length + rows.length);
+    }
+
+    /**
+     * Finds the names that contain a text.
+     *
+     * @param text the text to look for, as a name key.
+     * @return the matching name codes, in ascending order.
+     */
+    public int[] matches(String text) {
+        if (text.length() < 3) {
+            int[] found = new int[16];
+            int count = 0;
+            for (int code = 0; code < keys.length; code++) {
+                if (keys[code].contains(text)) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count++] = code;
+                }
+            }
+            return Arrays.copyOf(found, count);
+        }
+
+        // the rarest trigram gives the candidates, the others narrow them down
+        int parts = text.length() - 2;
+        int[] ids = new int[parts];
+        for (int i = 0; i < parts; i++) {
+            int id = find(gram(text, i));
+            if (id < 0) {
+                return new int[0];
+            }
+            ids[i] = id;
+        }
+        int rarest = 0;
+        for (int i = 1; i < parts; i++) {
+            if (length(ids[i]) < length(ids[rarest])) {
+                rarest = i;
+            }
+        }
+        int[] candidates = Arrays.copyOfRange(postings, gramStarts[ids[rarest]],
+                gramStarts[ids[rarest] + 1]);
+        int count = candidates.length;
+        for (int i = 0; i < parts && count > 0; i++) {
+            if (i != rarest && ids[i] != ids[rarest]) {
+                count = retain(candidates, count, ids[i]);
+            }
+        }
+
+        // the trigrams can all be in a name without being in a row, so check what is left
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            if (keys[candidates[i]].contains(text)) {
+                candidates[matched++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, matched);
+    }
+
+    /**
+     * Finds the names closest to a text, for suggestions when a name is mistyped.
+     *
+     * @param text        the text, as a name key.
+     * @param maxDistance the max number of edits from the text to a name.
+     * @param selection   the rows to suggest from, or null for every row.
+     * @param limit       the max number of names.
+     * @return the name codes of up to limit names within maxDistance edits, closest first, ties
+     *         in name key order.
+     */
+    public int[] similar(String text, int maxDistance, BitSet selection, int limit) {
+        int[] candidates = candidates(text, maxDistance);
+        int[] found = new int[16];
+        int[] distances = new int[found.length];
+        int count = 0;
+        int total = candidates == null ? keys.length : candidates.length;
+        for (int i = 0; i < total; i++) {
+            int code = candidates == null ? i : candidates[i];
+            if (Math.abs(keys[code].length() - text.length()) > maxDistance) {
+                continue;
+            }
+            int distance = EditDistance.bounded(text, keys[code], maxDistance);
+            if (distance <= maxDistance && (selection == null || selected(code, selection))) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, count * 2);
+                    distances = Arrays.copyOf(distances, count * 2);
+                }
+                found[count] = code;
+                distances[count++] = distance;
+            }
+        }
+        int[] byDistance = new int[count];
+        for (int i = 0; i < count; i++) {
+            byDistance[i] = i;
+        }
+        int[] codes = found;
+        int[] edits = distances;
+        return Arrays.stream(byDistance).boxed()
+                .sorted(Comparator.comparingInt((Integer i) -> edits[i])
+                        .thenComparing(i -> keys[codes[i]]))
+                .limit(limit).mapToInt(i -> codes[i]).toArray();
+    }
+
+    /**
+     * Finds the names that hold enough of a text's trigrams to be within some edits of it.
+     *
+     * @param text        the text, as a name key.
+     * @param maxDistance the max number of edits.
+     * @return the candidate name codes, or null if every name has to be checked: the text is too
+     *         short for the trigrams to rule anything out, or its trigrams are so common that
+     *         counting them costs more than checking every name.
+     */
+    private int[] candidates(String text, int maxDistance) {
+        int[] ids = new int[Math.max(0, text.length() - 2)];
+        int distinct = 0;
+        long total = 0;
+        for (int i = 0; i < ids.length; i++) {
+            int id = find(gram(text, i));
+            boolean seen = false;
+            for (int j = 0; j < i && !seen; j++) {
+                seen = gram(text, j) == gram(text, i);
+            }
+            if (!seen) {
+                distinct++;
+                if (id >= 0) {
+                    ids[i] = id;
+                    total += length(id);
+                    continue;
+                }
+            }
+            ids[i] = -1;
+        }
+        int needed = distinct - 3 * maxDistance;
+        if (needed <= 0 || total > keys.length) {
+            return null;
+        }
+        int[] all = new int[(int) total];
+        int next = 0;
+        for (int id : ids) {
+            if (id >= 0) {
+                System.arraycopy(postings, gramStarts[id], all, next, length(id));
+                next += length(id);
+            }
+        }
+        Arrays.sort(all);
+        int count = 0;
+        for (int i = 0; i < all.length;) {
+            int j = i;
+            while (j < all.length && all[j] == all[i]) {
+                j++;
+            }
+            if (j - i >= needed) {
+                all[count++] = all[i];
+            }
+            i = j;
+        }
+        return Arrays.copyOf(all, count);
+    }
+
+    /**
+     * Checks if any row of a name is selected.
+     *
+     * @param code      the name code.
+     * @param selection the selected rows.
+     * @return true if a row holding the name is selected.
+     */
+    private boolean selected(int code, BitSet selection) {
+        for (int pos = rowStarts[code]; pos < rowStarts[code + 1]; pos++) {
+            if (selection.get(rows[pos])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds the bitmap of the rows holding some names.
+     *
+     * @param codes the name codes.
+     * @return a new bitmap with a bit set for every row of the names.
+     */
+    public BitSet rows(int[] codes) {
+        long[] words = new long[(size + Long.SIZE - 1) / Long.SIZE];
+        for (int code : codes) {
+            for (int pos = rowStarts[code]; pos < rowStarts[code + 1]; pos++) {
+                int row = rows[pos];
+                words[row >>> 6] |= 1L << row;
+            }
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Keeps the candidates that are in the list of a trigram. Both are ascending, so each
+     * candidate is found with a binary search that starts after the last one found.
+     *
+     * @param candidates the candidate name codes, changed in place.
+     * @param count      the number of candidates.
+     * @param id         the trigram id.
+     * @return the number of candidates kept, at the front of the array.
+     */
+    private int retain(int[] candidates, int count, int id) {
+        int from = gramStarts[id];
+        int to = gramStarts[id + 1];
+        int kept = 0;
+        for (int i = 0; i < count && from < to; i++) {
+            int at = Arrays.binarySearch(postings, from, to, candidates[i]);
+            if (at >= 0) {
+                candidates[kept++] = candidates[i];
+                from = at + 1;
+            } else {
+                from = -at - 1;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Get the number of names holding a trigram.
+     *
+     * @param id the trigram id.
+     * @return the length of its list.
+     */
+    private int length(int id) {
+        return gramStarts[id + 1] - gramStarts[id];
+    }
+
+    /**
+     * Packs the three characters at a position into a trigram key.
+     *
+     * @param text  the text.
+     * @param index the position of the first character.
+     * @return the trigram, in the low 48 bits.
+     */
+    private static long gram(String text, int index) {
+        return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16)
+                | text.charAt(index + 2);
+    }
+
+    /**
+     * Gets the hash slot to start probing at for a trigram.
+     *
+     * @param gram the trigram.
+     * @return the slot.
+     */
+    private int slot(long gram) {
+        long hash = gram * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 40) & (slots.length - 1);
+    }
+
+    /**
+     * Finds the id of a trigram.
+     *
+     * @param gram the trigram.
+     * @return the id, or -1 if no name holds it.
+     */
+    private int find(long gram) {
+        long key = gram | USED;
+        for (int slot = slot(gram);; slot = (slot + 1) & (slots.length - 1)) {
+            if (slots[slot] == key) {
+                return slotIds[slot];
+            }
+            if (slots[slot] == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Finds the id of a trigram, giving it the next id if it is new. The hash is doubled when it
+     * is half full.
+     *
+     * @param gram the trigram.
+     * @return the id.
+     */
+    private int add(long gram) {
+        long key = gram | USED;
+        int slot = slot(gram);
+        while (slots[slot] != 0) {
+            if (slots[slot] == key) {
+                return slotIds[slot];
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        slots[slot] = key;
+        slotIds[slot] = grams;
+        if (++grams > slots.length / 2) {
+            long[] oldSlots = slots;
+            int[] oldIds = slotIds;
+            slots = new long[oldSlots.length * 2];
+            slotIds = new int[slots.length];
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != 0) {
+                    int to = slot(oldSlots[i] & ~USED);
+                    while (slots[to] != 0) {
+                        to = (to + 1) & (slots.length - 1);
+                    }
+                    slots[to] = oldSlots[i];
+                    slotIds[to] = oldIds[i];
+                }
+            }
+        }
+        return grams - 1;
+    }
+}
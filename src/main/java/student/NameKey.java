@@ -0,0 +1,116 @@
+package student;
+
+import java.text.Normalizer;
+
+/**
+ * Normalized keys of game names, so names are matched and sorted the same way everywhere.
+ *
+ * A key is the name with its case folded and its accents taken off: the name is decomposed
+ * (NFKD, so accented letters split into a base letter and combining marks, and compatibility
+ * forms such as ligatures or full width letters become plain ones), the combining marks are
+ * dropped, each char is folded the way {@link String#CASE_INSENSITIVE_ORDER} folds it (upper
+ * case, then lower case), and the few letters that do not decompose are spelled out (sharp s as
+ * "ss", the ae ligature as "ae", o with a stroke as "o" and so on). So "Pok&eacute;mon",
+ * "POKEMON" and "pokemon" all have the key "pokemon".
+ *
+ * Keys are compared with {@link String#compareTo(String)}, by char value. None of the folding
+ * depends on the default locale, so the order of the names is the same on every machine, which
+ * the name permutation stored in a {@link GameSnapshot} relies on.
+ *
+ * Keys are built once per distinct name when a table is built (see {@link GameTable#keys()})
+ * and once per game, so filters and sorts compare them without building any strings.
+ */
+final class NameKey {
+    /** private constructor to prevent instantiation. */
+    private NameKey() {
+    }
+
+    /**
+     * Gets the key of a name. A name that is already a key (plain ASCII with no upper case, as
+     * most typed text is) is returned as is.
+     *
+     * @param name the name.
+     * @return the key.
+     */
+    static String of(String name) {
+        boolean upper = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) {
+                return fold(Normalizer.normalize(name, Normalizer.Form.NFKD));
+            }
+            upper |= c >= 'A' && c <= 'Z';
+        }
+        return upper ? fold(name) : name;
+    }
+
+    /**
+     * Folds the case of a decomposed name and drops its combining marks.
+     *
+     * @param decomposed the name, in NFKD form.
+     * @return the key.
+     */
+    private static String fold(String decomposed) {
+        StringBuilder key = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            switch (Character.getType(c)) {
+                case Character.NON_SPACING_MARK:
+                case Character.COMBINING_SPACING_MARK:
+                case Character.ENCLOSING_MARK:
+                    continue;
+                default:
+                    break;
+            }
+            c = Character.toLowerCase(Character.toUpperCase(c));
+            switch (c) {
+                case '\u00df': // sharp s
+                    key.append("ss");
+                    break;
+                case '\u00e6': // ae
+                    key.append("ae");
+                    break;
+                case '\u0153': // oe
+                    key.append("oe");
+                    break;
+                case '\u00fe': // thorn
+                    key.append("th");
+                    break;
+                case '\u00f8': // o with stroke
+                    key.append('o');
+                    break;
+                case '\u0142': // l with stroke
+                    key.append('l');
+                    break;
+                case '\u0111': // d with stroke
+                case '\u00f0': // eth
+                    key.append('d');
+                    break;
+                default:
+                    key.append(c);
+                    break;
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Compares the start of a key with a prefix key, for prefix searches of keys sorted with
+     * {@link String#compareTo(String)}.
+     *
+     * @param key    the key.
+     * @param prefix the prefix, also a key.
+     * @return 0 if the key starts with the prefix, else the order of the key against it.
+     */
+    static int compareStart(String key, String prefix) {
+        int length = Math.min(key.length(), prefix.length());
+        for (int i = 0; i < length; i++) {
+            char a = key.charAt(i);
+            char b = prefix.charAt(i);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return key.length() < prefix.length() ? -1 : 0;
+    }
+}
@@ -78,6 +78,27 @@ public enum Operations {
         throw new IllegalArgumentException("No operator with name " + operator);
     }
 
+    /**
+     * Get the operation whose operator starts at a position of a string, taking the longest one
+     * (so &gt;= is not read as &gt;). Unlike {@link #getOperatorFromStr(String)}, only that
+     * position is looked at, so operator characters later in the value are not mistaken for
+     * the operator.
+     * 
+     * @param str The string.
+     * @param at The position to look at.
+     * @return The operation, or null if no operator starts there.
+     */
+    public static Operations startingAt(String str, int at) {
+        Operations found = null;
+        for (Operations op : Operations.values()) {
+            if (str.startsWith(op.getOperator(), at) && (found == null
+                    || op.getOperator().length() > found.getOperator().length())) {
+                found = op;
+            }
+        }
+        return found;
+    }
+
     /**
      * Get the operator from a string that contains it.
      * 
@@ -0,0 +1,87 @@
+package student;
+
+import java.util.List;
+
+/**
+ * One page of a sorted, filtered result from {@link IPlanner#page}.
+ *
+ * Along with the games on the page, it holds the total number of games that match the filter,
+ * and a cursor that can be passed to {@link IPlanner#nextPage(String, int)} to get the page that
+ * follows without going through the earlier pages again.
+ */
+public final class Page {
+    /** The games on the page, in sorted order. */
+    private final List<BoardGame> games;
+    /** Position of the first game on the page within the whole result. */
+    private final int offset;
+    /** Number of games in the whole result. */
+    private final int total;
+    /** Cursor for the next page, null if this is the last page. */
+    private final String cursor;
+
+    /**
+     * Constructor for a page.
+     *
+     * @param games  the games on the page.
+     * @param offset position of the first game within the whole result (0 based).
+     * @param total  number of games in the whole result.
+     * @param cursor cursor for the next page, or null if there are no more games.
+     */
+    public Page(List<BoardGame> games, int offset, int total, String cursor) {
+        this.games = List.copyOf(games);
+        this.offset = offset;
+        this.total = total;
+        this.cursor = cursor;
+    }
+
+    /**
+     * Get the games on the page.
+     *
+     * @return the games, in sorted order (unmodifiable).
+     */
+    public List<BoardGame> getGames() {
+        return games;
+    }
+
+    /**
+     * Get the position of the first game on the page within the whole result.
+     *
+     * @return the offset, 0 based.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get the number of games that match the filter, across every page.
+     *
+     * @return the total number of games.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the cursor for the next page.
+     *
+     * @return the cursor, or null if this is the last page.
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Checks if there are games after this page.
+     *
+     * @return true if there is a next page.
+     */
+    public boolean hasNext() {
+        return cursor != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{offset=" + offset + ", size=" + games.size() + ", total=" + total
+                + ", cursor=" + cursor + '}';
+    }
+}
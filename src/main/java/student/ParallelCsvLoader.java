@@ -0,0 +1,294 @@
+package student;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Loads a games csv file using several threads.
+ *
+ * The file is split into byte ranges that each start at the beginning of a record:
+ * <ol>
+ * <li>Quotes and line feeds are counted in equal sized ranges, in parallel.</li>
+ * <li>From the start of each range, the scan moves on to the first line feed that is outside
+ * quotes (an even number of quotes before it in the file, which the counts give without reading
+ * what came before), and the chunk starts after it. Line counts give each chunk its first line
+ * number, for the report.</li>
+ * <li>Each chunk is parsed by its own {@link GameCsvParser} into its own
+ * {@link GameTable.Builder}, in parallel, reading through one direct buffer per thread.</li>
+ * <li>The chunk builders are merged in file order, so a game that is in more than one chunk keeps
+ * its first row, just like loading the file in one go.</li>
+ * </ol>
+ *
+ * The result is the same table and report as {@link GamesLoader#load(String)} would give for the
+ * same file. The one exception is a file with a quote inside an unquoted field (which is
+ * reported as malformed quotes): the quote counts no longer tell where records start after it.
+ */
+final class ParallelCsvLoader {
+    /** Smallest chunk worth parsing on its own. */
+    static final int MIN_CHUNK = 1 << 20;
+    /** Chunks per thread, so a slow chunk does not hold up the others for long. */
+    private static final int CHUNKS_PER_THREAD = 4;
+    /** Size of the buffer used to count quotes and find chunk starts. */
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+
+    /** private constructor to prevent instantiation. */
+    private ParallelCsvLoader() {
+    }
+
+    /**
+     * Loads a csv file on a pool.
+     *
+     * @param file      the file to load.
+     * @param pool      the pool to parse on.
+     * @param chunkSize the smallest chunk to split the file into, in bytes.
+     * @return the report, holding the table of games.
+     * @throws IOException if the file cannot be read.
+     */
+    static LoadReport load(Path file, ForkJoinPool pool, int chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            GameTable.Builder headerBuilder = new GameTable.Builder();
+            GameCsvParser header = new GameCsvParser(headerBuilder);
+            long headerEnd = recordStart(channel, 0, false, size);
+            header.parse(new Range(channel, 0, headerEnd));
+            if (!header.hasHeader()) {
+                return header.report(headerBuilder.build());
+            }
+
+            int chunks = (int) Math.max(1, Math.min((long) pool.getParallelism() * CHUNKS_PER_THREAD,
+                    (size - headerEnd) / chunkSize));
+            long[] nominal = new long[chunks + 1];
+            for (int i = 0; i <= chunks; i++) {
+                nominal[i] = headerEnd + (size - headerEnd) * i / chunks;
+            }
+            List<long[]> counts = invokeAll(pool, chunks, i -> count(channel, nominal[i], nominal[i + 1]));
+
+            boolean[] quoted = new boolean[chunks];
+            long[] linesBefore = new long[chunks];
+            long[] headerCounts = count(channel, 0, headerEnd);
+            long quotes = headerCounts[0];
+            long lines = headerCounts[1];
+            for (int i = 0; i < chunks; i++) {
+                quoted[i] = (quotes & 1) == 1;
+                linesBefore[i] = lines;
+                quotes += counts.get(i)[0];
+                lines += counts.get(i)[1];
+            }
+            List<long[]> starts = invokeAll(pool, chunks, i -> {
+                long start = recordStart(channel, nominal[i], quoted[i], size);
+                return new long[] {start, count(channel, nominal[i], start)[1]};
+            });
+            long[] chunkStart = new long[chunks + 1];
+            int[] firstLine = new int[chunks];
+            for (int i = 0; i < chunks; i++) {
+                chunkStart[i] = i == 0 ? headerEnd : starts.get(i)[0];
+                firstLine[i] = (int) (linesBefore[i] + (i == 0 ? 0 : starts.get(i)[1])) + 1;
+            }
+            chunkStart[chunks] = size;
+
+            List<GameCsvParser> parsers = new ArrayList<>();
+            List<GameTable.Builder> builders = new ArrayList<>();
+            for (int i = 0; i < chunks; i++) {
+                GameTable.Builder builder = new GameTable.Builder(
+                        (int) Math.min(Integer.MAX_VALUE, (chunkStart[i + 1] - chunkStart[i]) / 128));
+                builders.add(builder);
+                parsers.add(new GameCsvParser(builder, header, firstLine[i]));
+            }
+            // one read buffer per worker rather than per chunk; it is only reachable through
+            // this load, so the buffers go once it returns
+            ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(
+                    () -> ByteBuffer.allocateDirect(GameCsvParser.DIRECT_BUFFER_SIZE));
+            invokeAll(pool, chunks, i -> {
+                parsers.get(i).parse(new Range(channel, chunkStart[i], chunkStart[i + 1]),
+                        buffers.get());
+                return null;
+            });
+
+            int total = builders.stream().mapToInt(GameTable.Builder::size).sum();
+            GameTable.Builder merged = new GameTable.Builder(total);
+            for (int i = 0; i < chunks; i++) {
+                GameCsvParser parser = parsers.get(i);
+                GameTable.Builder part = builders.get(i);
+                merged.addAll(part, row -> parser.skip(LoadReport.Reason.DUPLICATE,
+                        parser.rowLine(row), part.name(row) + " (" + part.getInt(row, GameData.ID) + ")"));
+                header.absorb(parser);
+            }
+            return header.report(merged.build());
+        }
+    }
+
+    /**
+     * Finds where the first record after a position starts: just after the first line feed
+     * that is outside quotes.
+     *
+     * @param channel the file.
+     * @param from    the position to search from.
+     * @param quoted  whether from is inside a quoted field.
+     * @param size    the size of the file.
+     * @return the position after the line feed, or size if there is none.
+     * @throws IOException if the file cannot be read.
+     */
+    private static long recordStart(FileChannel channel, long from, boolean quoted, long size)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '"') {
+                    quoted = !quoted;
+                } else if (bytes[i] == '\n' && !quoted) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Counts the quotes and line feeds in a range of the file.
+     *
+     * @param channel the file.
+     * @param from    the start of the range.
+     * @param to      the end of the range.
+     * @return the number of quotes and the number of line feeds.
+     * @throws IOException if the file cannot be read.
+     */
+    private static long[] count(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long quotes = 0;
+        long lines = 0;
+        for (long position = from; position < to;) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++) {
+                quotes += bytes[i] == '"' ? 1 : 0;
+                lines += bytes[i] == '\n' ? 1 : 0;
+            }
+            position += read;
+        }
+        return new long[] {quotes, lines};
+    }
+
+    /**
+     * A task for one chunk.
+     *
+     * @param <T> the result type.
+     */
+    @FunctionalInterface
+    interface ChunkTask<T> {
+        /**
+         * Runs the task for a chunk.
+         *
+         * @param chunk the chunk index.
+         * @return the result.
+         * @throws IOException if the file cannot be read.
+         */
+        T run(int chunk) throws IOException;
+    }
+
+    /**
+     * Runs a task for every chunk on the pool and waits for them all.
+     *
+     * @param <T>    the result type.
+     * @param pool   the pool.
+     * @param chunks the number of chunks.
+     * @param task   the task.
+     * @return the results, by chunk.
+     * @throws IOException if any task could not read the file.
+     */
+    static <T> List<T> invokeAll(ForkJoinPool pool, int chunks, ChunkTask<T> task)
+            throws IOException {
+        List<Callable<T>> tasks = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            int chunk = i;
+            tasks.add(() -> task.run(chunk));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * A range of a file, read with positional reads so several can be read at once.
+     */
+    private static final class Range implements ReadableByteChannel {
+        /** The file. */
+        private final FileChannel channel;
+        /** The next position to read. */
+        private long position;
+        /** The end of the range. */
+        private final long end;
+
+        /**
+         * Constructs a range.
+         *
+         * @param channel the file.
+         * @param start   the start of the range.
+         * @param end     the end of the range.
+         */
+        Range(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            ByteBuffer view = dst.duplicate();
+            view.limit(view.position() + (int) Math.min(view.remaining(), end - position));
+            int read = channel.read(view, position);
+            if (read > 0) {
+                dst.position(view.position());
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // the file is closed by the loader
+        }
+    }
+}
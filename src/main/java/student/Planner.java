@@ -1,25 +1,79 @@
 package student;
 
-import java.util.Collections;
-import java.util.Comparator;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
  * Manages a collection of board games and applies filtering operations.
+ *
+ * The games are kept in a column store ({@link GameTable}). The progressive filter is kept as a
+ * working set: a bitmap of the selected row ids, plus the same rows already ordered by name. A
+ * new condition only removes rows from the ordered array, so it never has to be sorted again.
+ * Orders on other columns come from walking the table's precomputed sort permutation for that
+ * column, and are cached on the working set the first time they are asked for.
+ *
+ * Every filter that narrows the working set pushes the previous one onto an undo stack, so
+ * {@link #undo()} steps back without replaying filters.
+ *
+ * A planner over a {@link LiveCollection} picks up a reloaded version at the start of its next
+ * filter, page or reset. Row ids change between versions, so picking one up starts over from the
+ * whole collection and clears the undo stack. Streams already returned keep reading the version
+ * they came from.
+ *
+ * A planner is one user's session. The games (a {@link GameTable}, and the sort permutations,
+ * indexes and cached condition bitmaps built on it) are immutable or built once and published
+ * safely, so any number of sessions can share one table from different threads, with no global
+ * lock. The session itself only holds its working set (which shares the table's arrays until it
+ * is filtered) and its undo stack, and is not thread safe: calls on one session must not overlap.
+ * Use {@link #newSession()} to start another user on the same games. Name completion
+ * ({@link #complete(String, GameData, boolean, int)}) does not touch the session, so it is the
+ * one call that can be made from any number of threads at once.
  */
 public class Planner implements IPlanner {
     /**
-     * Stores the unfiltered set of board games permanently.
+     * Compiled filters shared by every planner, so repeated filters skip parsing.
      */
-    private final Set<BoardGame> originalGames;
+    private static final FilterCompiler COMPILER = new FilterCompiler();
+
+    /**
+     * Max number of previous working sets kept for undo.
+     */
+    private static final int MAX_UNDO = 32;
+
+    /**
+     * The collection this planner follows, or null if its table never changes.
+     */
+    private final LiveCollection live;
+
+    /**
+     * The version of the collection in use.
+     */
+    private TableVersion version;
+
+    /**
+     * Stores the unfiltered board games of the version in use.
+     */
+    private GameTable table;
 
     /**
      * Stores the progressively filtered results.
      */
-    private List<BoardGame> appliedFilter;
+    private WorkingSet appliedFilter;
+
+    /**
+     * Previous working sets, most recent first.
+     */
+    private final Deque<WorkingSet> history = new ArrayDeque<>();
 
     /**
      * Constructs a Planner with the given set of board games.
@@ -27,8 +81,74 @@ public class Planner implements IPlanner {
      * @param games The initial set of board games.
      */
     public Planner(Set<BoardGame> games) {
-        this.originalGames = games;
-        this.appliedFilter = games.stream().collect(Collectors.toList()); // Start with all games
+        this(GameTable.of(games));
+    }
+
+    /**
+     * Constructs a Planner over an already built table of games.
+     *
+     * @param table The table holding the board game collection.
+     */
+    public Planner(GameTable table) {
+        this(null, TableVersion.of(table));
+    }
+
+    /**
+     * Constructs a Planner that follows a collection as it is reloaded.
+     *
+     * @param live The collection.
+     */
+    public Planner(LiveCollection live) {
+        this(live, live.current());
+    }
+
+    /**
+     * Constructs a Planner starting at a version of the collection.
+     *
+     * @param live The collection, or null if the table never changes.
+     * @param version The version to start with.
+     */
+    private Planner(LiveCollection live, TableVersion version) {
+        this.live = live;
+        this.version = version;
+        this.table = version.getTable();
+        this.appliedFilter = WorkingSet.all(table); // Start with all games
+    }
+
+    /**
+     * Starts a new session on the same games, with no filters. The games are shared, not copied,
+     * and the new session can be used on a different thread from this one.
+     *
+     * @return The new session.
+     */
+    public Planner newSession() {
+        return live != null ? new Planner(live) : new Planner(null, version);
+    }
+
+    /**
+     * Get the version of the collection the planner is using.
+     *
+     * @return The version.
+     */
+    public TableVersion getVersion() {
+        return version;
+    }
+
+    /**
+     * Switches to the current version of the collection, if it was reloaded since the last
+     * query. The filters and undo stack are dropped, since row ids do not carry over.
+     */
+    private void refresh() {
+        if (live == null) {
+            return;
+        }
+        TableVersion current = live.current();
+        if (current != version) {
+            version = current;
+            table = current.getTable();
+            appliedFilter = WorkingSet.all(table);
+            history.clear();
+        }
     }
 
     /**
@@ -39,51 +159,34 @@ public class Planner implements IPlanner {
      */
     @Override
     public Stream<BoardGame> filter(String filter) {
-        Stream<BoardGame> filteredStream = filterSingle(filter, appliedFilter.stream());
-        appliedFilter = filteredStream
-                .sorted(Comparator.comparing(BoardGame::getName, String.CASE_INSENSITIVE_ORDER))
-                .collect(Collectors.toList());
-        return appliedFilter.stream();
+        return toGames(filterRows(filter).byName(), true);
     }
 
     /**
-     * Filters a stream of board games based on multiple conditions.
+     * Applies a filter to the current working set.
+     *
+     * The filter is compiled (or pulled from the compiled filter cache) into a
+     * {@link FilterExpression}, which narrows the selection: conditions that are ANDed are
+     * applied as bitmaps by {@link FilterEvaluator}, and or, not and groups are run in order of
+     * their estimated selectivity. If the filter removes any rows, the old working set is pushed
+     * onto the undo stack.
      *
      * @param filter The filter condition string.
-     * @param filteredGames The stream of board games to filter.
-     * @return A filtered stream of board games.
+     * @return The working set after the filter.
      */
-    private Stream<BoardGame> filterSingle(String filter, Stream<BoardGame> filteredGames) {
-        String[] conditions = filter.split(",");
-
-        for (String condition : conditions) {
-            condition = condition.trim();
-            Operations operator = Operations.getOperatorFromStr(condition);
-            if (operator == null) {
-                continue;
-            }
-
-            String[] parts = condition.split(operator.getOperator());
-            if (parts.length != 2) {
-                continue;
-            }
-
-            GameData column;
-            try {
-                column = GameData.fromString(parts[0].trim());
-            } catch (IllegalArgumentException e) {
-                System.out.println("Filter Column: " + parts[0]);
-                continue;
-            }
-
-            String value = parts[1].trim();
-            filteredGames = filteredGames.filter(game -> Filters.filter(game, column, operator, value));
+    private WorkingSet filterRows(String filter) {
+        refresh();
+        FilterExpression expression = COMPILER.compileExpression(filter);
+        if (expression.isEmpty()) {
+            return appliedFilter;
         }
-
-        return filteredGames
-                .sorted(Comparator.comparing(BoardGame::getName, String.CASE_INSENSITIVE_ORDER))
-                .collect(Collectors.toList())
-                .stream();
+        BitSet selection = (BitSet) appliedFilter.selection.clone();
+        expression.narrow(table, selection);
+        if (selection.cardinality() != appliedFilter.byName().length) {
+            push(appliedFilter);
+            appliedFilter = appliedFilter.retain(selection);
+        }
+        return appliedFilter;
     }
 
     /**
@@ -95,21 +198,15 @@ public class Planner implements IPlanner {
      */
     @Override
     public Stream<BoardGame> filter(String filter, GameData sortOn) {
-        Stream<BoardGame> filteredStream = filter(filter);
-        return filteredStream.sorted((game1, game2) -> {
-            if (sortOn == GameData.NAME) {
-                return game1.getName().compareToIgnoreCase(game2.getName());
-            } else {
-                Comparable<Object> value1 = (Comparable<Object>) Filters.getColumnValue(game1, sortOn);
-                Comparable<Object> value2 = (Comparable<Object>) Filters.getColumnValue(game2, sortOn);
-                return value1.compareTo(value2);
-            }
-        });
+        return filter(filter, sortOn, true);
     }
 
     /**
      * Applies a filter, sorts the results, and orders them based on the specified direction.
      *
+     * Descending order walks the ascending order backwards, so rows with equal values come out
+     * in reverse name order.
+     *
      * @param filter The filter condition string.
      * @param sortOn The column to sort by.
      * @param ascending Whether the sort order should be ascending.
@@ -117,13 +214,180 @@ public class Planner implements IPlanner {
      */
     @Override
     public Stream<BoardGame> filter(String filter, GameData sortOn, boolean ascending) {
-        Stream<BoardGame> sortedStream = filter(filter, sortOn);
-        if (ascending) {
-            return sortedStream;
+        return toGames(filterRows(filter).sortedOn(table, sortOn), ascending);
+    }
+
+    /**
+     * Applies a filter and returns one page of the sorted results.
+     *
+     * If the working set already has the order cached, the page is a slice of it. Otherwise
+     * only the first offset + limit rows are selected (see {@link TopK}), instead of sorting the
+     * whole result.
+     *
+     * @param filter The filter condition string.
+     * @param sortOn The column to sort by.
+     * @param ascending Whether the sort order should be ascending.
+     * @param offset The number of games to skip.
+     * @param limit The max number of games on the page.
+     * @return The page of games.
+     */
+    @Override
+    public Page page(String filter, GameData sortOn, boolean ascending, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Invalid page: offset " + offset + ", limit " + limit);
+        }
+        WorkingSet current = filterRows(filter);
+        int total = current.byName().length;
+        int end = (int) Math.min(total, (long) offset + limit);
+        int[] rows;
+        int[] sorted = current.cachedOrder(sortOn);
+        if (offset >= end) {
+            rows = new int[0];
+        } else if (sorted != null) {
+            rows = new int[end - offset];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = ascending ? sorted[offset + i] : sorted[total - 1 - offset - i];
+            }
+        } else {
+            int[] first = TopK.first(table, current.selection, sortOn, ascending,
+                    ascending ? -1 : table.size(), end);
+            rows = Arrays.copyOfRange(first, offset, end);
         }
-        List<BoardGame> list = sortedStream.collect(Collectors.toList());
-        Collections.reverse(list);
-        return list.stream();
+        return toPage(rows, sortOn, ascending, offset, total);
+    }
+
+    /**
+     * Gets the page after the one a cursor came from, continuing the walk from the last game of
+     * that page.
+     *
+     * @param cursor The cursor from the previous page.
+     * @param limit The max number of games on the page.
+     * @return The next page of games.
+     */
+    @Override
+    public Page nextPage(String cursor, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid page limit " + limit);
+        }
+        refresh();
+        int[] parts = decodeCursor(cursor);
+        GameData sortOn = GameData.values()[parts[0]];
+        boolean ascending = parts[1] == 1;
+        int total = appliedFilter.byName().length;
+        int k = Math.min(limit, total - parts[3]);
+        int[] rows = TopK.first(table, appliedFilter.selection, sortOn, ascending, parts[2], k);
+        return toPage(rows, sortOn, ascending, parts[3], total);
+    }
+
+    /**
+     * Builds a page, with a cursor pointing after its last row if there are more rows.
+     *
+     * @param rows The rows on the page, in order.
+     * @param sortOn The column the rows are sorted on.
+     * @param ascending The sort direction.
+     * @param offset The position of the first row within the whole result.
+     * @param total The number of rows in the whole result.
+     * @return The page.
+     */
+    private Page toPage(int[] rows, GameData sortOn, boolean ascending, int offset, int total) {
+        String cursor = null;
+        int next = offset + rows.length;
+        if (rows.length > 0 && next < total) {
+            int rank = table.ranks(sortOn)[rows[rows.length - 1]];
+            cursor = encodeCursor(sortOn, ascending, rank, next);
+        }
+        return new Page(IntStream.of(rows).mapToObj(table::game).collect(Collectors.toList()),
+                offset, total, cursor);
+    }
+
+    /**
+     * Encodes a cursor. The cursor holds the generation of the working set it pages through, the
+     * sort, the rank of the last row returned, and the offset of the next page.
+     *
+     * @param sortOn The sort column.
+     * @param ascending The sort direction.
+     * @param rank The rank of the last row returned.
+     * @param next The offset of the next page.
+     * @return The opaque cursor text.
+     */
+    private String encodeCursor(GameData sortOn, boolean ascending, int rank, int next) {
+        String text = appliedFilter.generation + ":" + sortOn.ordinal() + ":"
+                + (ascending ? 1 : 0) + ":" + rank + ":" + next;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decodes a cursor made by {@link #encodeCursor(GameData, boolean, int, int)}.
+     *
+     * @param cursor The cursor text.
+     * @return The sort column ordinal, direction (1 for ascending), rank and next offset.
+     * @throws IllegalArgumentException if the cursor is not valid, or was made for another
+     *         working set than the current one (a filter, reset or undo has changed it since,
+     *         or the collection was reloaded).
+     */
+    private int[] decodeCursor(String cursor) {
+        long generation;
+        int[] values = new int[4];
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            String[] parts = text.split(":");
+            if (parts.length != 5) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+            generation = Long.parseLong(parts[0]);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Integer.parseInt(parts[i + 1]);
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        }
+        if (values[0] < 0 || values[0] >= GameData.values().length || values[2] < -1
+                || values[2] > table.size() || values[3] < 0) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        }
+        if (generation != appliedFilter.generation || values[3] > appliedFilter.byName().length) {
+            throw new IllegalArgumentException("Page cursor is for another result: " + cursor);
+        }
+        return values;
+    }
+
+    /**
+     * Completes a game name from the whole collection, using the table's {@link PrefixIndex}.
+     * Reads the current version of a live collection without switching the session to it.
+     *
+     * @param prefix The start of the name.
+     * @param sortOn The column to rank the completions by.
+     * @param ascending The direction of the ranking.
+     * @param limit The max number of completions.
+     * @return The completions.
+     */
+    @Override
+    public List<BoardGame> complete(String prefix, GameData sortOn, boolean ascending, int limit) {
+        GameTable current = live != null ? live.current().getTable() : version.getTable();
+        int[] rows = current.prefixIndex().complete(prefix, sortOn, ascending, limit);
+        return IntStream.of(rows).mapToObj(current::game).collect(Collectors.toList());
+    }
+
+    /**
+     * Suggests names from the current filter using the table's {@link NameIndex}, which only
+     * checks the names sharing enough trigrams with the typed name.
+     *
+     * @param name The name that was not found.
+     * @param limit The max number of suggestions.
+     * @return The suggested names.
+     */
+    @Override
+    public List<String> suggest(String name, int limit) {
+        refresh();
+        String text = NameKey.of(name.trim());
+        BitSet selection = appliedFilter.byName().length == table.size() ? null
+                : appliedFilter.selection;
+        int[] codes = table.nameIndex().similar(text, EditDistance.allowed(text.length()),
+                selection, limit);
+        String[] names = table.dictionary();
+        return IntStream.of(codes).mapToObj(code -> names[code]).collect(Collectors.toList());
     }
 
     /**
@@ -131,6 +395,216 @@ public class Planner implements IPlanner {
      */
     @Override
     public void reset() {
-        appliedFilter = originalGames.stream().collect(Collectors.toList());
+        refresh();
+        if (appliedFilter.byName().length != table.size()) {
+            push(appliedFilter);
+            appliedFilter = WorkingSet.all(table);
+        }
+    }
+
+    /**
+     * Steps back to the working set from before the last filter (or reset) that changed it.
+     *
+     * @return true if there was a previous working set, false if there is nothing to undo.
+     */
+    public boolean undo() {
+        WorkingSet previous = history.pollFirst();
+        if (previous == null) {
+            return false;
+        }
+        appliedFilter = previous;
+        return true;
+    }
+
+    /**
+     * Runs a filter on the current working set the way {@link #filter(String)} would, and reports
+     * how: the estimated and actual rows of each condition and group, the access path each one
+     * took and its time. The working set is left as it was, but bitmaps and indexes built along
+     * the way are kept on the table, as they would be by a filter.
+     *
+     * @param filter The filter condition string.
+     * @return The plan.
+     */
+    public QueryPlan explain(String filter) {
+        refresh();
+        QueryPlan plan = new QueryPlan(filter, table.size());
+        FilterExpression expression = COMPILER.compileExpression(filter);
+        BitSet selection = (BitSet) appliedFilter.selection.clone();
+        long rowsIn = appliedFilter.byName().length;
+        long start = System.nanoTime();
+        if (!expression.isEmpty()) {
+            expression.narrow(table, selection, plan);
+        }
+        plan.finish(rowsIn, selection.cardinality(), System.nanoTime() - start);
+        return plan;
+    }
+
+    /**
+     * Get the statistics of a column of the games, as used to estimate filters.
+     *
+     * @param column The column.
+     * @return The statistics.
+     */
+    public ColumnStats columnStats(GameData column) {
+        refresh();
+        return table.stats(column);
+    }
+
+    /**
+     * Get the sorted indexes built so far, with their build time and memory use.
+     *
+     * @return The built indexes, in GameData order.
+     */
+    public List<SortedIndex> indexStats() {
+        return table.builtIndexes();
+    }
+
+    /**
+     * Pushes a working set onto the undo stack, dropping the oldest one if it is full.
+     *
+     * @param previous The working set to save.
+     */
+    private void push(WorkingSet previous) {
+        if (history.size() == MAX_UNDO) {
+            history.pollLast();
+        }
+        history.push(previous);
+    }
+
+    /**
+     * Turns row ids into a stream of games.
+     *
+     * @param rows The row ids, in ascending order.
+     * @param ascending False to walk the rows backwards.
+     * @return The games in the rows.
+     */
+    private Stream<BoardGame> toGames(int[] rows, boolean ascending) {
+        if (ascending) {
+            return IntStream.of(rows).mapToObj(table::game);
+        }
+        int last = rows.length - 1;
+        return IntStream.rangeClosed(0, last).map(i -> rows[last - i]).mapToObj(table::game);
+    }
+
+    /**
+     * An immutable set of selected rows, with the orders of those rows that have been needed so
+     * far.
+     */
+    private static final class WorkingSet {
+        /** Source of working set generations. */
+        private static final AtomicLong GENERATIONS = new AtomicLong();
+
+        /** Number of this working set, unique across sessions and tables, for page cursors. */
+        private final long generation = GENERATIONS.incrementAndGet();
+        /** The selected row ids. Never changed once the working set is built. */
+        private final BitSet selection;
+        /** The selected rows in ascending order of each column, by GameData ordinal. */
+        private final int[][] orders = new int[GameData.values().length][];
+        /**
+         * The table, if every row of it is selected, so the orders are its sort permutations and
+         * are shared rather than copied. Null once filtered.
+         */
+        private final GameTable whole;
+
+        /**
+         * Constructor for a working set.
+         *
+         * @param selection The selected row ids.
+         * @param byName The same rows, in ascending name order.
+         * @param whole The table, if every row of it is selected, or null.
+         */
+        private WorkingSet(BitSet selection, int[] byName, GameTable whole) {
+            this.selection = selection;
+            this.orders[GameData.NAME.ordinal()] = byName;
+            this.whole = whole;
+        }
+
+        /**
+         * Builds the working set holding every row of a table. Its selection and orders are the
+         * table's own, so it costs nothing per session.
+         *
+         * @param table The table.
+         * @return The working set.
+         */
+        static WorkingSet all(GameTable table) {
+            return new WorkingSet(table.allRows(), table.permutation(GameData.NAME), table);
+        }
+
+        /**
+         * Get the rows in ascending name order.
+         *
+         * @return The row ids, which must not be changed.
+         */
+        int[] byName() {
+            return orders[GameData.NAME.ordinal()];
+        }
+
+        /**
+         * Get the rows in ascending order of a column, walking the table's sort permutation the
+         * first time. Ties keep name order.
+         *
+         * @param table The table the rows are in.
+         * @param column The column to sort on.
+         * @return The row ids, which must not be changed.
+         */
+        int[] sortedOn(GameTable table, GameData column) {
+            int[] sorted = cachedOrder(column);
+            if (sorted == null) {
+                sorted = table.inOrder(selection, column);
+                orders[column.ordinal()] = sorted;
+            }
+            return sorted;
+        }
+
+        /**
+         * Get the rows in ascending order of a column, if that order was already computed (or,
+         * when every row is selected, is the table's sort permutation).
+         *
+         * @param column The column.
+         * @return The row ids, which must not be changed, or null if not computed yet.
+         */
+        int[] cachedOrder(GameData column) {
+            if (orders[column.ordinal()] == null && whole != null) {
+                orders[column.ordinal()] = whole.permutation(column);
+            }
+            return orders[column.ordinal()];
+        }
+
+        /**
+         * Builds a smaller working set, keeping only the selected rows. Every order that was
+         * already computed is carried over by dropping the removed rows.
+         *
+         * @param narrowed The rows to keep, a subset of this selection.
+         * @return The new working set.
+         */
+        WorkingSet retain(BitSet narrowed) {
+            int count = narrowed.cardinality();
+            WorkingSet next = new WorkingSet(narrowed, null, null);
+            for (int i = 0; i < orders.length; i++) {
+                if (orders[i] != null) {
+                    next.orders[i] = keep(orders[i], narrowed, count);
+                }
+            }
+            return next;
+        }
+
+        /**
+         * Copies the rows that are in the selection, keeping their order.
+         *
+         * @param rows The ordered rows.
+         * @param keep The rows to keep.
+         * @param count The number of rows that will be kept.
+         * @return The kept rows, in the same order.
+         */
+        private static int[] keep(int[] rows, BitSet keep, int count) {
+            int[] kept = new int[count];
+            int next = 0;
+            for (int row : rows) {
+                if (keep.get(row)) {
+                    kept[next++] = row;
+                }
+            }
+            return kept;
+        }
     }
 }
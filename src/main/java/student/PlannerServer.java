@@ -0,0 +1,589 @@
+package student;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * HTTP endpoint for the planner, on the JDK's built in {@link HttpServer}, answering in JSON.
+ *
+ * Every client works in its own session: a {@link Planner} session (see
+ * {@link Planner#newSession()}) sharing the loaded games, and its own {@link GameList}. The
+ * session id is sent back in the {@value #SESSION_HEADER} header of every response, and is passed
+ * on later requests as the session parameter. A request without one starts a new session; ids
+ * are only ever made by the server, and a session id it does not know (never made, or dropped)
+ * gets a 404 response. At most {@value #MAX_SESSIONS} sessions are kept, dropping the least
+ * recently used. Requests on one session take turns; requests on different sessions never wait
+ * for each other.
+ *
+ * Parameters come from the query string, or from a form encoded body for POST requests.
+ * <ul>
+ * <li>GET /games: filter, sort (a column name, default name), order (asc or desc), and optionally
+ * offset and limit. Without a limit every matching game is returned as {"games": [...]};
+ * with one, a page as {"offset", "total", "cursor", "games"}.</li>
+ * <li>GET /games/next: cursor and limit (default {@value #DEFAULT_LIMIT}), the page after a
+ * cursor.</li>
+ * <li>GET /complete: prefix, sort (default rank), order (default asc) and limit (default
+ * {@value #DEFAULT_LIMIT}), the games whose names start with the prefix, best first, as
+ * {"games": [...]}. Completions come from the whole collection, whatever the session's
+ * filters.</li>
+ * <li>POST /reset: clears the session's filters.</li>
+ * <li>GET /list: the session's game list, as {"count", "games": [names]}.</li>
+ * <li>POST /list/add and POST /list/remove: game (a name, a number, a range or all, as in the
+ * console), then the list as GET /list. POST /list/clear empties it.</li>
+ * </ul>
+ * Bad parameters get a 400 response with {"error": message}, and any other failure a 500.
+ *
+ * Responses use chunked encoding and are encoded by a {@link ResultWriter} (the same encoder as
+ * the console's JSON output) straight into its byte buffer, so a large result starts arriving
+ * before it is all written, and is never held in memory as text.
+ * The status is only sent when the buffer is first written out, so a failure while writing a
+ * response that fits in the buffer still gets a 500. A failure after that drops the connection,
+ * so the client sees a cut off response instead of a complete looking one.
+ *
+ * Requests are handled on virtual threads where the JDK has them (21 and later), found by
+ * reflection so the server still runs on 17, where it falls back to a fixed pool of platform
+ * threads.
+ */
+public final class PlannerServer implements AutoCloseable {
+    /** Default port. */
+    static final int DEFAULT_PORT = 8080;
+    /** Response header holding the session id. */
+    static final String SESSION_HEADER = "X-Session";
+    /** Max number of sessions kept. */
+    static final int MAX_SESSIONS = 10000;
+    /** Page size when no limit is given for the next page. */
+    static final int DEFAULT_LIMIT = 20;
+    /** Size of the response write buffer, in bytes. */
+    private static final int WRITE_BUFFER = 1 << 16;
+
+    /** The planner sessions are started from. */
+    private final Planner planner;
+    /** Sessions by id. */
+    private final LruCache<String, Session> sessions = new LruCache<>(MAX_SESSIONS);
+    /** The server. */
+    private final HttpServer server;
+    /** The threads requests run on. */
+    private final ExecutorService executor;
+
+    /**
+     * Creates a server. It does not listen until {@link #start()} is called.
+     *
+     * @param planner the planner holding the games, which new sessions share.
+     * @param port    the port to listen on, 0 for any free port.
+     * @throws IOException if the port cannot be bound.
+     */
+    public PlannerServer(Planner planner, int port) throws IOException {
+        this.planner = planner;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts listening.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, waiting up to a second for requests in flight.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     * Builds the request executor: a virtual thread per request if the JDK has them, or a
+     * fixed pool of platform threads.
+     *
+     * @return the executor.
+     */
+    static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // before JDK 21 (or with virtual threads still in preview and not enabled)
+            return Executors.newFixedThreadPool(
+                    Math.max(16, 4 * Runtime.getRuntime().availableProcessors()));
+        }
+    }
+
+    /**
+     * Handles a request.
+     *
+     * @param exchange the request and response.
+     * @throws IOException if the response cannot be written.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean answered = false;
+        try {
+            int status = 200;
+            Body body;
+            try {
+                Map<String, String> params = params(exchange);
+                String id = params.get("session");
+                Session session;
+                if (id == null || id.isEmpty()) {
+                    id = UUID.randomUUID().toString();
+                    session = sessions.computeIfAbsent(id,
+                            key -> new Session(planner.newSession()));
+                } else {
+                    session = sessions.get(id);
+                }
+                if (session == null) {
+                    status = 404;
+                    String unknown = id;
+                    body = out -> error(out, "Unknown session: " + unknown);
+                } else {
+                    exchange.getResponseHeaders().set(SESSION_HEADER, id);
+                    body = route(exchange, session, params);
+                    if (body == null) {
+                        status = 404;
+                        body = out -> error(out, "No such endpoint: " + exchange.getRequestMethod()
+                                + " " + exchange.getRequestURI().getPath());
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = out -> error(out, e.getMessage());
+            } catch (RuntimeException | Error e) {
+                status = 500;
+                body = failed(exchange, e);
+            }
+            Response response = new Response(exchange, status);
+            try {
+                respond(response, body);
+            } catch (IOException | RuntimeException | Error e) {
+                if (response.isCommitted()) {
+                    // the status is out, so leave the exchange open and let the server drop
+                    // the connection, rather than end the response as if it were complete
+                    throw e;
+                }
+                respond(new Response(exchange, 500), failed(exchange, e));
+            }
+            answered = true;
+        } finally {
+            if (answered) {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Reports a failure that is not the client's fault.
+     *
+     * @param exchange the request.
+     * @param e        the failure.
+     * @return the body of the 500 response.
+     */
+    private static Body failed(HttpExchange exchange, Throwable e) {
+        System.err.println("Error handling " + exchange.getRequestMethod() + " "
+                + exchange.getRequestURI() + ": " + e);
+        return out -> error(out, "Internal error");
+    }
+
+    /**
+     * Runs a request against its session, and returns what to write back. The session is only
+     * locked while the planner or list is used; the body reads results that no later request
+     * changes, so it is written without the lock.
+     *
+     * @param exchange the request.
+     * @param session  the session.
+     * @param params   the request parameters.
+     * @return the response body, or null if there is no such endpoint.
+     * @throws IllegalArgumentException if a parameter is not valid.
+     */
+    private Body route(HttpExchange exchange, Session session, Map<String, String> params) {
+        boolean get = "GET".equals(exchange.getRequestMethod());
+        boolean post = "POST".equals(exchange.getRequestMethod());
+        switch (exchange.getRequestURI().getPath()) {
+            case "/games":
+                return get ? games(session, params) : null;
+            case "/games/next":
+                if (!get) {
+                    return null;
+                }
+                String cursor = params.get("cursor");
+                if (cursor == null) {
+                    throw new IllegalArgumentException("Missing cursor");
+                }
+                int limit = intParam(params, "limit", DEFAULT_LIMIT);
+                Page next;
+                synchronized (session) {
+                    next = session.planner.nextPage(cursor, limit);
+                }
+                return out -> page(out, next);
+            case "/complete":
+                return get ? complete(params) : null;
+            case "/reset":
+                if (!post) {
+                    return null;
+                }
+                synchronized (session) {
+                    session.planner.reset();
+                }
+                return out -> out.ascii("{\"reset\":true}");
+            case "/list":
+                return get ? list(session) : null;
+            case "/list/add":
+            case "/list/remove":
+            case "/list/clear":
+                return post ? changeList(exchange.getRequestURI().getPath(), session, params) : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Runs a filter query.
+     *
+     * @param session the session.
+     * @param params  the request parameters.
+     * @return the body: a page if there is a limit, else every matching game.
+     */
+    private static Body games(Session session, Map<String, String> params) {
+        String filter = params.getOrDefault("filter", "");
+        GameData sortOn = GameData.fromString(params.getOrDefault("sort", "name"));
+        String order = params.getOrDefault("order", "asc").toLowerCase(Locale.ROOT);
+        if (!order.equals("asc") && !order.equals("desc")) {
+            throw new IllegalArgumentException("Invalid order: " + order);
+        }
+        boolean ascending = order.equals("asc");
+        if (params.containsKey("limit") || params.containsKey("offset")) {
+            int offset = intParam(params, "offset", 0);
+            int limit = intParam(params, "limit", DEFAULT_LIMIT);
+            Page page;
+            synchronized (session) {
+                page = session.planner.page(filter, sortOn, ascending, offset, limit);
+            }
+            return out -> page(out, page);
+        }
+        Stream<BoardGame> games;
+        synchronized (session) {
+            games = session.planner.filter(filter, sortOn, ascending);
+        }
+        return out -> {
+            out.ascii("{\"games\":");
+            games(out, games.iterator());
+            out.ascii("}");
+        };
+    }
+
+    /**
+     * Completes a game name. Completion does not use the session, so it takes no lock.
+     *
+     * @param params the request parameters.
+     * @return the body.
+     */
+    private Body complete(Map<String, String> params) {
+        GameData sortOn = GameData.fromString(params.getOrDefault("sort", "rank"));
+        String order = params.getOrDefault("order", "asc").toLowerCase(Locale.ROOT);
+        if (!order.equals("asc") && !order.equals("desc")) {
+            throw new IllegalArgumentException("Invalid order: " + order);
+        }
+        List<BoardGame> games = planner.complete(params.getOrDefault("prefix", ""), sortOn,
+                order.equals("asc"), intParam(params, "limit", DEFAULT_LIMIT));
+        return out -> {
+            out.ascii("{\"games\":");
+            games(out, games.iterator());
+            out.ascii("}");
+        };
+    }
+
+    /**
+     * Reads the session's game list.
+     *
+     * @param session the session.
+     * @return the body.
+     */
+    private static Body list(Session session) {
+        List<String> names;
+        synchronized (session) {
+            names = session.list.getGameNames();
+        }
+        return out -> {
+            out.ascii("{\"count\":");
+            out.number(names.size());
+            out.ascii(",\"games\":[");
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) {
+                    out.ascii(",");
+                }
+                out.jsonString(names.get(i));
+            }
+            out.ascii("]}");
+        };
+    }
+
+    /**
+     * Adds to, removes from or clears the session's game list.
+     *
+     * @param path    the endpoint.
+     * @param session the session.
+     * @param params  the request parameters.
+     * @return the body, the list after the change.
+     */
+    private static Body changeList(String path, Session session, Map<String, String> params) {
+        String game = params.getOrDefault("game", "").trim().toLowerCase(Locale.ROOT);
+        if (game.isEmpty() && !path.equals("/list/clear")) {
+            throw new IllegalArgumentException("Missing game");
+        }
+        synchronized (session) {
+            if (path.equals("/list/add")) {
+                session.list.addToList(game, session.planner.filter(""));
+            } else if (path.equals("/list/remove")) {
+                session.list.removeFromList(game);
+            } else {
+                session.list.clear();
+            }
+        }
+        return list(session);
+    }
+
+    /**
+     * Writes a page.
+     *
+     * @param out  the writer.
+     * @param page the page.
+     * @throws IOException if the writer fails.
+     */
+    private static void page(ResultWriter out, Page page) throws IOException {
+        out.ascii("{\"offset\":");
+        out.number(page.getOffset());
+        out.ascii(",\"total\":");
+        out.number(page.getTotal());
+        out.ascii(",\"cursor\":");
+        out.jsonString(page.getCursor());
+        out.ascii(",\"games\":");
+        games(out, page.getGames().iterator());
+        out.ascii("}");
+    }
+
+    /**
+     * Writes games as a JSON array.
+     *
+     * @param out   the writer.
+     * @param games the games.
+     * @throws IOException if the writer fails.
+     */
+    private static void games(ResultWriter out, Iterator<BoardGame> games) throws IOException {
+        out.begin(ResultWriter.Format.JSON);
+        while (games.hasNext()) {
+            out.write(games.next(), GameData.NAME);
+        }
+        out.ascii("]"); // not end(), which also ends the line
+    }
+
+    /**
+     * Writes an error.
+     *
+     * @param out     the writer.
+     * @param message the error message.
+     * @throws IOException if the writer fails.
+     */
+    private static void error(ResultWriter out, String message) throws IOException {
+        out.ascii("{\"error\":");
+        out.jsonString(message);
+        out.ascii("}");
+    }
+
+    /**
+     * Streams a body, sending the response headers when the first bytes go out.
+     *
+     * @param response the response.
+     * @param body     the body.
+     * @throws IOException if the response cannot be written.
+     */
+    private static void respond(Response response, Body body) throws IOException {
+        ResultWriter out = new ResultWriter(response, WRITE_BUFFER);
+        body.write(out);
+        out.flush();
+    }
+
+    /**
+     * Reads the parameters of a request, from the query string and a form encoded body.
+     *
+     * @param exchange the request.
+     * @return the parameters; the last value wins if a name is repeated.
+     * @throws IOException if the body cannot be read.
+     * @throws IllegalArgumentException if the text is not validly encoded.
+     */
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parse(exchange.getRequestURI().getRawQuery(), params);
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (type != null && type.startsWith("application/x-www-form-urlencoded")) {
+            try (InputStream in = exchange.getRequestBody()) {
+                parse(new String(in.readAllBytes(), StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Parses name=value pairs separated by ampersands.
+     *
+     * @param text   the encoded text, or null.
+     * @param params the map to put the pairs in.
+     */
+    private static void parse(String text, Map<String, String> params) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        for (String pair : text.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Reads a whole number parameter.
+     *
+     * @param params   the parameters.
+     * @param name     the parameter name.
+     * @param fallback the value if it is missing.
+     * @return the value.
+     * @throws IllegalArgumentException if it is not a number.
+     */
+    private static int intParam(Map<String, String> params, String name, int fallback) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    /**
+     * A response body, written once the status has been sent.
+     */
+    @FunctionalInterface
+    private interface Body {
+        /**
+         * Writes the body.
+         *
+         * @param out the writer, which is flushed after.
+         * @throws IOException if the writer fails.
+         */
+        void write(ResultWriter out) throws IOException;
+    }
+
+    /**
+     * The body of a response, which sends the status and headers the first time anything is
+     * written to it or it is flushed.
+     */
+    private static final class Response extends OutputStream {
+        /** The exchange. */
+        private final HttpExchange exchange;
+        /** The status code. */
+        private final int status;
+        /** The response body, null until the headers are sent. */
+        private OutputStream out;
+
+        /**
+         * Constructs a response.
+         *
+         * @param exchange the exchange.
+         * @param status   the status code.
+         */
+        Response(HttpExchange exchange, int status) {
+            this.exchange = exchange;
+            this.status = status;
+        }
+
+        /**
+         * Checks if the status and headers have been sent.
+         *
+         * @return true once they have, so the status can no longer change.
+         */
+        boolean isCommitted() {
+            return out != null;
+        }
+
+        /**
+         * Sends the status and headers, if they have not been sent yet.
+         *
+         * @return the response body.
+         * @throws IOException if the headers cannot be sent.
+         */
+        private OutputStream commit() throws IOException {
+            if (out == null) {
+                exchange.getResponseHeaders().set("Content-Type",
+                        "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(status, 0); // 0 for chunked, the length is not known
+                out = exchange.getResponseBody();
+            }
+            return out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            commit().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            commit().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            commit().flush();
+        }
+    }
+
+    /**
+     * One client's planner session and game list.
+     */
+    private static final class Session {
+        /** The planner session. */
+        private final IPlanner planner;
+        /** The game list. */
+        private final IGameList list = new GameList();
+
+        /**
+         * Constructs a session.
+         *
+         * @param planner the planner session.
+         */
+        Session(IPlanner planner) {
+            this.planner = planner;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package student;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Prefix (type ahead) completion over the names of a {@link GameTable}.
+ *
+ * The table's name permutation already holds every row in order of its {@link NameKey}, so it is
+ * used as the sorted array: the names whose keys start with the key of a prefix are one
+ * contiguous range of it, found with two binary searches over the keys, without building any
+ * strings. So "pok" completes "Pok&eacute;mon" as well as "Poker". The best rows of the
+ * range by rank, rating or any other column are then picked by {@link TopK}, which either walks
+ * that column's sort permutation or keeps a small heap over the range, whichever touches fewer
+ * rows.
+ *
+ * So that neither strategy jumps around memory, two arrays are built for each column the first
+ * time it is used to rank completions: the column rank of every row in name order, for the heap,
+ * and the name position of every row in the column's order, for the walk. They take 8 bytes a
+ * row per column.
+ *
+ * The index can be shared between threads; a race to build a column's arrays builds them twice
+ * and keeps the first.
+ */
+public final class PrefixIndex {
+    /** The table the names are in. */
+    private final GameTable table;
+    /** Column rank of each row in name order, by GameData ordinal, built on first use. */
+    private final AtomicReferenceArray<int[]> columnRanks =
+            new AtomicReferenceArray<>(GameData.values().length);
+    /** Name position of each row in a column's order, by GameData ordinal, built on first use. */
+    private final AtomicReferenceArray<int[]> namePositions =
+            new AtomicReferenceArray<>(GameData.values().length);
+
+    /**
+     * Creates the index for a table, use {@link GameTable#prefixIndex()} to get the shared one.
+     *
+     * @param table the table.
+     */
+    PrefixIndex(GameTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Finds the best games whose names start with a prefix, ignoring case, accents and leading
+     * spaces.
+     *
+     * @param prefix    the start of the name.
+     * @param sortOn    the column to rank the matches by.
+     * @param ascending true for the smallest values first (as for rank), false for the largest
+     *                  (as for rating).
+     * @param limit     the max number of rows to return.
+     * @return up to limit row ids, in order of the column, ties in name order.
+     * @throws IllegalArgumentException if limit is negative.
+     */
+    public int[] complete(String prefix, GameData sortOn, boolean ascending, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+        }
+        String text = NameKey.of(prefix.stripLeading());
+        int from = first(text, false);
+        int to = first(text, true);
+        if (from == to || limit == 0) {
+            return new int[0];
+        }
+        build(sortOn);
+        return TopK.firstInNameRange(table.permutation(sortOn),
+                namePositions.get(sortOn.ordinal()), columnRanks.get(sortOn.ordinal()), from, to,
+                ascending, limit);
+    }
+
+    /**
+     * Builds the arrays for ranking completions by a column, if they are not built yet.
+     *
+     * @param column the column.
+     */
+    private void build(GameData column) {
+        if (columnRanks.get(column.ordinal()) != null) {
+            return;
+        }
+        int[] byName = table.permutation(GameData.NAME);
+        int[] nameRanks = table.ranks(GameData.NAME);
+        int[] ranks = table.ranks(column);
+        int[] permutation = table.permutation(column);
+        int[] inNameOrder = new int[byName.length];
+        int[] positions = new int[byName.length];
+        for (int i = 0; i < byName.length; i++) {
+            inNameOrder[i] = ranks[byName[i]];
+            positions[i] = nameRanks[permutation[i]];
+        }
+        namePositions.compareAndSet(column.ordinal(), null, positions);
+        columnRanks.compareAndSet(column.ordinal(), null, inNameOrder);
+    }
+
+    /**
+     * Binary searches the name order for the start or the end of the names with a prefix.
+     *
+     * @param prefix the key of the prefix.
+     * @param after  false for the first name that is not before the prefix, true for the first
+     *               name that comes after every name starting with it.
+     * @return the position in the name permutation.
+     */
+    private int first(String prefix, boolean after) {
+        int[] byName = table.permutation(GameData.NAME);
+        int[] codes = table.nameCodes();
+        String[] keys = table.keys();
+        int low = 0;
+        int high = byName.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int order = NameKey.compareStart(keys[codes[byName[mid]]], prefix);
+            if (order < 0 || (after && order == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,284 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How a filter was run, as reported by {@link Planner#explain(String)}: one {@link Step} for each
+ * condition and each and, or and not group, in the order they ran, with the rows each one was
+ * estimated to leave against the rows it did leave, the access path it took and its time.
+ *
+ * Groups are listed ahead of the steps inside them, one level deeper. The estimate of a step is
+ * the estimate it was ordered by ({@link CompiledFilter#estimate(GameTable)}, from the
+ * {@link ColumnStats} of its column) scaled to the rows that reached it, as if its matches were
+ * spread evenly over the table.
+ */
+public final class QueryPlan {
+    /** The filter. */
+    private final String filter;
+    /** Number of rows in the table, for scaling the estimates. */
+    private final int tableSize;
+    /** The steps, null where a group has been started but not finished. */
+    private final List<Step> steps = new ArrayList<>();
+    /** Depth of the next step. */
+    private int depth;
+    /** Rows selected before the filter. */
+    private long rowsIn;
+    /** Rows selected after the filter. */
+    private long rowsOut;
+    /** Time taken by the whole filter, in nanoseconds. */
+    private long nanos;
+
+    /**
+     * Constructor for an empty plan.
+     *
+     * @param filter    the filter.
+     * @param tableSize the number of rows in the table.
+     */
+    QueryPlan(String filter, int tableSize) {
+        this.filter = filter;
+        this.tableSize = tableSize;
+    }
+
+    /**
+     * Starts a group, so the steps until {@link #end} are listed under it.
+     *
+     * @return the position to pass to {@link #end}.
+     */
+    int begin() {
+        steps.add(null);
+        depth++;
+        return steps.size() - 1;
+    }
+
+    /**
+     * Finishes a group started with {@link #begin()}.
+     *
+     * @param position  the position returned by begin.
+     * @param operation the text of the group.
+     * @param access    how the group combined its parts.
+     * @param rowsIn    the rows that reached the group.
+     * @param estimate  the estimated matches of the group on the whole table.
+     * @param actual    the rows left after the group.
+     * @param time      the time taken, in nanoseconds.
+     */
+    void end(int position, String operation, String access, long rowsIn, long estimate,
+            long actual, long time) {
+        depth--;
+        steps.set(position, new Step(depth, operation, access, rowsIn, scale(estimate, rowsIn),
+                actual, time));
+    }
+
+    /**
+     * Adds the step of a single condition.
+     *
+     * @param operation the text of the condition.
+     * @param access    how its rows were found.
+     * @param rowsIn    the rows that reached it.
+     * @param estimate  the estimated matches of the condition on the whole table.
+     * @param actual    the rows left after it.
+     * @param time      the time taken, in nanoseconds.
+     */
+    void add(String operation, String access, long rowsIn, long estimate, long actual,
+            long time) {
+        steps.add(new Step(depth, operation, access, rowsIn, scale(estimate, rowsIn), actual,
+                time));
+    }
+
+    /**
+     * Records the rows before and after the whole filter, and its time.
+     *
+     * @param before the rows selected before.
+     * @param after  the rows selected after.
+     * @param time   the time taken, in nanoseconds.
+     */
+    void finish(long before, long after, long time) {
+        this.rowsIn = before;
+        this.rowsOut = after;
+        this.nanos = time;
+    }
+
+    /**
+     * Scales an estimate on the whole table to the rows that reached a step.
+     *
+     * @param estimate the estimated matches on the whole table.
+     * @param rows     the rows that reached the step.
+     * @return the estimated matches among those rows.
+     */
+    private long scale(long estimate, long rows) {
+        return tableSize == 0 ? 0 : Math.round((double) estimate * rows / tableSize);
+    }
+
+    /**
+     * Get the filter.
+     *
+     * @return the filter text.
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * Get the steps, in the order they ran.
+     *
+     * @return the steps (unmodifiable).
+     */
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Get the number of rows selected before the filter.
+     *
+     * @return the rows in.
+     */
+    public long getRowsIn() {
+        return rowsIn;
+    }
+
+    /**
+     * Get the number of rows the filter selected.
+     *
+     * @return the rows out.
+     */
+    public long getRowsOut() {
+        return rowsOut;
+    }
+
+    /**
+     * Get the time taken by the whole filter.
+     *
+     * @return the time in nanoseconds.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s: %d of %d rows in %.3f ms%n", filter, rowsOut, rowsIn,
+                nanos / 1_000_000.0));
+        sb.append(String.format("%-40s %-14s %9s %9s %9s %9s%n", "step", "access", "rows in",
+                "estimate", "actual", "ms"));
+        for (Step step : steps) {
+            sb.append(step).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * One step of a plan: a condition, or an and, or or not group.
+     */
+    public static final class Step {
+        /** How many groups the step is inside. */
+        private final int depth;
+        /** The text of the condition or group. */
+        private final String operation;
+        /** How its rows were found. */
+        private final String access;
+        /** Rows that reached the step. */
+        private final long rowsIn;
+        /** Rows the step was estimated to leave. */
+        private final long estimated;
+        /** Rows the step left. */
+        private final long actual;
+        /** Time taken, in nanoseconds. */
+        private final long nanos;
+
+        /**
+         * Constructor for a step.
+         *
+         * @param depth     how many groups the step is inside.
+         * @param operation the text of the condition or group.
+         * @param access    how its rows were found.
+         * @param rowsIn    rows that reached the step.
+         * @param estimated rows it was estimated to leave.
+         * @param actual    rows it left.
+         * @param nanos     time taken, in nanoseconds.
+         */
+        private Step(int depth, String operation, String access, long rowsIn, long estimated,
+                long actual, long nanos) {
+            this.depth = depth;
+            this.operation = operation;
+            this.access = access;
+            this.rowsIn = rowsIn;
+            this.estimated = estimated;
+            this.actual = actual;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Get how many groups the step is inside.
+         *
+         * @return the depth, 0 at the top.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Get the condition or group, as filter text.
+         *
+         * @return the operation.
+         */
+        public String getOperation() {
+            return operation;
+        }
+
+        /**
+         * Get how the rows were found: "cached bitmap", "index slice", "index driver" (an index
+         * slice whose rows the other conditions were tested on), "column scan", "name index",
+         * "name keys" or "row test" for a condition, and "and", "or" or "not" for a group.
+         *
+         * @return the access path.
+         */
+        public String getAccess() {
+            return access;
+        }
+
+        /**
+         * Get the number of rows that reached the step.
+         *
+         * @return the rows in.
+         */
+        public long getRowsIn() {
+            return rowsIn;
+        }
+
+        /**
+         * Get the number of rows the step was estimated to leave.
+         *
+         * @return the estimate.
+         */
+        public long getEstimated() {
+            return estimated;
+        }
+
+        /**
+         * Get the number of rows the step left.
+         *
+         * @return the actual rows out.
+         */
+        public long getActual() {
+            return actual;
+        }
+
+        /**
+         * Get the time the step took, including the steps inside it.
+         *
+         * @return the time in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            String text = "  ".repeat(depth) + operation;
+            return String.format("%-40s %-14s %9d %9d %9d %9.3f", text, access, rowsIn, estimated,
+                    actual, nanos / 1_000_000.0);
+        }
+    }
+}
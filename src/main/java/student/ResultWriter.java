@@ -0,0 +1,623 @@
+package student;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes results as text, CSV or JSON, encoding each row straight into one reusable byte buffer
+ * that is written out in large chunks, to an {@link OutputStream} or a channel.
+ *
+ * Nothing is allocated per row: numbers are written digit by digit, names are encoded to UTF-8
+ * by hand, and rows can be written straight from a {@link GameTable}'s columns as well as from
+ * {@link BoardGame} objects.
+ *
+ * Text rows match the console's {@code "%d: %s%n"} of {@link BoardGame#toStringWithInfo}, with
+ * decimals as {@code %.2f}: rounded half up from the shortest decimal that reads back as the same
+ * double (which is what {@link java.util.Formatter} rounds). That decimal is found without
+ * allocating for any value with at most 9 decimal places; exact ties, and the rare values with
+ * more places, are rounded by {@link BigDecimal} instead. CSV and JSON rows hold every field, with
+ * decimals written in full in the same way.
+ *
+ * The writer never closes the stream or channel, which belongs to the caller. Call
+ * {@link #flush()} when a result is done.
+ *
+ * This is the one JSON encoder of games: {@link PlannerServer} writes its responses through it
+ * too, with the few package private writes it needs for the objects around the games.
+ */
+public final class ResultWriter implements Flushable {
+    /** The output formats. */
+    public enum Format {
+        /** Numbered lines of the name and the sort column, as printed by the console. */
+        TEXT,
+        /** A header and a line per game, in the collection file's columns. */
+        CSV,
+        /** An array of game objects. */
+        JSON
+    }
+
+    /** Default buffer size, in bytes. */
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    /** Least buffer size, which holds any number or encoded char. */
+    private static final int MIN_BUFFER_SIZE = 64;
+    /** The line separator, as printf's %n writes it. */
+    private static final byte[] LINE_SEPARATOR =
+            System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    /** The columns of a CSV row, in order. */
+    private static final GameData[] CSV_COLUMNS = {GameData.NAME, GameData.ID, GameData.RATING,
+        GameData.DIFFICULTY, GameData.RANK, GameData.MIN_PLAYERS, GameData.MAX_PLAYERS,
+        GameData.MIN_TIME, GameData.MAX_TIME, GameData.YEAR};
+    /** Powers of ten, up to the largest a decimal is scaled by. */
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L,
+        1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L};
+    /** Largest scaled decimal that a double holds exactly (2^53). */
+    private static final double MAX_EXACT = 9_007_199_254_740_992.0;
+
+    /** The stream to write to, or null if writing to the channel. */
+    private final OutputStream out;
+    /** The channel to write to, or null if writing to the stream. */
+    private final WritableByteChannel channel;
+    /** The buffer rows are encoded into. */
+    private final byte[] buffer;
+    /** The buffer, as a ByteBuffer for the channel. */
+    private final ByteBuffer view;
+    /** Number of bytes in the buffer. */
+    private int position;
+    /** Format of the rows being written. */
+    private Format format = Format.TEXT;
+    /** Number of rows written since {@link #begin(Format)}. */
+    private int count;
+    /** Digits of a number, least significant first. */
+    private final byte[] digits = new byte[20];
+
+    /**
+     * Constructs a writer to a stream, with the default buffer size.
+     *
+     * @param out the stream.
+     */
+    public ResultWriter(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a writer to a stream.
+     *
+     * @param out        the stream.
+     * @param bufferSize the number of bytes to collect before writing to the stream.
+     */
+    public ResultWriter(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.channel = null;
+        this.buffer = new byte[Math.max(MIN_BUFFER_SIZE, bufferSize)];
+        this.view = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * Constructs a writer to a channel, with the default buffer size.
+     *
+     * @param channel the channel.
+     */
+    public ResultWriter(WritableByteChannel channel) {
+        this.out = null;
+        this.channel = channel;
+        this.buffer = new byte[DEFAULT_BUFFER_SIZE];
+        this.view = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * Starts a result: sets the format and row numbering, and writes the CSV header or the start
+     * of the JSON array.
+     *
+     * @param format the format of the rows.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    public void begin(Format format) throws IOException {
+        this.format = format;
+        this.count = 0;
+        if (format == Format.CSV) {
+            for (int i = 0; i < CSV_COLUMNS.length; i++) {
+                if (i > 0) {
+                    write(',');
+                }
+                ascii(CSV_COLUMNS[i].getColumnName());
+            }
+            write('\n');
+        } else if (format == Format.JSON) {
+            write('[');
+        }
+    }
+
+    /**
+     * Writes a game.
+     *
+     * @param game the game.
+     * @param info the column to show next to the name in text rows (the sort column).
+     * @throws IOException if a full buffer cannot be written.
+     */
+    public void write(BoardGame game, GameData info) throws IOException {
+        row(game.getName(), game.getId(), game.getRating(), game.getDifficulty(), game.getRank(),
+                game.getMinPlayers(), game.getMaxPlayers(), game.getMinPlayTime(),
+                game.getMaxPlayTime(), game.getYearPublished(), info);
+    }
+
+    /**
+     * Writes a game straight from a table's columns.
+     *
+     * @param table the table.
+     * @param row   the row id.
+     * @param info  the column to show next to the name in text rows (the sort column).
+     * @throws IOException if a full buffer cannot be written.
+     */
+    public void write(GameTable table, int row, GameData info) throws IOException {
+        row(table.name(row), table.getInt(GameData.ID, row), table.getDouble(GameData.RATING, row),
+                table.getDouble(GameData.DIFFICULTY, row), table.getInt(GameData.RANK, row),
+                table.getInt(GameData.MIN_PLAYERS, row), table.getInt(GameData.MAX_PLAYERS, row),
+                table.getInt(GameData.MIN_TIME, row), table.getInt(GameData.MAX_TIME, row),
+                table.getInt(GameData.YEAR, row), info);
+    }
+
+    /**
+     * Ends a result, closing the JSON array.
+     *
+     * @throws IOException if a full buffer cannot be written.
+     */
+    public void end() throws IOException {
+        if (format == Format.JSON) {
+            write(']');
+            write('\n');
+        }
+    }
+
+    /**
+     * Writes everything in the buffer to the stream or channel, and flushes the stream.
+     *
+     * @throws IOException if it cannot be written.
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes one game in the current format.
+     *
+     * @param name          the name.
+     * @param id            the id.
+     * @param rating        the rating.
+     * @param difficulty    the difficulty.
+     * @param rank          the rank.
+     * @param minPlayers    the min players.
+     * @param maxPlayers    the max players.
+     * @param minTime       the min play time.
+     * @param maxTime       the max play time.
+     * @param year          the year published.
+     * @param info          the column to show in text rows.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    private void row(String name, int id, double rating, double difficulty, int rank,
+            int minPlayers, int maxPlayers, int minTime, int maxTime, int year, GameData info)
+            throws IOException {
+        count++;
+        switch (format) {
+            case CSV:
+                csvName(name);
+                write(',');
+                number(id);
+                write(',');
+                decimal(rating);
+                write(',');
+                decimal(difficulty);
+                write(',');
+                number(rank);
+                write(',');
+                number(minPlayers);
+                write(',');
+                number(maxPlayers);
+                write(',');
+                number(minTime);
+                write(',');
+                number(maxTime);
+                write(',');
+                number(year);
+                write('\n');
+                break;
+            case JSON:
+                if (count > 1) {
+                    write(',');
+                }
+                ascii("{\"name\":");
+                jsonString(name);
+                ascii(",\"id\":");
+                number(id);
+                ascii(",\"minPlayers\":");
+                number(minPlayers);
+                ascii(",\"maxPlayers\":");
+                number(maxPlayers);
+                ascii(",\"minPlayTime\":");
+                number(minTime);
+                ascii(",\"maxPlayTime\":");
+                number(maxTime);
+                ascii(",\"difficulty\":");
+                jsonDecimal(difficulty);
+                ascii(",\"rank\":");
+                number(rank);
+                ascii(",\"rating\":");
+                jsonDecimal(rating);
+                ascii(",\"yearPublished\":");
+                number(year);
+                write('}');
+                break;
+            default:
+                number(count);
+                write(':');
+                write(' ');
+                utf8(name);
+                switch (info) {
+                    case RATING:
+                        info(rating);
+                        break;
+                    case DIFFICULTY:
+                        info(difficulty);
+                        break;
+                    case RANK:
+                        info(rank);
+                        break;
+                    case MIN_PLAYERS:
+                        info(minPlayers);
+                        break;
+                    case MAX_PLAYERS:
+                        info(maxPlayers);
+                        break;
+                    case MIN_TIME:
+                        info(minTime);
+                        break;
+                    case MAX_TIME:
+                        info(maxTime);
+                        break;
+                    case YEAR:
+                        info(year);
+                        break;
+                    default:
+                        break;
+                }
+                ensure(LINE_SEPARATOR.length);
+                for (byte b : LINE_SEPARATOR) {
+                    buffer[position++] = b;
+                }
+        }
+    }
+
+    /**
+     * Writes " (value)" for a whole number column.
+     *
+     * @param value the value.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    private void info(int value) throws IOException {
+        write(' ');
+        write('(');
+        number(value);
+        write(')');
+    }
+
+    /**
+     * Writes " (value)" for a decimal column, to two places.
+     *
+     * @param value the value.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    private void info(double value) throws IOException {
+        write(' ');
+        write('(');
+        fixed2(value);
+        write(')');
+    }
+
+    /**
+     * Writes a decimal to two places, as {@code String.format("%.2f", value)} does.
+     *
+     * @param value the value.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    void fixed2(double value) throws IOException {
+        double magnitude = Math.abs(value);
+        int places = shortestPlaces(magnitude);
+        if (places < 0) {
+            slowFixed2(value);
+            return;
+        }
+        long scaled = Math.round(magnitude * POWERS_OF_TEN[places]);
+        long cents;
+        if (places <= 2) {
+            cents = scaled * POWERS_OF_TEN[2 - places];
+        } else {
+            long unit = POWERS_OF_TEN[places - 2];
+            long rest = scaled % unit;
+            if (rest * 2 == unit) {
+                slowFixed2(value); // an exact tie, rounded the way Formatter does
+                return;
+            }
+            cents = scaled / unit + (rest * 2 > unit ? 1 : 0);
+        }
+        if (Double.doubleToRawLongBits(value) < 0) {
+            write('-');
+        }
+        number(cents / 100);
+        write('.');
+        write((char) ('0' + cents % 100 / 10));
+        write((char) ('0' + cents % 10));
+    }
+
+    /**
+     * Writes a decimal to two places with BigDecimal, for values the fast path cannot round.
+     *
+     * @param value the value.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    private void slowFixed2(double value) throws IOException {
+        if (!Double.isFinite(value)) {
+            ascii(Double.toString(value));
+            return;
+        }
+        String text = new BigDecimal(Double.toString(value)).setScale(2, RoundingMode.HALF_UP)
+                .toPlainString();
+        if (Double.doubleToRawLongBits(value) < 0 && text.charAt(0) != '-') {
+            write('-'); // BigDecimal has no negative zero, Formatter keeps the sign
+        }
+        ascii(text);
+    }
+
+    /**
+     * Writes a decimal in full: the shortest decimal that reads back as the same double.
+     *
+     * @param value the value.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    void decimal(double value) throws IOException {
+        double magnitude = Math.abs(value);
+        int places = shortestPlaces(magnitude);
+        if (places < 0) {
+            ascii(Double.toString(value));
+            return;
+        }
+        long scaled = Math.round(magnitude * POWERS_OF_TEN[places]);
+        if (Double.doubleToRawLongBits(value) < 0) {
+            write('-');
+        }
+        number(scaled / POWERS_OF_TEN[places]);
+        write('.');
+        if (places == 0) {
+            write('0');
+            return;
+        }
+        long fraction = scaled % POWERS_OF_TEN[places];
+        for (int i = places - 1; i >= 0; i--) {
+            write((char) ('0' + fraction / POWERS_OF_TEN[i] % 10));
+        }
+    }
+
+    /**
+     * Writes a decimal as a JSON number, or null for NaN and infinities.
+     *
+     * @param value the value.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    private void jsonDecimal(double value) throws IOException {
+        if (Double.isFinite(value)) {
+            decimal(value);
+        } else {
+            ascii("null");
+        }
+    }
+
+    /**
+     * Finds the fewest decimal places (up to 9) at which a value, rounded, divides back to
+     * exactly the same double.
+     *
+     * @param magnitude the value, not negative.
+     * @return the number of places, or -1 if it needs more (or is too large, or not finite).
+     */
+    private static int shortestPlaces(double magnitude) {
+        for (int places = 0; places < POWERS_OF_TEN.length; places++) {
+            double scaled = magnitude * POWERS_OF_TEN[places];
+            if (!(scaled < MAX_EXACT)) {
+                return -1; // also NaN
+            }
+            long rounded = Math.round(scaled);
+            if (rounded / (double) POWERS_OF_TEN[places] == magnitude) {
+                return places;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes a whole number.
+     *
+     * @param value the number.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    void number(long value) throws IOException {
+        ensure(digits.length + 1);
+        if (value < 0) {
+            buffer[position++] = '-';
+        }
+        int length = 0;
+        do {
+            // negative remainders, so Long.MIN_VALUE needs no special case
+            digits[length++] = (byte) ('0' + Math.abs(value % 10));
+            value /= 10;
+        } while (value != 0);
+        while (length > 0) {
+            buffer[position++] = digits[--length];
+        }
+    }
+
+    /**
+     * Writes a name as a CSV field, quoted if it holds a comma, quote or line break.
+     *
+     * @param name the name.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    private void csvName(String name) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < name.length() && !quote; i++) {
+            char c = name.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            utf8(name);
+            return;
+        }
+        write('"');
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) == '"') {
+                write('"');
+            }
+            i = utf8(name, i);
+        }
+        write('"');
+    }
+
+    /**
+     * Writes a string as a quoted, escaped JSON string.
+     *
+     * @param text the string, or null.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    void jsonString(String text) throws IOException {
+        if (text == null) {
+            ascii("null");
+            return;
+        }
+        write('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                write('\\');
+                write(c);
+            } else if (c == '\n') {
+                ascii("\\n");
+            } else if (c == '\r') {
+                ascii("\\r");
+            } else if (c == '\t') {
+                ascii("\\t");
+            } else if (c < 0x20) {
+                ascii("\\u00");
+                write(Character.forDigit(c >> 4, 16));
+                write(Character.forDigit(c & 0xF, 16));
+            } else {
+                i = utf8(text, i);
+            }
+        }
+        write('"');
+    }
+
+    /**
+     * Writes a string as UTF-8.
+     *
+     * @param text the string.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    private void utf8(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            i = utf8(text, i);
+        }
+    }
+
+    /**
+     * Writes one char (or surrogate pair) of a string as UTF-8. A lone surrogate is written as
+     * '?', as {@link String#getBytes} does.
+     *
+     * @param text  the string.
+     * @param index the index of the char.
+     * @return the index of the last char written, index + 1 for a surrogate pair.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    private int utf8(String text, int index) throws IOException {
+        ensure(4);
+        char c = text.charAt(index);
+        if (c < 0x80) {
+            buffer[position++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[position++] = (byte) (0xC0 | c >> 6);
+            buffer[position++] = (byte) (0x80 | c & 0x3F);
+        } else if (Character.isSurrogate(c)) {
+            if (Character.isHighSurrogate(c) && index + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(index + 1))) {
+                int code = Character.toCodePoint(c, text.charAt(index + 1));
+                buffer[position++] = (byte) (0xF0 | code >> 18);
+                buffer[position++] = (byte) (0x80 | code >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | code >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | code & 0x3F);
+                return index + 1;
+            }
+            buffer[position++] = '?';
+        } else {
+            buffer[position++] = (byte) (0xE0 | c >> 12);
+            buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+            buffer[position++] = (byte) (0x80 | c & 0x3F);
+        }
+        return index;
+    }
+
+    /**
+     * Writes an ASCII string.
+     *
+     * @param text the string, which must only hold ASCII chars.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    void ascii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            write(text.charAt(i));
+        }
+    }
+
+    /**
+     * Writes an ASCII char.
+     *
+     * @param c the char.
+     * @throws IOException if a full buffer cannot be written.
+     */
+    private void write(char c) throws IOException {
+        ensure(1);
+        buffer[position++] = (byte) c;
+    }
+
+    /**
+     * Makes room for bytes in the buffer, writing it out if it is too full.
+     *
+     * @param bytes the number of bytes needed.
+     * @throws IOException if the buffer cannot be written.
+     */
+    private void ensure(int bytes) throws IOException {
+        if (position + bytes > buffer.length) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes the buffer to the stream or channel and empties it.
+     *
+     * @throws IOException if it cannot be written.
+     */
+    private void drain() throws IOException {
+        if (out != null) {
+            out.write(buffer, 0, position);
+        } else {
+            view.clear().limit(position);
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        }
+        position = 0;
+    }
+}
@@ -0,0 +1,157 @@
+package student;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads games csv files from disk: single files, gzipped files, and directories of shards (such
+ * as a nightly export split into several files).
+ *
+ * Plain files are read through a {@link FileChannel} into a large direct buffer. Gzipped files
+ * (ending in .gz) are decompressed as a stream, never to disk or fully into memory.
+ *
+ * The shards of a directory are parsed at the same time on a pool, each into its own
+ * {@link GameTable.Builder}, and merged in file name order, so a game in more than one shard
+ * keeps the row from the first shard. Every shard has its own header.
+ */
+final class ShardedCsvLoader {
+    /** Size of the compressed input buffer for gzipped files. */
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
+    /** private constructor to prevent instantiation. */
+    private ShardedCsvLoader() {
+    }
+
+    /**
+     * Lists the shards in a directory: the files ending in .csv or .csv.gz, by file name.
+     *
+     * @param dir the directory.
+     * @return the shards, in file name order.
+     * @throws IOException if the directory cannot be listed.
+     */
+    static List<Path> shards(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(Files::isRegularFile).filter(file -> {
+                String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+                return name.endsWith(".csv") || name.endsWith(".csv.gz");
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Checks if a file is gzipped, by its name.
+     *
+     * @param file the file.
+     * @return true if the name ends in .gz.
+     */
+    static boolean isGzip(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+
+    /**
+     * Parses a file, decompressing it on the fly if it is gzipped.
+     *
+     * @param file   the file.
+     * @param parser the parser to feed.
+     * @throws IOException if the file cannot be read.
+     */
+    static void parse(Path file, GameCsvParser parser) throws IOException {
+        if (isGzip(file)) {
+            try (InputStream in = new GZIPInputStream(
+                    Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ)),
+                    GZIP_BUFFER_SIZE)) {
+                parser.parse(new StreamChannel(in));
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                parser.parse(channel, ByteBuffer.allocateDirect(GameCsvParser.DIRECT_BUFFER_SIZE));
+            }
+        }
+    }
+
+    /**
+     * Loads shards at the same time and merges them into one table.
+     *
+     * @param shards the files to load, in the order rows should be kept.
+     * @param pool   the pool to parse on.
+     * @return the report, holding the table of games. Samples of skipped rows start with the
+     *         shard's file name.
+     * @throws IOException if a shard cannot be read.
+     */
+    static LoadReport load(List<Path> shards, ForkJoinPool pool) throws IOException {
+        List<GameTable.Builder> builders = new ArrayList<>();
+        List<GameCsvParser> parsers = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            GameTable.Builder builder = new GameTable.Builder();
+            builders.add(builder);
+            parsers.add(new GameCsvParser(builder, shards.get(i).getFileName().toString(), i));
+        }
+        ParallelCsvLoader.invokeAll(pool, shards.size(), i -> {
+            parse(shards.get(i), parsers.get(i));
+            return null;
+        });
+
+        int total = builders.stream().mapToInt(GameTable.Builder::size).sum();
+        GameTable.Builder merged = new GameTable.Builder(total);
+        GameCsvParser all = new GameCsvParser(merged);
+        for (int i = 0; i < shards.size(); i++) {
+            GameCsvParser parser = parsers.get(i);
+            GameTable.Builder part = builders.get(i);
+            merged.addAll(part, row -> parser.skip(LoadReport.Reason.DUPLICATE, parser.rowLine(row),
+                    part.name(row) + " (" + part.getInt(row, GameData.ID) + ")"));
+            all.absorb(parser);
+        }
+        return all.report(merged.build());
+    }
+
+    /**
+     * Reads an input stream straight into the parser's buffer, in as large reads as the buffer
+     * allows ({@link Channels#newChannel(InputStream)} copies through a small array).
+     */
+    private static final class StreamChannel implements ReadableByteChannel {
+        /** The stream. */
+        private final InputStream in;
+
+        /**
+         * Wraps a stream.
+         *
+         * @param in the stream, which is closed by the caller.
+         */
+        StreamChannel(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int read = in.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            if (read > 0) {
+                dst.position(dst.position() + read);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // the stream is closed by the caller
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package student;
+
+/**
+ * Sorted secondary index over one numeric column of a {@link GameTable}.
+ *
+ * The index holds every row id ordered by the column value, which is the sort permutation of the
+ * table (so it is shared, not copied), along with the sorted values. A range condition (&gt;, &lt;, &gt;=, &lt;= or ==) is then two binary
+ * searches, and the matching rows are a contiguous slice of the index.
+ *
+ * Indexes are built lazily by the table the first time they are needed, and record how long
+ * they took to build and how much memory they use.
+ */
+public final class SortedIndex {
+    /** The column that is indexed. */
+    private final GameData column;
+    /** Row ids ordered by value. */
+    private final int[] rows;
+    /** Sorted values for whole number columns, null otherwise. */
+    private final int[] intValues;
+    /** Sorted values for decimal columns, null otherwise. */
+    private final double[] doubleValues;
+    /** Time taken to build the index, in nanoseconds. */
+    private final long buildNanos;
+
+    /**
+     * Builds the index for a column.
+     *
+     * @param table  the table to index.
+     * @param column the numeric column to index.
+     * @throws IllegalArgumentException if the column is NAME.
+     */
+    SortedIndex(GameTable table, GameData column) {
+        if (column == GameData.NAME) {
+            throw new IllegalArgumentException("Cannot build a sorted index on " + column);
+        }
+        long start = System.nanoTime();
+        this.column = column;
+        this.rows = table.permutation(column);
+        if (GameTable.isDecimal(column)) {
+            this.intValues = null;
+            this.doubleValues = new double[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                doubleValues[i] = table.getDouble(column, rows[i]);
+            }
+        } else {
+            this.doubleValues = null;
+            this.intValues = new int[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                intValues[i] = table.getInt(column, rows[i]);
+            }
+        }
+        this.buildNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Get the column that is indexed.
+     *
+     * @return the column.
+     */
+    public GameData getColumn() {
+        return column;
+    }
+
+    /**
+     * Get the number of rows in the index.
+     *
+     * @return the number of rows.
+     */
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * Get the row id at a position in the index.
+     *
+     * @param position the position, 0 being the smallest value.
+     * @return the row id.
+     */
+    public int row(int position) {
+        return rows[position];
+    }
+
+    /**
+     * Get the time it took to build the index.
+     *
+     * @return the build time in nanoseconds.
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * Get the approximate memory used by the index. Only the sorted values are counted, as the
+     * row ids are the table's sort permutation, which exists with or without the index.
+     *
+     * @return the size in bytes.
+     */
+    public long getMemoryBytes() {
+        return intValues != null ? (long) Integer.BYTES * intValues.length
+                : (long) Double.BYTES * doubleValues.length;
+    }
+
+    /**
+     * Finds the positions of the values in the inclusive range [low, high].
+     *
+     * @param low  the lowest value to include.
+     * @param high the highest value to include.
+     * @return the slice of matching positions.
+     */
+    public Slice range(int low, int high) {
+        if (low > high) {
+            return new Slice(this, 0, 0);
+        }
+        return new Slice(this, firstAtLeast(low), firstAbove(high));
+    }
+
+    /**
+     * Finds the positions of the values in the inclusive range [low, high]. A NaN bound gives
+     * an empty slice, as NaN never compares as in range.
+     *
+     * @param low  the lowest value to include.
+     * @param high the highest value to include.
+     * @return the slice of matching positions.
+     */
+    public Slice range(double low, double high) {
+        if (!(low <= high)) {
+            return new Slice(this, 0, 0);
+        }
+        return new Slice(this, firstAtLeast(low), firstAbove(high));
+    }
+
+    /**
+     * Binary search for the first position with a value &gt;= the key.
+     *
+     * @param key the key.
+     * @return the position, or size if every value is smaller.
+     */
+    private int firstAtLeast(int key) {
+        int low = 0;
+        int high = intValues.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (intValues[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for the first position with a value &gt; the key.
+     *
+     * @param key the key.
+     * @return the position, or size if no value is larger.
+     */
+    private int firstAbove(int key) {
+        int low = 0;
+        int high = intValues.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (intValues[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for the first position with a value &gt;= the key.
+     *
+     * @param key the key.
+     * @return the position, or size if every value is smaller.
+     */
+    private int firstAtLeast(double key) {
+        int low = 0;
+        int high = doubleValues.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (doubleValues[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for the first position with a value &gt; the key.
+     *
+     * @param key the key.
+     * @return the position, or size if no value is larger.
+     */
+    private int firstAbove(double key) {
+        int low = 0;
+        int high = doubleValues.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (doubleValues[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d rows, %d bytes, built in %.3f ms", column.getColumnName(),
+                rows.length, getMemoryBytes(), buildNanos / 1_000_000.0);
+    }
+
+    /**
+     * A contiguous range of positions in a {@link SortedIndex}, from (inclusive) to to
+     * (exclusive).
+     */
+    public static final class Slice {
+        /** The index the positions are in, null for an empty slice. */
+        private final SortedIndex index;
+        /** First position in the slice. */
+        private final int from;
+        /** Position after the last one in the slice. */
+        private final int to;
+
+        /**
+         * Constructor for a slice.
+         *
+         * @param index the index the positions are in.
+         * @param from  first position, inclusive.
+         * @param to    last position, exclusive.
+         */
+        Slice(SortedIndex index, int from, int to) {
+            this.index = index;
+            this.from = from;
+            this.to = Math.max(from, to);
+        }
+
+        /**
+         * Get the first position in the slice.
+         *
+         * @return the first position.
+         */
+        public int getFrom() {
+            return from;
+        }
+
+        /**
+         * Get the position after the last one in the slice.
+         *
+         * @return the end position (exclusive).
+         */
+        public int getTo() {
+            return to;
+        }
+
+        /**
+         * Get the number of positions in the slice.
+         *
+         * @return the size.
+         */
+        public int size() {
+            return to - from;
+        }
+
+        /**
+         * Get the row id at a position of the slice.
+         *
+         * @param position the position, between from (inclusive) and to (exclusive).
+         * @return the row id.
+         */
+        public int row(int position) {
+            return index.row(position);
+        }
+    }
+}
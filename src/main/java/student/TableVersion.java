@@ -0,0 +1,104 @@
+package student;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One loaded version of a collection: an immutable {@link GameTable}, with its version number
+ * and how long it took to load.
+ *
+ * A {@link LiveCollection} swaps in a new version when the collection file changes; a planner
+ * keeps using the version it has until its next query.
+ */
+public final class TableVersion {
+    /** The games. */
+    private final GameTable table;
+    /** The version number, starting at 1. */
+    private final long number;
+    /** When the version was swapped in. */
+    private final Instant loadedAt;
+    /** Time to load and build the table and its indexes, in nanoseconds. */
+    private final long loadNanos;
+    /** Time from noticing the change to swapping in the version, in nanoseconds. */
+    private final long reloadNanos;
+
+    /**
+     * Constructs a version.
+     *
+     * @param table       the games.
+     * @param number      the version number.
+     * @param loadedAt    when the version was swapped in.
+     * @param loadNanos   the time to load and build the table and its indexes.
+     * @param reloadNanos the time from noticing the change to swapping in the version, the same
+     *                    as loadNanos when the load was not started by a change.
+     */
+    TableVersion(GameTable table, long number, Instant loadedAt, long loadNanos, long reloadNanos) {
+        this.table = table;
+        this.number = number;
+        this.loadedAt = loadedAt;
+        this.loadNanos = loadNanos;
+        this.reloadNanos = reloadNanos;
+    }
+
+    /**
+     * Builds the first and only version of a table that is never reloaded.
+     *
+     * @param table the games.
+     * @return version 1 of the table.
+     */
+    static TableVersion of(GameTable table) {
+        return new TableVersion(table, 1, Instant.now(), 0, 0);
+    }
+
+    /**
+     * Gets the games.
+     *
+     * @return the table.
+     */
+    public GameTable getTable() {
+        return table;
+    }
+
+    /**
+     * Gets the version number, which goes up by one with every reload.
+     *
+     * @return the version number, starting at 1.
+     */
+    public long getNumber() {
+        return number;
+    }
+
+    /**
+     * Gets when the version was swapped in.
+     *
+     * @return the time.
+     */
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * Gets the time it took to load and build the table and its indexes.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getLoadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(loadNanos);
+    }
+
+    /**
+     * Gets the reload latency: the time from noticing the change to swapping in the version,
+     * including waiting for the file to stop changing.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getReloadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(reloadNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "version " + number + " (" + table.size() + " games, loaded in " + getLoadMillis()
+                + " ms, " + getReloadMillis() + " ms after the change)";
+    }
+}
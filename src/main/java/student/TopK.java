@@ -0,0 +1,248 @@
+package student;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Partial selection of the first K rows of a selection, in the order of a column.
+ *
+ * Rows are compared by their rank, their position in the column's sort permutation (see
+ * {@link GameTable#ranks(GameData)}), so the order is the same as walking the permutation,
+ * ties included. Two strategies are used: walking the permutation until K selected rows have
+ * been seen, which is cheap when most rows are selected, or keeping a bounded heap of K ranks
+ * while going over just the selected rows, which is cheap when the selection is sparse.
+ *
+ * The selection is either a bitmap of rows, or a range of positions in the name order (the
+ * games whose names start with the same text, for {@link PrefixIndex}).
+ */
+final class TopK {
+
+    /** Private constructor to prevent instantiation. */
+    private TopK() {
+    }
+
+    /**
+     * Finds the first k selected rows, in ascending or descending order of a column, that come
+     * after a given rank.
+     *
+     * @param table     the table the rows are in.
+     * @param selection the selected rows.
+     * @param column    the column to order by.
+     * @param ascending true for ascending order, false for descending.
+     * @param after     only rows with a rank after this one (in the walk direction) are
+     *                  included, use -1 (ascending) or table size (descending) to start at the
+     *                  beginning.
+     * @param k         the max number of rows to return.
+     * @return up to k row ids, in order.
+     */
+    static int[] first(GameTable table, BitSet selection, GameData column, boolean ascending,
+            int after, int k) {
+        int selected = selection.cardinality();
+        int size = table.size();
+        if (k <= 0 || selected == 0) {
+            return new int[0];
+        }
+        k = Math.min(k, selected); // no more rows than are selected, whatever the limit
+        // walking visits about k * size / selected permutation slots, the heap visits every
+        // selected row at log(k) each
+        double walkCost = (double) k * size / selected;
+        double heapCost = selected * (1 + Math.log(k) / Math.log(2));
+        if (walkCost <= heapCost) {
+            return walk(table.permutation(column), selection, ascending, after, k);
+        }
+        return heap(table.permutation(column), table.ranks(column), selection, ascending, after, k);
+    }
+
+    /**
+     * Finds the first k rows of a range of the name order, in ascending or descending order of
+     * a column.
+     *
+     * Both strategies read their arrays in order: the walk reads the name position of each row
+     * in the column's order, and the heap reads the column rank of each row in the name range.
+     * Names that start alike often have similar values (the editions of one game, say), so the
+     * matches may be bunched up in the column's order instead of spread out as the walk cost
+     * assumes. The walk therefore gives up after as many steps as the heap would take, and the
+     * heap is used instead.
+     *
+     * @param permutation   the sort permutation of the column.
+     * @param namePositions the position in the name order of each row, in the column's order.
+     * @param columnRanks   the rank in the column of each row, in name order.
+     * @param from          the first position in the name order, inclusive.
+     * @param to            the last position in the name order, exclusive.
+     * @param ascending     true for ascending order, false for descending.
+     * @param k             the max number of rows to return.
+     * @return up to k row ids, in order.
+     */
+    static int[] firstInNameRange(int[] permutation, int[] namePositions, int[] columnRanks,
+            int from, int to, boolean ascending, int k) {
+        int selected = to - from;
+        int size = permutation.length;
+        if (k <= 0 || selected <= 0) {
+            return new int[0];
+        }
+        k = Math.min(k, selected);
+        double walkCost = (double) k * size / selected;
+        double heapCost = selected * (1 + Math.log(k) / Math.log(2));
+        if (walkCost <= heapCost) {
+            int[] rows = new int[Math.min(k, selected)];
+            int count = 0;
+            int step = ascending ? 1 : -1;
+            int steps = (int) Math.min(size, heapCost);
+            for (int rank = ascending ? 0 : size - 1; steps > 0 && count < rows.length;
+                    rank += step, steps--) {
+                int position = namePositions[rank];
+                if (position >= from && position < to) {
+                    rows[count++] = permutation[rank];
+                }
+            }
+            if (count == rows.length) {
+                return rows;
+            }
+        }
+        int sign = ascending ? 1 : -1;
+        int[] heap = new int[k];
+        int count = 0;
+        for (int position = from; position < to; position++) {
+            count = offer(heap, count, sign * columnRanks[position]);
+        }
+        return toRows(permutation, heap, count, sign);
+    }
+
+    /**
+     * Walks the sort permutation, keeping selected rows until k have been found.
+     *
+     * @param permutation the sort permutation.
+     * @param selection   the selected rows.
+     * @param ascending   the walk direction.
+     * @param after       the rank to start after.
+     * @param k           the max number of rows.
+     * @return the rows found, in order.
+     */
+    private static int[] walk(int[] permutation, BitSet selection, boolean ascending, int after,
+            int k) {
+        int[] rows = new int[k];
+        int count = 0;
+        int step = ascending ? 1 : -1;
+        for (int rank = after + step; rank >= 0 && rank < permutation.length && count < k;
+                rank += step) {
+            int row = permutation[rank];
+            if (selection.get(row)) {
+                rows[count++] = row;
+            }
+        }
+        return count == k ? rows : Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Keeps the k best ranks of the selected rows in a bounded binary heap, with the worst of
+     * the kept ranks at the root.
+     *
+     * @param permutation the sort permutation.
+     * @param ranks       rank of each row id.
+     * @param selection   the selected rows.
+     * @param ascending   true to keep the smallest ranks, false for the largest.
+     * @param after       the rank to start after.
+     * @param k           the max number of rows.
+     * @return the rows found, in order.
+     */
+    private static int[] heap(int[] permutation, int[] ranks, BitSet selection, boolean ascending,
+            int after, int k) {
+        // descending is the same as ascending on negated ranks
+        int sign = ascending ? 1 : -1;
+        int bound = sign * after;
+        int[] heap = new int[k];
+        int count = 0;
+        for (int row = selection.nextSetBit(0); row >= 0; row = selection.nextSetBit(row + 1)) {
+            int key = sign * ranks[row];
+            if (key > bound) {
+                count = offer(heap, count, key);
+            }
+        }
+        return toRows(permutation, heap, count, sign);
+    }
+
+    /**
+     * Offers a key to a bounded max heap, which keeps the smallest keys.
+     *
+     * @param heap  the heap, its length being the bound.
+     * @param count the number of keys in the heap.
+     * @param key   the key.
+     * @return the number of keys in the heap after the offer.
+     */
+    private static int offer(int[] heap, int count, int key) {
+        if (count < heap.length) {
+            heap[count] = key;
+            siftUp(heap, count);
+            return count + 1;
+        }
+        if (key < heap[0]) {
+            heap[0] = key;
+            siftDown(heap, count);
+        }
+        return count;
+    }
+
+    /**
+     * Turns the kept keys (signed ranks) into row ids, in order.
+     *
+     * @param permutation the sort permutation.
+     * @param heap        the heap of keys.
+     * @param count       the number of keys in the heap.
+     * @param sign        1 if the keys are ranks, -1 if they are negated ranks.
+     * @return the rows, in order.
+     */
+    private static int[] toRows(int[] permutation, int[] heap, int count, int sign) {
+        int[] keys = Arrays.copyOf(heap, count);
+        Arrays.sort(keys);
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = permutation[sign * keys[i]];
+        }
+        return rows;
+    }
+
+    /**
+     * Moves the last added key up to its place in a max heap.
+     *
+     * @param heap  the heap.
+     * @param index the index of the added key.
+     */
+    private static void siftUp(int[] heap, int index) {
+        int key = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] >= key) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = key;
+    }
+
+    /**
+     * Moves the root key down to its place in a max heap.
+     *
+     * @param heap  the heap.
+     * @param count the number of keys in the heap.
+     */
+    private static void siftDown(int[] heap, int count) {
+        int key = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= count) {
+                break;
+            }
+            if (child + 1 < count && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (heap[child] <= key) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = key;
+    }
+}
@@ -0,0 +1,48 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConsoleAppTest {
+
+    static String run(String commands) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, false, StandardCharsets.UTF_8);
+        ConsoleApp app = new ConsoleApp(new GameList(), new Planner(TestPlanner.games()),
+                new ByteArrayInputStream(commands.getBytes(StandardCharsets.UTF_8)), out, true);
+        app.start();
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void batchPrintsOnlyResults() {
+        String output = run("filter name ~= go sort:rating desc\n\n"
+                + "list add 1-2\nlist\n");
+        String n = System.lineSeparator();
+        assertEquals("1: golang (9.50)" + n + "2: GoRami (8.50)" + n + "3: Go (7.50)" + n
+                + "4: Go Fish (6.50)" + n + "1: Go" + n + "2: Go Fish" + n, output);
+    }
+
+    @Test
+    void typosGetSuggestions() {
+        String n = System.lineSeparator();
+        String output = run("list add go fsh\nlist add all\nlist remove chss\nlist remove 99\n");
+        assertEquals("Invalid list option (type list ? to get options):  go fsh" + n
+                + "Did you mean: Go Fish" + n
+                + "Invalid list option (type list ? to get options):  chss" + n
+                + "Did you mean: Chess" + n
+                + "Invalid list option (type list ? to get options):  99" + n, output);
+    }
+
+    @Test
+    void batchStopsAtExit() {
+        assertEquals("", run("list clear\nexit\nlist add all\n"));
+        assertEquals("", run(""));
+    }
+}
@@ -0,0 +1,153 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilterCompilerTest {
+    static final BoardGame GO = new BoardGame("Go", 1, 2, 5, 30, 30, 8.0, 100, 7.5, 2000);
+
+    @Test
+    void compileSplitsConditions() {
+        FilterCompiler compiler = new FilterCompiler();
+        List<CompiledFilter> filters = compiler.compile("minplayers>1, maxplayers<=5,name~=go");
+        assertEquals(3, filters.size());
+        assertEquals(GameData.MIN_PLAYERS, filters.get(0).getColumn());
+        assertEquals(Operations.LESS_THAN_EQUALS, filters.get(1).getOperator());
+        assertEquals("go", filters.get(2).getLiteral());
+        assertTrue(filters.stream().allMatch(f -> f.test(GO)));
+    }
+
+    @Test
+    void compileIsCachedByNormalizedText() {
+        FilterCompiler compiler = new FilterCompiler();
+        List<CompiledFilter> first = compiler.compile("minplayers>1,maxplayers<=5");
+        List<CompiledFilter> second = compiler.compile("  minplayers>1 ,  maxplayers<=5 ");
+        assertSame(first, second);
+        assertEquals(1, compiler.cachedCount());
+    }
+
+    @Test
+    void cacheIsBounded() {
+        FilterCompiler compiler = new FilterCompiler(2);
+        compiler.compile("rank>1");
+        compiler.compile("rank>2");
+        compiler.compile("rank>3");
+        assertEquals(2, compiler.cachedCount());
+    }
+
+    @Test
+    void invalidConditionsAreSkipped() {
+        FilterCompiler compiler = new FilterCompiler();
+        assertEquals(0, compiler.compile("").size());
+        assertEquals(0, compiler.compile("minplayers").size());
+        assertEquals(1, compiler.compile("nothing>1,rank>1").size());
+        assertEquals(0, compiler.compile("minplayers==").size());
+        assertEquals(0, compiler.compile("name==").size());
+        assertEquals(0, compiler.compile("rank>\"\"").size());
+        assertEquals(1, compiler.compile("name==,rank>1").size());
+    }
+
+    @Test
+    void expressionsJoinWithOrNotAndGroups() {
+        FilterCompiler compiler = new FilterCompiler();
+        FilterExpression expression =
+                compiler.compileExpression("(minplayers>=4 | maxplaytime<30) & !name~=expansion");
+        assertEquals("(minplayers>=4|maxplaytime<30)&!objectname~=expansion",
+                expression.toString());
+        assertFalse(expression.test(GO));
+        assertTrue(expression.test(new BoardGame("Go", 1, 2, 5, 20, 20, 8.0, 100, 7.5, 2000)));
+        assertFalse(expression.test(new BoardGame("Go Expansion", 1, 4, 5, 20, 20, 8.0, 100,
+                7.5, 2000)));
+        assertTrue(compiler.compileExpression("rank>1 | name==go & rank>500").test(GO));
+        assertFalse(compiler.compileExpression("(rank>1 | name==go) & rank>500").test(GO));
+        assertTrue(compiler.compileExpression("!!name==go").test(GO));
+    }
+
+    @Test
+    void valuesKeepOperatorCharacters() {
+        FilterCompiler compiler = new FilterCompiler();
+        assertEquals("a>b", compiler.compile("name~=a>b").get(0).getLiteral());
+        assertEquals(Operations.GREATER_THAN_EQUALS,
+                compiler.compile("rank >= 5").get(0).getOperator());
+        assertEquals("catan (2nd ed)",
+                compiler.compile("name==catan (2nd ed)").get(0).getLiteral());
+        assertEquals("go, fish | \"x\"",
+                compiler.compile("name==\"go, fish | \\\"x\\\"\"").get(0).getLiteral());
+        assertEquals(2, compiler.compile("(name==catan (2nd ed)),rank>1").size());
+    }
+
+    @Test
+    void malformedExpressionsAreLenient() {
+        FilterCompiler compiler = new FilterCompiler();
+        assertEquals(1, compiler.compile("rank>1 &").size());
+        assertEquals(1, compiler.compile("(rank>1").size());
+        assertEquals(2, compiler.compile("rank>1) , minplayers>1").size());
+        assertTrue(compiler.compileExpression("| !").isEmpty());
+        assertTrue(compiler.compileExpression("rank>1 | rank<1").test(GO));
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("rank>1 | rank<1"));
+    }
+
+    @Test
+    void ampersandOrBarWithoutConditionIsPartOfValue() {
+        FilterCompiler compiler = new FilterCompiler();
+        assertEquals("Traders & Builders",
+                compiler.compile("name~=Traders & Builders").get(0).getLiteral());
+        assertEquals("Inns&Cathedrals",
+                compiler.compile("name~=Inns&Cathedrals").get(0).getLiteral());
+        assertEquals("a | b", compiler.compileExpression("name==a | b").conditions().get(0)
+                .getLiteral());
+        assertEquals("objectname~=Inns&!rank>1",
+                compiler.compileExpression("name~=Inns & !(rank>1)").toString());
+        assertEquals(2, compiler.compile("name~=Inns & rank>1").size());
+    }
+
+    @Test
+    void unreadableOperandsAreErrors() {
+        FilterCompiler compiler = new FilterCompiler();
+        assertThrows(IllegalArgumentException.class, () -> compiler.compileExpression("!foo"));
+        assertThrows(IllegalArgumentException.class,
+                () -> compiler.compileExpression("(nothing>1) | rank>1"));
+        assertThrows(IllegalArgumentException.class,
+                () -> compiler.compileExpression("(rank>1) foo"));
+        assertEquals(2, compiler.compile("(rank>1) minplayers>1").size());
+        assertThrows(IllegalArgumentException.class,
+                () -> compiler.compileExpression("rank>1 | minplayers=="));
+        assertThrows(IllegalArgumentException.class,
+                () -> compiler.compileExpression("(name==) & rank>1"));
+    }
+
+    @Test
+    void repeatedFilterSkipsTokenizing() {
+        FilterCompiler compiler = new FilterCompiler();
+        FilterExpression first = compiler.compileExpression(" rank>1 | name==go ");
+        assertSame(first, compiler.compileExpression("rank>1 | name==go"));
+        assertSame(first, compiler.compileExpression("rank>1|name==go"));
+        assertEquals(1, compiler.cachedCount());
+    }
+
+    @Test
+    void badNumbersMatchNothing() {
+        assertFalse(CompiledFilter.of(GameData.RANK, Operations.NOT_EQUALS, "abc").test(GO));
+        assertFalse(CompiledFilter.of(GameData.RANK, Operations.CONTAINS, "1").test(GO));
+    }
+
+    @Test
+    void rangesMatchOperators() {
+        assertTrue(CompiledFilter.of(GameData.RANK, Operations.GREATER_THAN, "99").test(GO));
+        assertFalse(CompiledFilter.of(GameData.RANK, Operations.GREATER_THAN, "100").test(GO));
+        assertTrue(CompiledFilter.of(GameData.RANK, Operations.LESS_THAN_EQUALS, "100").test(GO));
+        assertFalse(CompiledFilter.of(GameData.RANK, Operations.NOT_EQUALS, "100").test(GO));
+        assertFalse(CompiledFilter.of(GameData.RANK, Operations.GREATER_THAN,
+                String.valueOf(Integer.MAX_VALUE)).test(GO));
+        assertTrue(CompiledFilter.of(GameData.RATING, Operations.GREATER_THAN, "7.49").test(GO));
+        assertFalse(CompiledFilter.of(GameData.RATING, Operations.LESS_THAN, "7.5").test(GO));
+        assertTrue(CompiledFilter.of(GameData.RATING, Operations.EQUALS, "7.5").test(GO));
+    }
+}
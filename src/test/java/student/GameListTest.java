@@ -123,4 +123,13 @@ class GameListTest {
         assertThrows(IllegalArgumentException.class, () -> gameList.removeFromList("NonExistentGame"));
     }
 
+    @Test
+    void suggestClosestNames() {
+        gameList.addToList("all", games.stream());
+        assertEquals(List.of("Go Fish"), gameList.suggest("go fsh", 5));
+        assertEquals(List.of("Chess"), gameList.suggest(" CHSS ", 5));
+        assertEquals(List.of("golang"), gameList.suggest("golng", 5));
+        assertEquals(List.of(), gameList.suggest("Scrabble", 5));
+    }
+
 }
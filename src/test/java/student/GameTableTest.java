@@ -0,0 +1,406 @@
+package student;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameTableTest {
+    static List<BoardGame> games;
+    static GameTable table;
+
+    @BeforeAll
+    public static void setup() {
+        games = new ArrayList<>();
+        games.add(new BoardGame("Tucano", 5, 10, 20, 60, 90, 6.0, 500, 8.0, 2004));
+        games.add(new BoardGame("Chess", 7, 2, 2, 10, 20, 10.0, 700, 10.0, 2006));
+        games.add(new BoardGame("go", 1, 2, 5, 30, 30, 8.0, 100, 7.5, 2000));
+        games.add(new BoardGame("Chess", 9, 2, 2, 10, 20, 10.0, 900, 9.0, 2010));
+        games.add(new BoardGame("17 days", 6, 1, 8, 70, 70, 9.0, 600, 9.0, 2005));
+        table = GameTable.of(games);
+    }
+
+    @Test
+    void rowsRoundTrip() {
+        assertEquals(5, table.size());
+        for (int row = 0; row < games.size(); row++) {
+            assertEquals(games.get(row).toString(), table.game(row).toString());
+        }
+    }
+
+    @Test
+    void namesAreDictionaryEncoded() {
+        assertEquals(4, table.dictionary().length);
+        assertEquals(table.nameCodes()[1], table.nameCodes()[3]);
+    }
+
+    @Test
+    void inNameOrder() {
+        assertArrayEquals(new int[] {4, 1, 3, 2, 0}, table.inOrder(table.all(), GameData.NAME));
+    }
+
+    @Test
+    void evaluateProducesBitmap() {
+        BitSet bits = CompiledFilter.of(GameData.MAX_PLAYERS, Operations.LESS_THAN_EQUALS, "5")
+                .evaluate(table);
+        assertEquals(BitSet.valueOf(new long[] {0b01110}), bits);
+        bits = CompiledFilter.of(GameData.NAME, Operations.EQUALS, "chess").evaluate(table);
+        assertEquals(BitSet.valueOf(new long[] {0b01010}), bits);
+    }
+
+    @Test
+    void permutationsBreakTiesByName() {
+        assertArrayEquals(new int[] {1, 3, 2, 4, 0}, table.permutation(GameData.MAX_PLAYERS));
+        assertArrayEquals(new int[] {2, 0, 4, 3, 1}, table.permutation(GameData.RATING));
+        BitSet some = BitSet.valueOf(new long[] {0b10110});
+        assertArrayEquals(new int[] {2, 4, 1}, table.inOrder(some, GameData.YEAR));
+    }
+
+    @Test
+    void indexRanges() {
+        SortedIndex index = table.index(GameData.YEAR);
+        SortedIndex.Slice slice = index.range(2004, 2006);
+        assertEquals(3, slice.size());
+        assertEquals(0, slice.row(slice.getFrom()));
+        assertEquals(0, index.range(2007, 2009).size());
+        assertEquals(5, table.index(GameData.RATING).range(7.5, 10.0).size());
+        assertEquals(0, table.index(GameData.RATING).range(Double.NaN, 10.0).size());
+        assertEquals(5L * Integer.BYTES, index.getMemoryBytes());
+    }
+
+    @Test
+    void nameIndexMatchesScan() {
+        Random random = new Random(7);
+        String letters = "abcAB c";
+        List<BoardGame> rows = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int c = random.nextInt(9); c > 0; c--) {
+                name.append(letters.charAt(random.nextInt(letters.length())));
+            }
+            rows.add(new BoardGame(name.toString(), i, 1, 4, 10, 20, 1.0, i, 5.0, 2000));
+        }
+        GameTable many = GameTable.of(rows);
+        for (int i = 0; i < 300; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int c = random.nextInt(6); c > 0; c--) {
+                text.append(letters.charAt(random.nextInt(letters.length())));
+            }
+            BitSet expected = new BitSet();
+            for (int row = 0; row < rows.size(); row++) {
+                if (Filters.filter(rows.get(row), GameData.NAME, Operations.CONTAINS,
+                        text.toString())) {
+                    expected.set(row);
+                }
+            }
+            CompiledFilter contains = CompiledFilter.of(GameData.NAME, Operations.CONTAINS,
+                    text.toString());
+            assertEquals(expected, contains.evaluate(many), text.toString());
+            for (int row = 0; row < rows.size(); row += 97) {
+                assertEquals(expected.get(row), contains.test(many, row));
+            }
+        }
+    }
+
+    @Test
+    void nameKeysIgnoreCaseAndAccents() {
+        assertEquals("pokemon", NameKey.of("Pok\u00e9mon"));
+        assertEquals("strasse", NameKey.of("STRA\u00dfE"));
+        assertEquals("aeon", NameKey.of("\u00c6on"));
+        assertEquals("go", NameKey.of("\uff27\uff4f")); // full width
+        String plain = "ticket to ride";
+        assertSame(plain, NameKey.of(plain));
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(new Locale("tr"));
+            assertEquals("title", NameKey.of("TITLE"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    void accentedNamesMatchAndSortByKey() {
+        List<BoardGame> rows = new ArrayList<>();
+        rows.add(new BoardGame("Zug", 1, 1, 4, 10, 20, 1.0, 4, 5.0, 2000));
+        rows.add(new BoardGame("\u00c1gora", 2, 1, 4, 10, 20, 1.0, 2, 5.0, 2000));
+        rows.add(new BoardGame("azul", 3, 1, 4, 10, 20, 1.0, 3, 5.0, 2000));
+        rows.add(new BoardGame("Agricola", 4, 1, 4, 10, 20, 1.0, 1, 5.0, 2000));
+        GameTable accented = GameTable.of(rows);
+        assertArrayEquals(new int[] {1, 3, 2, 0}, accented.permutation(GameData.NAME));
+
+        BitSet agora = new BitSet();
+        agora.set(1);
+        assertEquals(agora, CompiledFilter.of(GameData.NAME, Operations.CONTAINS, "GOR")
+                .evaluate(accented));
+        assertEquals(agora, CompiledFilter.of(GameData.NAME, Operations.EQUALS, "agora")
+                .evaluate(accented));
+        assertEquals(agora, CompiledFilter.of(GameData.NAME, Operations.LESS_THAN, "agr")
+                .evaluate(accented));
+        assertArrayEquals(new int[] {3, 1}, accented.prefixIndex()
+                .complete("ag", GameData.RANK, true, 5));
+
+        GameTable renamed = accented.apply(new GameDelta().put(
+                new BoardGame("\u00e1zul", 3, 1, 4, 10, 20, 1.0, 3, 5.0, 2000)));
+        assertArrayEquals(new int[] {1, 3, 2, 0}, renamed.permutation(GameData.NAME));
+    }
+
+    static int fullDistance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                d[i][j] = i == 0 ? j : j == 0 ? i : Math.min(d[i - 1][j - 1]
+                        + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1),
+                        Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    @Test
+    void similarMatchesFullDistance() {
+        Random random = new Random(11);
+        List<BoardGame> rows = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int c = 3 + random.nextInt(10); c > 0; c--) {
+                name.append("abcde ".charAt(random.nextInt(6)));
+            }
+            rows.add(new BoardGame(name.toString(), i, 1, 4, 10, 20, 1.0, i, 5.0, 2000));
+        }
+        GameTable many = GameTable.of(rows);
+        BitSet even = new BitSet();
+        for (int row = 0; row < rows.size(); row += 2) {
+            even.set(row);
+        }
+        for (int i = 0; i < 200; i++) {
+            String text = rows.get(random.nextInt(rows.size())).getName();
+            for (int e = random.nextInt(3); e > 0; e--) {
+                int at = random.nextInt(text.length());
+                text = text.substring(0, at) + "xyz".charAt(random.nextInt(3)) + text.substring(at + 1);
+            }
+            int max = EditDistance.allowed(text.length());
+            for (String other : many.dictionary()) {
+                int full = fullDistance(text, other);
+                assertEquals(Math.min(full, max + 1), EditDistance.bounded(text, other, max));
+            }
+            BitSet selection = i % 2 == 0 ? null : even;
+            List<String> expected = new ArrayList<>();
+            for (int row = 0; row < rows.size(); row++) {
+                String name = rows.get(row).getName();
+                if ((selection == null || selection.get(row)) && !expected.contains(name)
+                        && fullDistance(text, name) <= max) {
+                    expected.add(name);
+                }
+            }
+            final String typed = text;
+            expected.sort(Comparator.comparingInt((String n) -> fullDistance(typed, n))
+                    .thenComparing(n -> n));
+            List<String> found = new ArrayList<>();
+            for (int code : many.nameIndex().similar(text, max, selection, 1000)) {
+                found.add(many.dictionary()[code]);
+            }
+            assertEquals(expected, found, text);
+        }
+    }
+
+    @Test
+    void conditionBitmapsAreCached() {
+        GameTable fresh = GameTable.of(games);
+        FilterCompiler compiler = new FilterCompiler();
+        BitSet selection = fresh.all();
+        FilterEvaluator.apply(fresh, selection, compiler.compile("minplayers>1"));
+        BitSet minPlayers = fresh.cachedBitmap(compiler.compile("minplayers>1").get(0));
+        assertEquals(4, minPlayers.cardinality());
+
+        List<CompiledFilter> refined = compiler.compile("minplayers>1,maxplayers<5");
+        FilterEvaluator.apply(fresh, selection, refined);
+        assertSame(minPlayers, fresh.cachedBitmap(refined.get(0)));
+        assertEquals(BitSet.valueOf(new long[] {0b01010}), selection);
+    }
+
+    static String randomExpression(Random random, int depth) {
+        if (depth == 0 || random.nextInt(3) == 0) {
+            String[] conditions = {"minplayers>2", "maxplaytime<60", "rating>=5", "rank!=7",
+                "name~=1", "name==game 12", "year<2000"};
+            return conditions[random.nextInt(conditions.length)];
+        }
+        String left = randomExpression(random, depth - 1);
+        String right = randomExpression(random, depth - 1);
+        switch (random.nextInt(4)) {
+            case 0:
+                return left + " & " + right;
+            case 1:
+                return left + " | " + right;
+            case 2:
+                return "!(" + left + ")";
+            default:
+                return "(" + left + " | " + right + "), " + right;
+        }
+    }
+
+    @Test
+    void expressionNarrowMatchesTest() {
+        Random random = new Random(5);
+        List<BoardGame> rows = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            rows.add(new BoardGame("game " + random.nextInt(100), i, random.nextInt(5), 6,
+                    10, random.nextInt(120), 2.0, random.nextInt(20), random.nextInt(10),
+                    1990 + random.nextInt(20)));
+        }
+        GameTable many = GameTable.of(rows);
+        FilterCompiler compiler = new FilterCompiler();
+        for (int i = 0; i < 200; i++) {
+            String text = randomExpression(random, 3);
+            FilterExpression expression = compiler.compileExpression(text);
+            BitSet expected = new BitSet();
+            for (int row = 0; row < rows.size(); row++) {
+                assertEquals(expression.test(rows.get(row)), expression.test(many, row), text);
+                if (expression.test(rows.get(row))) {
+                    expected.set(row);
+                }
+            }
+            BitSet selection = many.all();
+            expression.narrow(many, selection);
+            assertEquals(expected, selection, text);
+
+            // a small selection is tested row by row
+            BitSet few = new BitSet();
+            for (int row = 0; row < rows.size(); row += 31) {
+                few.set(row);
+            }
+            BitSet narrowed = (BitSet) few.clone();
+            expression.narrow(many, narrowed);
+            few.and(expected);
+            assertEquals(few, narrowed, text);
+        }
+    }
+
+    @Test
+    void columnStatsMatchData() {
+        ColumnStats players = table.stats(GameData.MIN_PLAYERS);
+        assertEquals(1, players.getMin());
+        assertEquals(10, players.getMax());
+        assertEquals(3, players.getDistinct());
+        assertEquals(0, players.getZeros());
+        assertEquals(0, players.getNulls());
+        assertEquals(3, players.estimate(2, 2));
+        assertEquals(0, players.estimate(11, 20));
+        assertEquals(0, players.estimate(5, 4));
+        ColumnStats names = table.stats(GameData.NAME);
+        assertEquals(4, names.getDistinct());
+        assertEquals(3, names.getMax());
+
+        List<BoardGame> rows = new ArrayList<>();
+        rows.add(new BoardGame("", 1, 0, 0, 0, 0, Double.NaN, 0, 0.0, 0));
+        rows.add(new BoardGame("a", 2, 0, 0, 0, 0, 2.5, 0, 7.0, 0));
+        ColumnStats difficulty = GameTable.of(rows).stats(GameData.DIFFICULTY);
+        assertEquals(1, difficulty.getNulls());
+        assertEquals(2.5, difficulty.getMin());
+        assertEquals(1, GameTable.of(rows).stats(GameData.NAME).getZeros());
+        assertEquals(2, GameTable.of(rows).stats(GameData.YEAR).getZeros());
+    }
+
+    @Test
+    void histogramEstimatesRanges() {
+        Random random = new Random(9);
+        List<BoardGame> rows = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            // skewed: most games have no rank, the rest spread out
+            int rank = random.nextInt(4) == 0 ? random.nextInt(5000) : 0;
+            rows.add(new BoardGame("game " + i, i, 1, 4, 10, 60, random.nextDouble() * 5, rank,
+                    7.0, 2000));
+        }
+        GameTable many = GameTable.of(rows);
+        ColumnStats rank = many.stats(GameData.RANK);
+        ColumnStats difficulty = many.stats(GameData.DIFFICULTY);
+        assertEquals(10000, many.stats(GameData.NAME).getDistinct());
+        for (int i = 0; i < 100; i++) {
+            int low = random.nextInt(5000);
+            int high = low + random.nextInt(5000);
+            long actual = rows.stream().filter(g -> g.getRank() >= low && g.getRank() <= high)
+                    .count();
+            long estimate = rank.estimate(low, high);
+            assertTrue(Math.abs(estimate - actual) <= 2 * 10000 / ColumnStats.BUCKETS,
+                    low + ".." + high + ": " + estimate + " vs " + actual);
+            double from = low / 1000.0;
+            double to = high / 1000.0;
+            actual = rows.stream().filter(g -> g.getDifficulty() >= from
+                    && g.getDifficulty() <= to).count();
+            estimate = difficulty.estimate(from, to);
+            assertTrue(Math.abs(estimate - actual) <= 2 * 10000 / ColumnStats.BUCKETS,
+                    from + ".." + to + ": " + estimate + " vs " + actual);
+        }
+        long zeros = rows.stream().filter(g -> g.getRank() == 0).count();
+        assertEquals(zeros, rank.getZeros());
+        assertTrue(Math.abs(rank.estimate(0, 0) - zeros) <= 10000 / ColumnStats.BUCKETS);
+    }
+
+    @Test
+    void deltaMatchesRebuild() {
+        Random random = new Random(42);
+        List<BoardGame> rows = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            rows.add(new BoardGame((i % 3 == 0 ? "game " : "Game ") + random.nextInt(500), i,
+                    random.nextInt(4), 4, 10, random.nextInt(120), random.nextInt(5) + 0.5,
+                    random.nextInt(300), random.nextInt(20) / 2.0, 1990 + random.nextInt(30)));
+        }
+        GameTable before = GameTable.of(rows);
+        before.index(GameData.RATING);
+
+        GameDelta delta = new GameDelta();
+        List<BoardGame> expected = new ArrayList<>();
+        for (BoardGame game : rows) {
+            int id = game.getId();
+            if (id % 50 == 7) {
+                delta.remove(id);
+                continue;
+            }
+            if (id % 50 == 3) {
+                delta.update(id, GameData.RANK, id % 7).update(id, GameData.RATING, 9.5);
+                game = new BoardGame(game.getName(), id, game.getMinPlayers(), 4, 10,
+                        game.getMaxPlayTime(), game.getDifficulty(), id % 7, 9.5,
+                        game.getYearPublished());
+            } else if (id % 50 == 11) {
+                game = new BoardGame("Renamed " + id, id, 1, 4, 10, 60, 2.5, 100, 8.0, 2000);
+                delta.put(game);
+            }
+            expected.add(game);
+        }
+        for (int id = 5000; id < 5030; id++) {
+            BoardGame game = new BoardGame(id % 2 == 0 ? "Chess" : "new " + id, id, 2, 4, 10, 30,
+                    1.5, id % 40, 7.0, 2020);
+            delta.put(game);
+            expected.add(game);
+        }
+        delta.update(99999, GameData.RANK, 1).remove(88888);
+
+        GameTable after = before.apply(delta);
+        GameTable rebuilt = GameTable.of(expected);
+        assertEquals(rebuilt.size(), after.size());
+        for (int row = 0; row < after.size(); row++) {
+            assertEquals(rebuilt.game(row).toString(), after.game(row).toString());
+        }
+        for (GameData column : GameData.values()) {
+            assertArrayEquals(rebuilt.permutation(column), after.permutation(column),
+                    column.toString());
+        }
+        assertEquals(1, after.builtIndexes().size());
+        assertEquals(2000, before.size());
+        assertSame(before, before.apply(new GameDelta()));
+
+        LiveCollection live = new LiveCollection(before);
+        assertEquals(2, live.apply(delta).getNumber());
+        assertEquals(after.size(), new Planner(live).filter("").count());
+    }
+}
@@ -0,0 +1,284 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GamesLoaderTest {
+    static final String HEADER = "objectname,objectid,skip,average,avgweight,rank,minplayers,"
+            + "maxplayers,maxplaytime,minplaytime,yearpublished,other";
+
+    static GameTable parse(String csv) throws IOException {
+        return report(csv, false).getTable();
+    }
+
+    static LoadReport report(String csv, boolean byteAtATime) throws IOException {
+        GameTable.Builder builder = new GameTable.Builder();
+        GameCsvParser parser = new GameCsvParser(builder);
+        InputStream in = new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+        if (byteAtATime) {
+            InputStream all = in;
+            in = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    return all.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return all.read(b, off, Math.min(len, 1));
+                }
+            };
+        }
+        parser.parse(Channels.newChannel(in));
+        return parser.report(builder.build());
+    }
+
+    @Test
+    void loadsCollection() {
+        GameTable table = GamesLoader.loadTable("/collection.csv");
+        assertEquals(753, table.size());
+        assertEquals(753, GamesLoader.loadGamesFile("/collection.csv").size());
+        LoadReport report = GamesLoader.load("/collection.csv");
+        assertEquals(753, report.getRows());
+        assertEquals(0, report.getSkipped());
+    }
+
+    @Test
+    void parallelLoadMatchesSequential(@TempDir Path dir) throws IOException {
+        StringBuilder csv = new StringBuilder(HEADER).append('\n');
+        for (int i = 0; i < 300; i++) {
+            if (i % 7 == 0) {
+                csv.append("\"Game, \"\"").append(i).append("\"\"\nsecond line\"");
+            } else {
+                csv.append("Game ").append(i % 250);
+            }
+            csv.append(',').append(i % 250).append(",x,7.5,2.5,").append(i % 13 == 0 ? "bad" : i)
+                    .append(",1,4,60,30,2001,\"y,\r\nz\"\r\n");
+        }
+        Path file = dir.resolve("games.csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+        LoadReport expected = report(csv.toString(), false);
+        assertTrue(expected.getSkipped(LoadReport.Reason.DUPLICATE) > 0);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            LoadReport actual = ParallelCsvLoader.load(file, pool, 64);
+            assertEquals(expected.toString(), actual.toString());
+            assertEquals(expected.getSamples(), actual.getSamples());
+            assertEquals(expected.getTable().size(), actual.getTable().size());
+            for (int row = 0; row < expected.getTable().size(); row++) {
+                assertEquals(expected.getTable().game(row).toString(),
+                        actual.getTable().game(row).toString());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(753, GamesLoader.loadTable("/collection.csv", 4).size());
+    }
+
+    @Test
+    void loadsFilesAndShardDirectories(@TempDir Path dir) throws IOException {
+        List<String> lines;
+        try (InputStream in = GamesLoaderTest.class.getResourceAsStream("/collection.csv")) {
+            lines = List.of(new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n"));
+        }
+        String header = lines.get(0);
+        Path shards = Files.createDirectory(dir.resolve("export"));
+        Files.writeString(shards.resolve("part-1.csv"),
+                header + "\n" + String.join("\n", lines.subList(1, 300)) + "\n");
+        try (OutputStream out = new GZIPOutputStream(
+                Files.newOutputStream(shards.resolve("part-2.csv.gz")))) {
+            out.write((header + "\n" + String.join("\n", lines.subList(300, 600)) + "\n"
+                    + lines.get(5) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        Files.writeString(shards.resolve("part-3.csv"), header + "\n"
+                + String.join("\n", lines.subList(600, lines.size())) + "\nBad,1,2\n");
+        Files.writeString(shards.resolve("notes.txt"), "not a shard");
+
+        LoadReport report = GamesLoader.load(shards, 3);
+        assertEquals(753, report.getLoaded());
+        assertEquals(755, report.getRows());
+        assertEquals(1, report.getSkipped(LoadReport.Reason.DUPLICATE));
+        assertEquals(1, report.getSkipped(LoadReport.Reason.MISSING_FIELDS));
+        assertTrue(report.getSamples().get(0).startsWith("part-2.csv.gz line 302: duplicate "),
+                report.getSamples().get(0));
+        assertTrue(report.getSamples().get(1).startsWith("part-3.csv line "),
+                report.getSamples().get(1));
+        GameTable classpath = GamesLoader.loadTable("/collection.csv");
+        for (int row = 0; row < classpath.size(); row++) {
+            assertEquals(classpath.game(row).toString(), report.getTable().game(row).toString());
+        }
+
+        Path file = dir.resolve("collection.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(753, GamesLoader.loadTable(file, 4).size());
+        assertEquals(0, GamesLoader.load(dir.resolve("missing.csv"), 1).getLoaded());
+    }
+
+    @Test
+    void snapshotRoundTrip(@TempDir Path dir) {
+        GameTable table = GamesLoader.loadTable("/collection.csv");
+        Path file = dir.resolve("collection.snapshot");
+        assertTrue(GamesLoader.writeSnapshot(table, file));
+        GameTable opened = GamesLoader.loadSnapshot(file);
+
+        assertEquals(table.size(), opened.size());
+        assertEquals(table.name(5), opened.name(5));
+        for (int row = 0; row < table.size(); row++) {
+            assertEquals(table.game(row), opened.game(row));
+            assertEquals(table.game(row).toString(), opened.game(row).toString());
+        }
+        for (GameData column : GameData.values()) {
+            assertArrayEquals(table.permutation(column), opened.permutation(column));
+        }
+        assertArrayEquals(table.dictionary(), opened.dictionary());
+        assertEquals(new Planner(table).filter("name~=the,minplayers>2", GameData.RATING, false)
+                .collect(Collectors.toList()),
+                new Planner(opened).filter("name~=the,minplayers>2", GameData.RATING, false)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void emptySnapshotRoundTrip(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("empty.snapshot");
+        assertTrue(GamesLoader.writeSnapshot(new GameTable.Builder().build(), file));
+        // open directly: loadSnapshot would hide a bad file behind an empty table
+        GameTable opened = GameTable.of(GameSnapshot.open(file));
+
+        assertEquals(0, opened.size());
+        assertEquals(0, opened.dictionary().length);
+        assertEquals(0, new Planner(opened).filter("minplayers>2", GameData.RATING, false)
+                .count());
+    }
+
+    @Test
+    void invalidSnapshotIsEmpty(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("bad.snapshot");
+        Files.writeString(file, HEADER);
+        assertEquals(0, GamesLoader.loadSnapshot(file).size());
+        assertEquals(0, GamesLoader.loadSnapshot(dir.resolve("missing.snapshot")).size());
+    }
+
+    @Test
+    void parsesQuotedFields() throws IOException {
+        String csv = "\"objectname\",objectid,skip,average,avgweight,rank,minplayers,"
+                + "maxplayers,maxplaytime,minplaytime,yearpublished,other\r\n"
+                + "\"Lord of the Rings: Journeys, Middle-earth\",1,\"a,b\",7.5,2.5,3,1,4,60,30,"
+                + "2019,\"x\"\r\n"
+                + "\"The \"\"Game\"\"\",2,,7.5,2.5,\"4\",1,4,60,30,2019,\r\n"
+                + "\"Two\r\nLines\",3,\"\",7.5,2.5,5,1,4,60,30,2019,\"note\nmore\"\n"
+                + "Plain,4,,7.5,2.5,6,1,4,60,30,2019";
+        for (boolean byteAtATime : new boolean[] {false, true}) {
+            LoadReport report = report(csv, byteAtATime);
+            GameTable table = report.getTable();
+            assertEquals(0, report.getSkipped(), report.getSamples().toString());
+            assertEquals(4, table.size());
+            assertEquals("Lord of the Rings: Journeys, Middle-earth", table.name(0));
+            assertEquals("The \"Game\"", table.name(1));
+            assertEquals(4, table.game(1).getRank());
+            assertEquals("Two\r\nLines", table.name(2));
+            assertEquals("Plain", table.name(3));
+            assertEquals(2019, table.game(3).getYearPublished());
+        }
+    }
+
+    @Test
+    void reportsSkippedRows() throws IOException {
+        LoadReport report = report(HEADER + "\n"
+                + "Good,1,x,7.5,2.5,3,1,4,60,30,2001,y\n"
+                + "\n"
+                + "Bad,2,x,7.5,2.5,three,1,4,60,30,2001,y\n"
+                + "Short,3,x,7.5\n"
+                + "Bare \"quote,4,x,7.5,2.5,3,1,4,60,30,2001,y\n"
+                + "\"Closed\" late,5,x,7.5,2.5,3,1,4,60,30,2001,y\n"
+                + "Good,1,x,1.0,1.0,1,1,1,1,1,1,y\n"
+                + "\"Open,6,x,7.5\n", false);
+        assertEquals(1, report.getLoaded());
+        assertEquals(7, report.getRows());
+        assertEquals(6, report.getSkipped());
+        assertEquals(1, report.getSkipped(LoadReport.Reason.BAD_NUMBER));
+        assertEquals(1, report.getSkipped(LoadReport.Reason.MISSING_FIELDS));
+        assertEquals(2, report.getSkipped(LoadReport.Reason.MALFORMED_QUOTES));
+        assertEquals(1, report.getSkipped(LoadReport.Reason.DUPLICATE));
+        assertEquals(1, report.getSkipped(LoadReport.Reason.UNTERMINATED_QUOTE));
+        assertEquals(List.of("line 4: bad number rank 'three'", "line 5: missing fields 4 of 11",
+                "line 6: malformed quotes", "line 7: malformed quotes", "line 8: duplicate Good (1)",
+                "line 9: unterminated quote"), report.getSamples());
+        assertEquals("loaded 1 of 7 rows, skipped 6 (missing fields: 1, bad number: 1, "
+                + "malformed quotes: 2, unterminated quote: 1, duplicate: 1)", report.toString());
+
+        report = report("objectname,objectid\nA,1\nB,2\n", false);
+        assertEquals(2, report.getSkipped(LoadReport.Reason.MISSING_COLUMNS));
+        assertEquals("line 2: missing columns average, avgweight, rank, minplayers, "
+                + "maxplayers, minplaytime, maxplaytime, yearpublished", report.getSamples().get(0));
+    }
+
+    @Test
+    void missingFileIsEmpty() {
+        assertEquals(0, GamesLoader.loadTable("/no_such_file.csv").size());
+    }
+
+    @Test
+    void parsesMappedColumns() throws IOException {
+        GameTable table = parse(HEADER + "\r\n"
+                + "Caf\u00e9,12,x,7.25,2.5,3,2,4,60,30,2001,y\r\n"
+                + "Bad,13,x,7.25,2.5,three,2,4,60,30,2001,y\n"
+                + "Short,14,x,7.25\n"
+                + "Caf\u00e9,12,x,1.0,1.0,1,1,1,1,1,1,y\n"
+                + "Last,15,x,1e1,-.5,-4,2,4,60,30,2001");
+        assertEquals(2, table.size());
+        assertEquals("BoardGame{name='Caf\u00e9', id=12, minPlayers=2, maxPlayers=4, maxPlayTime=60, "
+                + "minPlayTime=30, difficulty=2.5, rank=3, averageRating=7.25, yearPublished=2001}",
+                table.game(0).toString());
+        assertEquals(10.0, table.game(1).getRating());
+        assertEquals(-0.5, table.game(1).getDifficulty());
+        assertEquals(-4, table.game(1).getRank());
+    }
+
+    @Test
+    void numbersMatchJdkParsing() {
+        String[] ints = {"0", "-7", "+12", "2147483647", "-2147483648", "2147483648", "", "-", "1.0"};
+        for (String text : ints) {
+            long expected;
+            try {
+                expected = Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                expected = Long.MIN_VALUE;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+            assertEquals(expected, GameCsvParser.parseInt(buffer, 0, buffer.limit()), text);
+        }
+        String[] doubles = {"0", "6.60806", "-1.8966", "1e3", "1.5E-3", ".5", "5.", "0.1",
+            "123456789012345678", "3.141592653589793238", "1e400", " 2.5", "NaN", "x", "1e"};
+        for (String text : doubles) {
+            double expected;
+            try {
+                expected = Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                expected = Double.NaN;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+            assertEquals(expected, GameCsvParser.parseDouble(buffer, 0, buffer.limit()), text);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package student;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlannerServerTest {
+    static PlannerServer server;
+    static HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeAll
+    static void start() throws IOException {
+        server = new PlannerServer(new Planner(TestPlanner.games()), 0);
+        server.start();
+    }
+
+    @AfterAll
+    static void stop() {
+        server.close();
+    }
+
+    static HttpResponse<String> send(String method, String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, HttpRequest.BodyPublishers.noBody()).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    static String encode(String text) {
+        return URLEncoder.encode(text, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void pagesAreJson() throws Exception {
+        HttpResponse<String> response = send("GET", "/games?filter=" + encode("name ~= go")
+                + "&sort=rating&order=desc&limit=2");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("{\"offset\":0,\"total\":4,\"cursor\":\""),
+                response.body());
+        assertTrue(response.body().contains("{\"name\":\"golang\",\"id\":4,\"minPlayers\":2,"
+                + "\"maxPlayers\":7,\"minPlayTime\":50,\"maxPlayTime\":55,\"difficulty\":7.0,"
+                + "\"rank\":400,\"rating\":9.5,\"yearPublished\":2003}"), response.body());
+
+        String all = send("GET", "/games?filter=" + encode("minplayers > 5")).body();
+        assertEquals(3, all.split("\"name\"").length - 1, all);
+    }
+
+    @Test
+    void sessionsKeepTheirFiltersAndLists() throws Exception {
+        HttpResponse<String> first = send("GET", "/games?filter=" + encode("name ~= go"));
+        String session = first.headers().firstValue(PlannerServer.SESSION_HEADER).get();
+        HttpResponse<String> other = send("GET", "/games?filter=" + encode("name == Chess"));
+        assertNotEquals(session, other.headers().firstValue(PlannerServer.SESSION_HEADER).get());
+
+        String list = send("POST", "/list/add?session=" + session + "&game=all").body();
+        assertTrue(list.startsWith("{\"count\":4,\"games\":[\"Go\",\"Go Fish\""), list);
+        send("POST", "/list/remove?session=" + session + "&game=" + encode("go fish"));
+        assertTrue(send("GET", "/list?session=" + session).body().startsWith("{\"count\":3,"));
+
+        send("POST", "/reset?session=" + session);
+        assertTrue(send("GET", "/games?limit=1&session=" + session).body()
+                .contains("\"total\":8"));
+    }
+
+    @Test
+    void completesNames() throws Exception {
+        String body = send("GET", "/complete?prefix=go&sort=rating&order=desc&limit=2").body();
+        assertTrue(body.startsWith("{\"games\":[{\"name\":\"golang\""), body);
+        assertEquals(2, body.split("\"name\"").length - 1, body);
+    }
+
+    @Test
+    void badRequestsAreErrors() throws Exception {
+        HttpResponse<String> response = send("GET", "/games?sort=nothing");
+        assertEquals(400, response.statusCode());
+        assertEquals("{\"error\":\"No column with name nothing\"}", response.body());
+        assertEquals(400, send("GET", "/games/next?cursor=abc").statusCode());
+        assertEquals(404, send("GET", "/nothing").statusCode());
+        assertEquals(404, send("GET", "/reset").statusCode());
+    }
+
+    @Test
+    void unknownSessionsAreNotCreated() throws Exception {
+        HttpResponse<String> response = send("GET", "/games?session=made-up");
+        assertEquals(404, response.statusCode());
+        assertEquals("{\"error\":\"Unknown session: made-up\"}", response.body());
+        assertTrue(response.headers().firstValue(PlannerServer.SESSION_HEADER).isEmpty());
+        assertEquals(404, send("GET", "/games?session=made-up").statusCode());
+    }
+
+    @Test
+    void hugeNextPageLimitIsClamped() throws Exception {
+        HttpResponse<String> first = send("GET", "/games?sort=rank&limit=2");
+        String session = first.headers().firstValue(PlannerServer.SESSION_HEADER).get();
+        String cursor = first.body().split("\"cursor\":\"")[1].split("\"")[0];
+        HttpResponse<String> rest = send("GET", "/games/next?session=" + session + "&cursor="
+                + cursor + "&limit=" + Integer.MAX_VALUE);
+        assertEquals(200, rest.statusCode());
+        assertEquals(6, rest.body().split("\"name\"").length - 1, rest.body());
+    }
+}
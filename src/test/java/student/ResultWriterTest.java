@@ -0,0 +1,109 @@
+package student;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResultWriterTest {
+    static final List<BoardGame> GAMES = List.of(
+            new BoardGame("Go", 1, 2, 5, 30, 30, 8.0, 100, 7.5, 2000),
+            new BoardGame("Ticket, \"Europe\"", 2, 2, 5, 30, 90, 1.005, 20, 2.675, 2005),
+            new BoardGame("Caf\u00e9 \u2615 \uD83C\uDFB2", 3, 1, 4, 10, 20, 0.125, 3, -0.001, -2),
+            new BoardGame("Line\nbreak", 4, 1, 1, 0, 0, 3.14159265358979, 0, 0.0, 0));
+
+    static String write(ResultWriter.Format format, GameData info, int bufferSize)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ResultWriter writer = new ResultWriter(bytes, bufferSize);
+        writer.begin(format);
+        for (BoardGame game : GAMES) {
+            writer.write(game, info);
+        }
+        writer.end();
+        writer.flush();
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void textMatchesPrintf() throws IOException {
+        for (GameData info : GameData.values()) {
+            StringBuilder expected = new StringBuilder();
+            int counter = 1;
+            for (BoardGame game : GAMES) {
+                expected.append(String.format("%d: %s%n", counter++, game.toStringWithInfo(info)));
+            }
+            assertEquals(expected.toString(), write(ResultWriter.Format.TEXT, info, 64));
+        }
+    }
+
+    @Test
+    void decimalsMatchFormatter() throws IOException {
+        Random random = new Random(3);
+        List<Double> values = new ArrayList<>(List.of(0.0, -0.0, 0.005, 0.015, 1.005, 2.675,
+                -2.675, 1.115, 9.995, 99.995, 1e15, 123456789.125, 1e-10, Double.NaN,
+                Double.POSITIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE));
+        for (int i = 0; i < 20000; i++) {
+            values.add(random.nextInt(100000) / 1000.0);
+            values.add(random.nextInt(1000000) / 100000.0);
+            values.add(random.nextDouble() * 10);
+            values.add((random.nextInt(2000) + 0.5) / 100.0);
+        }
+        for (double value : values) {
+            ByteArrayOutputStream fixed = new ByteArrayOutputStream();
+            ResultWriter writer = new ResultWriter(fixed);
+            writer.fixed2(value);
+            writer.flush();
+            assertEquals(String.format("%.2f", value), fixed.toString(StandardCharsets.US_ASCII),
+                    Double.toString(value));
+            ByteArrayOutputStream full = new ByteArrayOutputStream();
+            writer = new ResultWriter(full);
+            writer.decimal(value);
+            writer.flush();
+            String text = full.toString(StandardCharsets.US_ASCII);
+            assertEquals(Double.doubleToLongBits(value),
+                    Double.doubleToLongBits(Double.parseDouble(text)), text);
+        }
+    }
+
+    @Test
+    void csvReadsBack() throws IOException {
+        String csv = write(ResultWriter.Format.CSV, GameData.NAME, 64);
+        GameTable table = GamesLoaderTest.parse(csv);
+        assertEquals(GAMES.size(), table.size());
+        for (int row = 0; row < GAMES.size(); row++) {
+            assertEquals(GAMES.get(row).toString(), table.game(row).toString());
+        }
+    }
+
+    @Test
+    void jsonHasEveryField() throws IOException {
+        String expected = "[{\"name\":\"Go\",\"id\":1,\"minPlayers\":2,\"maxPlayers\":5,"
+                + "\"minPlayTime\":30,\"maxPlayTime\":30,\"difficulty\":8.0,\"rank\":100,"
+                + "\"rating\":7.5,\"yearPublished\":2000},"
+                + "{\"name\":\"Ticket, \\\"Europe\\\"\",\"id\":2,\"minPlayers\":2,\"maxPlayers\":5,"
+                + "\"minPlayTime\":30,\"maxPlayTime\":90,\"difficulty\":1.005,\"rank\":20,"
+                + "\"rating\":2.675,\"yearPublished\":2005},"
+                + "{\"name\":\"Caf\u00e9 \u2615 \uD83C\uDFB2\",\"id\":3,\"minPlayers\":1,"
+                + "\"maxPlayers\":4,\"minPlayTime\":10,\"maxPlayTime\":20,\"difficulty\":0.125,"
+                + "\"rank\":3,\"rating\":-0.001,\"yearPublished\":-2},"
+                + "{\"name\":\"Line\\nbreak\",\"id\":4,\"minPlayers\":1,\"maxPlayers\":1,"
+                + "\"minPlayTime\":0,\"maxPlayTime\":0,\"difficulty\":3.14159265358979,"
+                + "\"rank\":0,\"rating\":0.0,\"yearPublished\":0}]\n";
+        assertEquals(expected, write(ResultWriter.Format.JSON, GameData.NAME, 64));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ResultWriter writer = new ResultWriter(bytes);
+        writer.jsonString("\u0001\t\\");
+        writer.ascii(",");
+        writer.jsonString(null);
+        writer.flush();
+        assertEquals("\"\\u0001\\t\\\\\",null", bytes.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -2,13 +2,30 @@ package student;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 /**
@@ -22,7 +39,11 @@ public class TestPlanner {
 
     @BeforeAll
     public static void setup() {
-        games = new HashSet<>();
+        games = games();
+    }
+
+    static Set<BoardGame> games() {
+        Set<BoardGame> games = new HashSet<>();
         games.add(new BoardGame("17 days", 6, 1, 8, 70, 70, 9.0, 600, 9.0, 2005));
         games.add(new BoardGame("Chess", 7, 2, 2, 10, 20, 10.0, 700, 10.0, 2006));
         games.add(new BoardGame("Go", 1, 2, 5, 30, 30, 8.0, 100, 7.5, 2000));
@@ -31,6 +52,7 @@ public class TestPlanner {
         games.add(new BoardGame("GoRami", 3, 6, 6, 40, 42, 5.0, 300, 8.5, 2002));
         games.add(new BoardGame("Monopoly", 8, 6, 10, 20, 1000, 1.0, 800, 5.0, 2007));
         games.add(new BoardGame("Tucano", 5, 10, 20, 60, 90, 6.0, 500, 8.0, 2004));
+        return games;
     }
 
     @Test
@@ -74,6 +96,18 @@ public class TestPlanner {
 //        assertEquals("17 days", filtered.get(0).getName());
     }
 
+    @Test
+    public void testFilterOrNotAndGroups() {
+        IPlanner planner = new Planner(games);
+        List<String> filtered = planner.filter("(minPlayers >= 6 | maxPlayTime < 30) & !name ~= go")
+                .map(BoardGame::getName).toList();
+        assertEquals(List.of("Chess", "Monopoly", "Tucano"), filtered);
+
+        // progressive: the next filter narrows the result of the last one
+        filtered = planner.filter("rank < 600 | rating >= 10").map(BoardGame::getName).toList();
+        assertEquals(List.of("Chess", "Tucano"), filtered);
+    }
+
     // Test for Numeric Filters
     @Test
     public void testFilterMinPlayers() {
@@ -160,4 +194,296 @@ public class TestPlanner {
         List<BoardGame> resetGames = planner.filter("", GameData.NAME, true).toList();
         assertEquals(games.size(), resetGames.size()); // Ensure reset restores the original set size
     }
+
+    @Test
+    public void testIndexDrivesCombinedFilter() {
+        Planner planner = new Planner(games);
+        List<BoardGame> filtered = planner.filter("minPlayers >= 6, maxPlayers < 10, name ~= o").toList();
+        assertEquals(1, filtered.size());
+        assertEquals("GoRami", filtered.get(0).getName());
+        assertEquals(GameData.MIN_PLAYERS, planner.indexStats().get(0).getColumn());
+    }
+
+    @Test
+    public void testIndexSliceWithResiduals() {
+        Set<BoardGame> many = new HashSet<>();
+        for (int i = 1; i <= 100; i++) {
+            many.add(new BoardGame("Game " + i, i, i % 4 + 1, 6, 30, 60, 2.0, i, 6.0, 2000 + i % 20));
+        }
+        Planner planner = new Planner(many);
+        List<BoardGame> filtered = planner.filter("rank <= 8, minPlayers > 2").toList();
+        assertEquals(List.of("Game 2", "Game 3", "Game 6", "Game 7"),
+                filtered.stream().map(BoardGame::getName).toList());
+    }
+
+    @Test
+    public void testExplain() {
+        Planner planner = new Planner(games);
+        planner.filter("maxPlayers <= 10");
+        QueryPlan plan = planner.explain("(minPlayers >= 6 | maxPlayTime < 30) & !name ~= go");
+        assertEquals(7, plan.getRowsIn());
+        assertEquals(2, plan.getRowsOut());
+        QueryPlan.Step top = plan.getSteps().get(0);
+        assertEquals("and", top.getAccess());
+        assertEquals(0, top.getDepth());
+        assertEquals(2, top.getActual());
+        assertTrue(plan.getSteps().stream()
+                .anyMatch(step -> step.getAccess().equals("name index")));
+        assertTrue(plan.toString().contains("maxplaytime<30"), plan.toString());
+
+        // the working set is left as it was
+        assertEquals(7, planner.filter("").count());
+        assertEquals(plan.getRowsOut(),
+                planner.filter("(minPlayers >= 6 | maxPlayTime < 30) & !name ~= go").count());
+        assertEquals("cached bitmap",
+                planner.explain("minPlayers >= 6").getSteps().get(0).getAccess());
+        assertEquals(4, planner.columnStats(GameData.MIN_PLAYERS).getDistinct());
+    }
+
+    @Test
+    public void testUndoStepsBack() {
+        Planner planner = new Planner(games);
+        planner.filter("maxPlayers <= 10");
+        assertEquals(2, planner.filter("minPlayers == 6").count());
+        assertTrue(planner.undo());
+        assertEquals(7, planner.filter("").count());
+        planner.reset();
+        assertEquals(8, planner.filter("").count());
+        assertTrue(planner.undo());
+        assertEquals(7, planner.filter("").count());
+        assertTrue(planner.undo());
+        assertFalse(planner.undo());
+        assertEquals(8, planner.filter("").count());
+    }
+
+    @Test
+    public void testSortAfterNarrowingKeepsOrder() {
+        Planner planner = new Planner(games);
+        planner.filter("", GameData.RATING, true);
+        List<String> names = planner.filter("minPlayers == 2", GameData.RATING, false)
+                .map(BoardGame::getName).toList();
+        assertEquals(List.of("Chess", "golang", "Go", "Go Fish"), names);
+    }
+
+    @Test
+    public void testTopKPage() {
+        IPlanner planner = new Planner(games);
+        Page page = planner.page("maxPlayers >= 5", GameData.RATING, false, 0, 3);
+        assertEquals(List.of("golang", "17 days", "GoRami"),
+                page.getGames().stream().map(BoardGame::getName).toList());
+        assertEquals(7, page.getTotal());
+
+        Page next = planner.nextPage(page.getCursor(), 2);
+        assertEquals(3, next.getOffset());
+        assertEquals(List.of("Tucano", "Go"), next.getGames().stream().map(BoardGame::getName).toList());
+        Page last = planner.nextPage(next.getCursor(), 5);
+        assertEquals(List.of("Go Fish", "Monopoly"), last.getGames().stream().map(BoardGame::getName).toList());
+        assertFalse(last.hasNext());
+    }
+
+    @Test
+    public void testPageMatchesFullSort() {
+        Set<BoardGame> many = new HashSet<>();
+        for (int i = 1; i <= 500; i++) {
+            many.add(new BoardGame("Game " + i, i, i % 4 + 1, i % 9 + 1, 30, 60, 2.0, i, (i * 37) % 100 / 10.0, 2000));
+        }
+        Planner planner = new Planner(many);
+        List<BoardGame> expected = planner.filter("rank <= 30", GameData.RATING, false).toList();
+        planner.reset();
+        // sparse selection, so the bounded heap is used
+        Page page = planner.page("rank <= 30", GameData.RATING, false, 10, 5);
+        assertEquals(expected.subList(10, 15), page.getGames());
+        assertEquals(expected.subList(15, 25), planner.nextPage(page.getCursor(), 10).getGames());
+
+        List<BoardGame> ascending = planner.filter("", GameData.RATING, true).toList();
+        planner.reset();
+        assertEquals(ascending.subList(0, 12), planner.page("rank <= 30", GameData.RATING, true, 0, 12).getGames());
+    }
+
+    @Test
+    public void testComplete() {
+        IPlanner planner = new Planner(games);
+        assertEquals(List.of("Go", "Go Fish", "GoRami"), planner.complete("go", GameData.RANK, true, 3)
+                .stream().map(BoardGame::getName).toList());
+        assertEquals(List.of("golang", "GoRami"), planner.complete("  GO", GameData.RATING, false, 2)
+                .stream().map(BoardGame::getName).toList());
+        assertEquals(List.of("Go Fish"), planner.complete("go ", GameData.RANK, true, 10)
+                .stream().map(BoardGame::getName).toList());
+        assertEquals(0, planner.complete("gx", GameData.RANK, true, 10).size());
+        assertEquals(8, planner.complete("", GameData.NAME, true, 10).size());
+        assertEquals(8, planner.filter("").count()); // completing does not filter
+    }
+
+    @Test
+    public void testCompleteMatchesFilter() {
+        Random random = new Random(3);
+        Set<BoardGame> many = new HashSet<>();
+        for (int i = 1; i <= 2000; i++) {
+            String name = (char) ('a' + random.nextInt(3)) + "" + (char) ('A' + random.nextInt(3))
+                    + random.nextInt(50);
+            many.add(new BoardGame(name, i, 1, 4, 30, 60, 2.0, random.nextInt(300), random.nextInt(100) / 10.0, 2000));
+        }
+        Planner planner = new Planner(many);
+        for (String prefix : List.of("", "a", "B", "ab", "Cc1", "c", "bA4", "zz")) {
+            for (GameData sortOn : List.of(GameData.RANK, GameData.RATING)) {
+                for (boolean ascending : List.of(true, false)) {
+                    List<BoardGame> expected = planner.filter("", sortOn, ascending)
+                            .filter(game -> game.getName().regionMatches(true, 0, prefix, 0, prefix.length()))
+                            .limit(7).toList();
+                    assertEquals(expected, planner.complete(prefix, sortOn, ascending, 7), prefix);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidCursor() {
+        IPlanner planner = new Planner(games);
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.nextPage("not a cursor", 5));
+    }
+
+    @Test
+    public void testStaleCursorIsRejected() {
+        Planner planner = new Planner(games);
+        String cursor = planner.page("maxPlayers >= 5", GameData.RATING, false, 0, 3).getCursor();
+        assertEquals(3, planner.nextPage(cursor, 2).getOffset());
+        planner.filter("minPlayers >= 2");
+        assertThrows(IllegalArgumentException.class, () -> planner.nextPage(cursor, 2));
+        planner.undo();
+        assertEquals(3, planner.nextPage(cursor, 2).getOffset());
+        planner.reset();
+        assertThrows(IllegalArgumentException.class, () -> planner.nextPage(cursor, 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> new Planner(games).nextPage(cursor, 2));
+    }
+
+    @Test
+    public void testHugePageLimit() {
+        Planner planner = new Planner(games);
+        Page page = planner.page("", GameData.RANK, true, 0, 2);
+        Page rest = planner.nextPage(page.getCursor(), Integer.MAX_VALUE);
+        assertEquals(6, rest.getGames().size());
+        assertFalse(rest.hasNext());
+        assertEquals(8, planner.page("", GameData.RATING, true, 0, Integer.MAX_VALUE)
+                .getGames().size());
+    }
+
+    static String collection(int games) {
+        StringBuilder csv = new StringBuilder(GamesLoaderTest.HEADER).append('\n');
+        for (int i = 0; i < games; i++) {
+            csv.append("Game ").append(i).append(',').append(i)
+                    .append(",x,7.5,2.5,").append(i).append(",1,4,60,30,2001,y\n");
+        }
+        return csv.toString();
+    }
+
+    @Test
+    public void testReloadSwapsVersion(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("games.csv");
+        Files.writeString(file, collection(10), StandardCharsets.UTF_8);
+        try (LiveCollection live = new LiveCollection(file, 1)) {
+            Planner planner = new Planner(live);
+            assertEquals(1, planner.getVersion().getNumber());
+            Stream<BoardGame> inFlight = planner.filter("minplayers > 0");
+            planner.filter("name ~= 1");
+            live.watch();
+
+            Path next = dir.resolve("games.csv.tmp");
+            Files.writeString(next, collection(20), StandardCharsets.UTF_8);
+            Files.move(next, file, StandardCopyOption.ATOMIC_MOVE);
+            long deadline = System.currentTimeMillis() + 20_000;
+            while (live.current().getNumber() == 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            TableVersion version = live.current();
+            assertEquals(2, version.getNumber());
+            assertEquals(20, version.getTable().size());
+            assertTrue(version.getReloadMillis() >= version.getLoadMillis());
+
+            // the stream started before the swap finishes on the old version
+            assertEquals(10, inFlight.count());
+            assertEquals(1, planner.getVersion().getNumber());
+            // the next query picks up the new version, starting over from every game
+            assertEquals(20, planner.filter("").count());
+            assertEquals(version, planner.getVersion());
+        }
+    }
+
+    @Test
+    public void testFailedReloadKeepsVersion(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("games.csv");
+        Files.writeString(file, collection(5), StandardCharsets.UTF_8);
+        try (LiveCollection live = new LiveCollection(file, 1)) {
+            Files.delete(file);
+            assertThrows(IOException.class, live::reload);
+            assertEquals(1, live.current().getNumber());
+            assertEquals(5, new Planner(live).filter("").count());
+        }
+    }
+
+    static List<Integer> ids(Stream<BoardGame> games) {
+        return games.map(BoardGame::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        Random random = new Random(7);
+        Set<BoardGame> many = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            many.add(new BoardGame("Game " + random.nextInt(2000), i, 1 + random.nextInt(4),
+                    4 + random.nextInt(6), 10, 10 + random.nextInt(200), random.nextInt(50) / 10.0,
+                    i, random.nextInt(100) / 10.0, 1980 + random.nextInt(40)));
+        }
+        String[][] sequences = {
+            {"minplayers>2", "maxplayers<8"},
+            {"name~=1", "rating>5"},
+            {"yearpublished>=2000", "avgweight<3", "maxplaytime>100"},
+            {"rank<2500", "name~=game 1"},
+            {"rating>=9.5"},
+        };
+        // expected results, from a planner on its own table on this thread
+        List<List<List<Integer>>> expected = new ArrayList<>();
+        for (String[] sequence : sequences) {
+            Planner reference = new Planner(many);
+            List<List<Integer>> steps = new ArrayList<>();
+            for (String filter : sequence) {
+                steps.add(ids(reference.filter(filter, GameData.RATING, false)));
+            }
+            expected.add(steps);
+        }
+
+        Planner shared = new Planner(many);
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            results.add(pool.submit(() -> {
+                start.await();
+                Planner session = shared.newSession();
+                for (int i = 0; i < 200; i++) {
+                    int which = (i + offset) % sequences.length;
+                    for (int step = 0; step < sequences[which].length; step++) {
+                        assertEquals(expected.get(which).get(step),
+                                ids(session.filter(sequences[which][step], GameData.RATING, false)));
+                    }
+                    List<Integer> last = expected.get(which).get(sequences[which].length - 1);
+                    Page page = session.page("", GameData.RATING, false, 0, 10);
+                    assertEquals(last.subList(0, Math.min(10, last.size())),
+                            page.getGames().stream().map(BoardGame::getId)
+                                    .collect(Collectors.toList()));
+                    session.reset();
+                    assertEquals(5000, session.filter("").count());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(); // rethrows a failed assertion from the session's thread
+        }
+        pool.shutdown();
+    }
 }